@@ -0,0 +1,90 @@
+package io.onedev.server.benchmark.search.code;
+
+import static io.onedev.server.search.code.FieldConstants.BLOB_TEXT;
+import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.store.RAMDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.onedev.server.benchmark.search.code.SyntheticCorpus.SyntheticFile;
+import io.onedev.server.search.code.NGramAnalyzer;
+
+/**
+ * Measures analyzing and indexing throughput of blob text. Size of resulting index is 
+ * printed at end of each trial so that analyzer changes can be compared on index size too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3)
+@Measurement(iterations=5)
+@Fork(1)
+public class IndexingBenchmark {
+
+	@Param({"1000", "5000"})
+	private int fileCount;
+	
+	@Param({"100"})
+	private int linesPerFile;
+	
+	private SyntheticCorpus corpus;
+	
+	private Analyzer analyzer;
+	
+	private long indexSize;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		corpus = new SyntheticCorpus(fileCount, linesPerFile, 0);
+		analyzer = new NGramAnalyzer(NGRAM_SIZE, NGRAM_SIZE);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		analyzer.close();
+		System.out.println();
+		System.out.println("Text size: " + corpus.getTextSize() + " chars, index size: " + indexSize + " bytes");
+	}
+	
+	@Benchmark
+	public void analyze(Blackhole blackhole) throws IOException {
+		for (SyntheticFile file: corpus.getFiles()) {
+			try (TokenStream stream = analyzer.tokenStream(BLOB_TEXT.name(), file.getContent())) {
+				CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+				stream.reset();
+				while (stream.incrementToken())
+					blackhole.consume(term);
+				stream.end();
+			}
+		}
+	}
+	
+	@Benchmark
+	public long index() throws IOException {
+		try (RAMDirectory directory = new RAMDirectory()) {
+			corpus.index(directory);
+			indexSize = directory.ramBytesUsed();
+			return indexSize;
+		}
+	}
+	
+}
@@ -0,0 +1,121 @@
+package io.onedev.server.benchmark.search.code;
+
+import static io.onedev.server.search.code.FieldConstants.BLOB_TEXT;
+import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.onedev.server.search.code.query.NGramLuceneQuery;
+import io.onedev.server.search.code.query.SymbolQuery;
+import io.onedev.server.search.code.query.TextQuery;
+
+/**
+ * Measures latency of code search queries against an index of synthetic corpus. Only the 
+ * Lucene part of the queries is measured here, as collecting hits needs a git repository 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3)
+@Measurement(iterations=5)
+@Fork(1)
+public class QueryBenchmark {
+
+	private static final int MAX_HITS = 100;
+	
+	@Benchmark
+	public TopDocs ngramQuery(CorpusIndex index, TextTerm term) throws IOException {
+		return index.searcher.search(new NGramLuceneQuery(BLOB_TEXT.name(), term.value, NGRAM_SIZE), MAX_HITS);
+	}
+	
+	@Benchmark
+	public TopDocs textQuery(CorpusIndex index, TextTerm term) throws IOException {
+		Query query = new TextQuery.Builder().term(term.value).count(MAX_HITS).build().asLuceneQuery();
+		return index.searcher.search(query, MAX_HITS);
+	}
+	
+	@Benchmark
+	public TopDocs regexQuery(CorpusIndex index, RegexTerm term) throws IOException {
+		Query query = new TextQuery.Builder().term(term.value).regex(true).count(MAX_HITS).build().asLuceneQuery();
+		return index.searcher.search(query, MAX_HITS);
+	}
+	
+	@Benchmark
+	public TopDocs symbolQuery(CorpusIndex index, SymbolTerm term) throws IOException {
+		Query query = new SymbolQuery.Builder().term(term.value).primary(true).count(MAX_HITS).build().asLuceneQuery();
+		return index.searcher.search(query, MAX_HITS);
+	}
+	
+	@State(Scope.Benchmark)
+	public static class CorpusIndex {
+		
+		@Param({"10000"})
+		private int fileCount;
+		
+		private RAMDirectory directory;
+		
+		private IndexReader reader;
+		
+		private IndexSearcher searcher;
+		
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			directory = new RAMDirectory();
+			new SyntheticCorpus(fileCount, 100, 0).index(directory);
+			reader = DirectoryReader.open(directory);
+			searcher = new IndexSearcher(reader);
+		}
+		
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			reader.close();
+			directory.close();
+		}
+		
+	}
+	
+	@State(Scope.Benchmark)
+	public static class TextTerm {
+		
+		@Param({"blob", "getBlobReader", "commitTreePathCache"})
+		private String value;
+		
+	}
+	
+	@State(Scope.Benchmark)
+	public static class RegexTerm {
+		
+		@Param({"get\\w+Manager", "(load|save)Blob\\(", "query.*Symbol\\d+"})
+		private String value;
+		
+	}
+	
+	@State(Scope.Benchmark)
+	public static class SymbolTerm {
+		
+		@Param({"getblob*", "*manager", "loadcommittree"})
+		private String value;
+		
+	}
+	
+}
@@ -0,0 +1,52 @@
+package io.onedev.server.benchmark.search.code;
+
+import static io.onedev.server.search.code.FieldConstants.BLOB_TEXT;
+import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.onedev.server.search.code.query.regex.RegexLiterals;
+
+/**
+ * Measures extraction of required literals from regular expressions, which runs on every 
+ * regex text search before the index is even touched
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3)
+@Measurement(iterations=5)
+@Fork(1)
+public class RegexLiteralsBenchmark {
+
+	@Param({
+		"getBlobReader", 
+		"get\\w+Manager", 
+		"(load|save|query)(Blob|Commit|Tree)\\s*\\(", 
+		"^\\s*(public|private)\\s+static\\s+final\\s+\\w+\\s+[A-Z_]+\\s*=", 
+		"(get|set)(Blob|Commit)(Path|Name)(Reader|Writer)"})
+	private String regex;
+	
+	@Benchmark
+	public RegexLiterals parse() {
+		return new RegexLiterals(regex);
+	}
+	
+	@Benchmark
+	public Query asNGramQuery() {
+		return new RegexLiterals(regex).asNGramQuery(BLOB_TEXT.name(), NGRAM_SIZE);
+	}
+	
+}
@@ -0,0 +1,167 @@
+package io.onedev.server.benchmark.search.code;
+
+import static io.onedev.server.search.code.FieldConstants.BLOB_NAME;
+import static io.onedev.server.search.code.FieldConstants.BLOB_PATH;
+import static io.onedev.server.search.code.FieldConstants.BLOB_PRIMARY_SYMBOLS;
+import static io.onedev.server.search.code.FieldConstants.BLOB_SECONDARY_SYMBOLS;
+import static io.onedev.server.search.code.FieldConstants.BLOB_TEXT;
+import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+
+import io.onedev.server.search.code.NGramAnalyzer;
+
+/**
+ * Source-like corpus generated from a fixed seed, so that benchmark runs on different machines 
+ * and revisions work against identical content. Identifiers are composed from a small set of 
+ * syllables, which gives a realistic amount of shared n-grams between files.
+ */
+public class SyntheticCorpus {
+
+	private static final String[] SYLLABLES = new String[] {
+			"get", "set", "load", "save", "index", "query", "blob", "commit", "tree", "path", 
+			"name", "user", "project", "build", "job", "log", "cache", "manager", "entity", "value", 
+			"count", "size", "stream", "reader", "writer", "token", "symbol", "hit", "text", "file"};
+	
+	private static final String[] KEYWORDS = new String[] {
+			"public", "private", "static", "final", "return", "if", "else", "for", "while", "new", 
+			"int", "long", "String", "void", "boolean", "null", "this", "throw", "try", "catch"};
+	
+	private final List<SyntheticFile> files = new ArrayList<>();
+	
+	public SyntheticCorpus(int fileCount, int linesPerFile, long seed) {
+		Random random = new Random(seed);
+		for (int i=0; i<fileCount; i++) {
+			String className = capitalize(newIdentifier(random));
+			String path = "src/main/java/" + SYLLABLES[random.nextInt(SYLLABLES.length)] + "/" 
+					+ SYLLABLES[random.nextInt(SYLLABLES.length)] + "/" + className + i + ".java";
+			List<String> primarySymbols = new ArrayList<>();
+			List<String> secondarySymbols = new ArrayList<>();
+			primarySymbols.add(className + i);
+			
+			StringBuilder content = new StringBuilder();
+			content.append("public class ").append(className).append(i).append(" {\n\n");
+			for (int j=0; j<linesPerFile; j++) {
+				if (j % 10 == 0) {
+					String methodName = newIdentifier(random);
+					primarySymbols.add(methodName);
+					content.append("\tpublic ").append(KEYWORDS[10 + random.nextInt(5)]).append(" ")
+							.append(methodName).append("() {\n");
+				} else {
+					String variableName = newIdentifier(random);
+					secondarySymbols.add(variableName);
+					content.append("\t\t").append(KEYWORDS[random.nextInt(KEYWORDS.length)]).append(" ")
+							.append(variableName).append(" = ").append(newIdentifier(random))
+							.append("(").append(random.nextInt(1000)).append(");\n");
+					if (j % 10 == 9)
+						content.append("\t}\n\n");
+				}
+			}
+			content.append("}\n");
+			files.add(new SyntheticFile(path, content.toString(), primarySymbols, secondarySymbols));
+		}
+	}
+	
+	private static String newIdentifier(Random random) {
+		StringBuilder builder = new StringBuilder(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		int syllables = 1 + random.nextInt(3);
+		for (int i=0; i<syllables; i++)
+			builder.append(capitalize(SYLLABLES[random.nextInt(SYLLABLES.length)]));
+		return builder.toString();
+	}
+	
+	private static String capitalize(String value) {
+		return Character.toUpperCase(value.charAt(0)) + value.substring(1);
+	}
+	
+	public List<SyntheticFile> getFiles() {
+		return files;
+	}
+	
+	public long getTextSize() {
+		long size = 0;
+		for (SyntheticFile file: files)
+			size += file.getContent().length();
+		return size;
+	}
+	
+	/**
+	 * Index this corpus with the same fields and analyzer used to index blobs of a 
+	 * repository, except for fields only needed to maintain the index incrementally
+	 */
+	public void index(Directory directory) throws IOException {
+		IndexWriterConfig writerConfig = new IndexWriterConfig(new NGramAnalyzer(NGRAM_SIZE, NGRAM_SIZE));
+		writerConfig.setOpenMode(OpenMode.CREATE);
+		try (IndexWriter writer = new IndexWriter(directory, writerConfig)) {
+			for (SyntheticFile file: files) 
+				writer.addDocument(toDocument(file));
+			writer.commit();
+		}
+	}
+	
+	private Document toDocument(SyntheticFile file) {
+		Document document = new Document();
+		document.add(new StringField(BLOB_PATH.name(), file.getPath(), Store.NO));
+		document.add(new BinaryDocValuesField(BLOB_PATH.name(), new BytesRef(file.getPath().getBytes(StandardCharsets.UTF_8))));
+		String blobName = file.getPath().substring(file.getPath().lastIndexOf('/')+1);
+		document.add(new StringField(BLOB_NAME.name(), blobName.toLowerCase(), Store.NO));
+		document.add(new TextField(BLOB_TEXT.name(), file.getContent(), Store.NO));
+		for (String symbol: file.getPrimarySymbols())
+			document.add(new StringField(BLOB_PRIMARY_SYMBOLS.name(), symbol.toLowerCase(), Store.NO));
+		for (String symbol: file.getSecondarySymbols())
+			document.add(new StringField(BLOB_SECONDARY_SYMBOLS.name(), symbol.toLowerCase(), Store.NO));
+		return document;
+	}
+	
+	public static class SyntheticFile {
+		
+		private final String path;
+		
+		private final String content;
+		
+		private final List<String> primarySymbols;
+		
+		private final List<String> secondarySymbols;
+
+		public SyntheticFile(String path, String content, List<String> primarySymbols, 
+				List<String> secondarySymbols) {
+			this.path = path;
+			this.content = content;
+			this.primarySymbols = primarySymbols;
+			this.secondarySymbols = secondarySymbols;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public String getContent() {
+			return content;
+		}
+
+		public List<String> getPrimarySymbols() {
+			return primarySymbols;
+		}
+
+		public List<String> getSecondarySymbols() {
+			return secondarySymbols;
+		}
+		
+	}
+	
+}
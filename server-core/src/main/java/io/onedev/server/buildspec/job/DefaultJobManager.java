@@ -14,11 +14,14 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -71,6 +74,7 @@ import io.onedev.server.event.build.BuildRetrying;
 import io.onedev.server.event.build.BuildRunning;
 import io.onedev.server.event.build.BuildSubmitted;
 import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.Build;
@@ -103,12 +107,16 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 
 	private static final int CHECK_INTERVAL = 1000; // check internal in milli-seconds
 	
+	private static final int RECONCILE_INTERVAL = 60000; // reconcile interval in milli-seconds
+	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultJobManager.class);
 	
 	private final Map<String, JobContext> jobContexts = new ConcurrentHashMap<>();
 	
 	private final Map<Long, JobExecution> jobExecutions = new ConcurrentHashMap<>();
 	
+	private final BlockingQueue<Long> buildIdsToCheck = new LinkedBlockingQueue<>();
+	
 	private final ProjectManager projectManager;
 	
 	private final BuildManager buildManager;
@@ -729,96 +737,197 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		}
 	}
 
+	/*
+	 * Check unfinished build to start its execution, or to advance it out of waiting state
+	 */
+	private void checkUnfinished(Build build) {
+		if (build.getStatus() == Build.Status.RUNNING || build.getStatus() == Build.Status.PENDING) {
+			JobExecution execution = jobExecutions.get(build.getId());
+			if (execution != null) {
+				if (execution.isTimedout())
+					execution.cancel(null);
+			} else if (thread != null) {
+				try {
+					jobExecutions.put(build.getId(), execute(build));
+				} catch (Throwable t) {
+					if (t instanceof OneException)
+						markBuildError(build, t.getMessage());
+					else
+						markBuildError(build, Throwables.getStackTraceAsString(t));
+				}
+			}
+		} else if (build.getStatus() == Build.Status.WAITING) {
+			if (build.getRetryDate() != null) {
+				JobExecution execution = jobExecutions.get(build.getId());
+				if (execution == null && thread != null) {
+					build.setStatus(Build.Status.PENDING);
+					build.setPendingDate(new Date());
+					listenerRegistry.post(new BuildPending(build));
+				}
+			} else if (build.getDependencies().stream().anyMatch(it -> it.isRequireSuccessful() 
+					&& it.getDependency().isFinished() 
+					&& it.getDependency().getStatus() != Build.Status.SUCCESSFUL)) {
+				markBuildError(build, "Some dependencies are required to be successful but failed");
+			} else if (build.getDependencies().stream().allMatch(it->it.getDependency().isFinished())) {
+				build.setStatus(Build.Status.PENDING);
+				build.setPendingDate(new Date());
+				listenerRegistry.post(new BuildPending(build));
+			}
+		}
+	}
+	
+	private void requestCheck(Long buildId) {
+		buildIdsToCheck.add(buildId);
+	}
+	
 	@Override
-	public synchronized void run() {
+	public void run() {
+		long lastReconcileTime = 0;
 		while (!jobExecutions.isEmpty() || thread != null) {
+			Set<Long> buildIds = new HashSet<>();
 			try {
-				transactionManager.run(new Runnable() {
-	
-					@Override
-					public void run() {
-						for (Build build: buildManager.queryUnfinished()) {
-							if (build.getStatus() == Build.Status.RUNNING || build.getStatus() == Build.Status.PENDING) {
-								JobExecution execution = jobExecutions.get(build.getId());
-								if (execution != null) {
-									if (execution.isTimedout())
-										execution.cancel(null);
-								} else if (thread != null) {
+				Long requestedBuildId = buildIdsToCheck.poll(CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+				if (requestedBuildId != null) {
+					buildIds.add(requestedBuildId);
+					buildIdsToCheck.drainTo(buildIds);
+				}
+				
+				/*
+				 * Timeout and completion of job executions are detected from memory, so that 
+				 * database is only accessed when there is something to update
+				 */
+				for (Map.Entry<Long, JobExecution> entry: jobExecutions.entrySet()) {
+					JobExecution execution = entry.getValue();
+					if (execution.isDone())
+						buildIds.add(entry.getKey());
+					else if (execution.isTimedout())
+						execution.cancel(null);
+				}
+				
+				/*
+				 * Builds are normally checked upon build events. We still check all unfinished 
+				 * builds on startup and periodically to pick up changes not covered by events, 
+				 * for instance builds left unfinished by last run of the server
+				 */
+				long now = System.currentTimeMillis();
+				boolean reconcile = now - lastReconcileTime >= RECONCILE_INTERVAL;
+				if (reconcile || !buildIds.isEmpty()) {
+					transactionManager.run(new Runnable() {
+		
+						@Override
+						public void run() {
+							if (reconcile) {
+								for (Build build: buildManager.queryUnfinished())
+									checkUnfinished(build);
+							} else {
+								for (Long buildId: buildIds) {
+									Build build = buildManager.get(buildId);
+									if (build != null && !build.isFinished())
+										checkUnfinished(build);
+								}
+							}
+							for (Iterator<Map.Entry<Long, JobExecution>> it = jobExecutions.entrySet().iterator(); it.hasNext();) {
+								Map.Entry<Long, JobExecution> entry = it.next();
+								if (!reconcile && !buildIds.contains(entry.getKey()))
+									continue;
+								Build build = buildManager.get(entry.getKey());
+								JobExecution execution = entry.getValue();
+								if (build == null || build.isFinished()) {
+									it.remove();
+									execution.cancel(null);
+								} else if (execution.isDone()) {
+									it.remove();
 									try {
-										jobExecutions.put(build.getId(), execute(build));
-									} catch (Throwable t) {
-										if (t instanceof OneException)
-											markBuildError(build, t.getMessage());
+										execution.check();
+										build.setStatus(Build.Status.SUCCESSFUL);
+									} catch (TimeoutException e) {
+										build.setStatus(Build.Status.TIMED_OUT);
+									} catch (CancellationException e) {
+										if (e instanceof CancellerAwareCancellationException) {
+											Long cancellerId = ((CancellerAwareCancellationException) e).getCancellerId();
+											if (cancellerId != null)
+												build.setCanceller(userManager.load(cancellerId));
+										}
+										build.setStatus(Build.Status.CANCELLED);
+									} catch (ExecutionException e) {
+										if (e.getCause() instanceof OneException)
+											build.setStatus(Build.Status.FAILED, e.getCause().getMessage());
 										else
-											markBuildError(build, Throwables.getStackTraceAsString(t));
-									}
-								}
-							} else if (build.getStatus() == Build.Status.WAITING) {
-								if (build.getRetryDate() != null) {
-									JobExecution execution = jobExecutions.get(build.getId());
-									if (execution == null && thread != null) {
-										build.setStatus(Build.Status.PENDING);
-										build.setPendingDate(new Date());
-										listenerRegistry.post(new BuildPending(build));
-									}
-								} else if (build.getDependencies().stream().anyMatch(it -> it.isRequireSuccessful() 
-										&& it.getDependency().isFinished() 
-										&& it.getDependency().getStatus() != Build.Status.SUCCESSFUL)) {
-									markBuildError(build, "Some dependencies are required to be successful but failed");
-								} else if (build.getDependencies().stream().allMatch(it->it.getDependency().isFinished())) {
-									build.setStatus(Build.Status.PENDING);
-									build.setPendingDate(new Date());
-									listenerRegistry.post(new BuildPending(build));
-								}
-							} 
-						}
-						for (Iterator<Map.Entry<Long, JobExecution>> it = jobExecutions.entrySet().iterator(); it.hasNext();) {
-							Map.Entry<Long, JobExecution> entry = it.next();
-							Build build = buildManager.get(entry.getKey());
-							JobExecution execution = entry.getValue();
-							if (build == null || build.isFinished()) {
-								it.remove();
-								execution.cancel(null);
-							} else if (execution.isDone()) {
-								it.remove();
-								try {
-									execution.check();
-									build.setStatus(Build.Status.SUCCESSFUL);
-								} catch (TimeoutException e) {
-									build.setStatus(Build.Status.TIMED_OUT);
-								} catch (CancellationException e) {
-									if (e instanceof CancellerAwareCancellationException) {
-										Long cancellerId = ((CancellerAwareCancellationException) e).getCancellerId();
-										if (cancellerId != null)
-											build.setCanceller(userManager.load(cancellerId));
+											build.setStatus(Build.Status.FAILED, e.getMessage());
+									} catch (InterruptedException e) {
+									} finally {
+										build.setFinishDate(new Date());
+										listenerRegistry.post(new BuildFinished(build));
 									}
-									build.setStatus(Build.Status.CANCELLED);
-								} catch (ExecutionException e) {
-									if (e.getCause() instanceof OneException)
-										build.setStatus(Build.Status.FAILED, e.getCause().getMessage());
-									else
-										build.setStatus(Build.Status.FAILED, e.getMessage());
-								} catch (InterruptedException e) {
-								} finally {
-									build.setFinishDate(new Date());
-									listenerRegistry.post(new BuildFinished(build));
 								}
 							}
 						}
-					}
-					
-				});
-				Thread.sleep(CHECK_INTERVAL);
+						
+					});
+					if (reconcile)
+						lastReconcileTime = now;
+				}
 			} catch (Throwable e) {
 				logger.error("Error checking unfinished builds", e);
+				
+				// check drained builds again later instead of leaving them to next reconcile
+				buildIdsToCheck.addAll(buildIds);
+				try {
+					Thread.sleep(CHECK_INTERVAL);
+				} catch (InterruptedException e2) {
+				}
 			} 
 		}	
 	}
 	
+	@Sessional
 	@Listen
 	public void on(BuildSubmitted event) {
 		Build build = event.getBuild();
 		FileUtils.deleteDir(build.getPublishDir());
+		Long buildId = build.getId();
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				requestCheck(buildId);
+			}
+			
+		});
+	}
+	
+	@Sessional
+	@Listen
+	public void on(BuildPending event) {
+		Long buildId = event.getBuild().getId();
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				requestCheck(buildId);
+			}
+			
+		});
+	}
+	
+	@Sessional
+	@Listen
+	public void on(EntityRemoved event) {
+		Collection<Long> buildIds = new HashSet<>();
+		if (event.getEntity() instanceof Build) 
+			buildIds.add(event.getEntity().getId());
+		else if (event.getEntity() instanceof Project) 
+			buildIds.addAll(jobExecutions.keySet());
+		if (!buildIds.isEmpty()) {
+			transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					buildIdsToCheck.addAll(buildIds);
+				}
+				
+			});
+		}
 	}
 
 	@Transactional
@@ -831,11 +940,18 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		}
 
 		Long buildId = build.getId();
+		
+		// dependents waiting for this build may now be able to run or should fail
+		Collection<Long> buildIds = new HashSet<>();
+		buildIds.add(buildId);
+		for (BuildDependence dependence: build.getDependents())
+			buildIds.add(dependence.getDependent().getId());
 
 		OneDev.getInstance(TransactionManager.class).runAfterCommit(new Runnable() {
 
 			@Override
 			public void run() {
+				buildIdsToCheck.addAll(buildIds);
 				OneDev.getInstance(SessionManager.class).runAsync(new Runnable() {
 
 					@Override
@@ -1,20 +1,14 @@
 package io.onedev.server.buildspec.job.log;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -25,8 +19,6 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.antlr.v4.runtime.tree.TerminalNode;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -34,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.ExceptionUtils;
@@ -44,11 +37,19 @@ import io.onedev.server.buildspec.job.log.instruction.LogInstructionParser.Instr
 import io.onedev.server.buildspec.job.log.instruction.LogInstructionParser.ParamContext;
 import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.event.build.BuildFinished;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.Build;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.JobLogger;
-import io.onedev.server.util.inputspec.SecretInput;
+import io.onedev.server.util.SecretMasker;
+import io.onedev.server.util.ServerConfig;
+import io.onedev.server.util.concurrent.Prioritized;
+import io.onedev.server.util.work.BatchWorkManager;
+import io.onedev.server.util.work.BatchWorker;
 import io.onedev.server.web.websocket.WebSocketManager;
 
 @Singleton
@@ -60,11 +61,13 @@ public class DefaultLogManager implements LogManager {
 
 	private static final int MAX_CACHE_ENTRIES = 10000;
 	
-	private static final String LOG_FILE = "build.log";
-	
 	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("HH:mm:ss");	
 	
 	private static final Pattern EOL_PATTERN = Pattern.compile("\r?\n");
+	
+	private static final String LOG_INDEX_DIR = "build-log-index";
+	
+	private static final int INDEXING_PRIORITY = 50;
 
 	private final StorageManager storageManager;
 	
@@ -72,19 +75,58 @@ public class DefaultLogManager implements LogManager {
 	
 	private final BuildManager buildManager;
 	
+	private final BatchWorkManager batchWorkManager;
+	
+	private final TransactionManager transactionManager;
+	
+	private final ServerConfig serverConfig;
+	
 	private final Map<Long, LogSnippet> recentSnippets = new ConcurrentHashMap<>();
 	
+	private final Map<Long, LogIndex> logIndexes = new ConcurrentHashMap<>();
+	
 	@Inject
 	public DefaultLogManager(StorageManager storageManager, WebSocketManager webSocketManager, 
-			BuildManager buildManager) {
+			BuildManager buildManager, BatchWorkManager batchWorkManager, 
+			TransactionManager transactionManager, ServerConfig serverConfig) {
 		this.storageManager = storageManager;
 		this.webSocketManager = webSocketManager;
 		this.buildManager = buildManager;
+		this.batchWorkManager = batchWorkManager;
+		this.transactionManager = transactionManager;
+		this.serverConfig = serverConfig;
+	}
+	
+	private LogFile getLogFile(Long projectId, Long buildNumber) {
+		return new LogFile(storageManager.getBuildDir(projectId, buildNumber));
+	}
+	
+	/*
+	 * Get log file of specified build for reading. Log written by earlier versions will be 
+	 * converted, and log of finished build not compressed yet (for instance if server is 
+	 * stopped before compressing) will be compressed, so this should be called without 
+	 * holding lock of the build log
+	 */
+	private LogFile getLogFile(Build build) {
+		LogFile logFile = getLogFile(build.getProject().getId(), build.getNumber());
+		if (logFile.isLegacy() || isCompressionPending(build, logFile)) {
+			Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).writeLock();
+			lock.lock();
+			try {
+				if (logFile.isLegacy())
+					logFile.convertLegacy();
+				if (isCompressionPending(build, logFile))
+					logFile.compress();
+			} finally {
+				lock.unlock();
+			}
+		}
+		return logFile;
 	}
 	
-	private File getLogFile(Long projectId, Long buildNumber) {
-		File buildDir = storageManager.getBuildDir(projectId, buildNumber);
-		return new File(buildDir, LOG_FILE);
+	private boolean isCompressionPending(Build build, LogFile logFile) {
+		return build.isFinished() && !recentSnippets.containsKey(build.getId()) 
+				&& logFile.exists() && !logFile.isCompressed();
 	}
 	
 	@Override
@@ -94,36 +136,37 @@ public class DefaultLogManager implements LogManager {
 		Long buildNumber = build.getNumber();
 		Collection<String> secretValuesToMask = build.getSecretValuesToMask();
 		secretValuesToMask.addAll(jobSecretsToMask);
+		SecretMasker secretMasker = new SecretMasker(secretValuesToMask);
 		return new JobLogger() {
 			
 			private void doLog(String message) {
-				for (String maskSecret: secretValuesToMask)
-					message = StringUtils.replace(message, maskSecret, SecretInput.MASK);
+				doLog(Lists.newArrayList(new JobLogEntry(new Date(), message)));
+			}
+			
+			private void doLog(List<JobLogEntry> unmaskedEntries) {
+				List<JobLogEntry> entries = new ArrayList<>(unmaskedEntries.size());
+				for (JobLogEntry entry: unmaskedEntries)
+					entries.add(new JobLogEntry(entry.getDate(), secretMasker.mask(entry.getMessage())));
 				
 				Lock lock = LockUtils.getReadWriteLock(getLockKey(buildId)).writeLock();
 				lock.lock();
 				try {
 					LogSnippet snippet = recentSnippets.get(buildId);
 					if (snippet == null) {
-						File logFile = getLogFile(projectId, buildNumber);
+						LogFile logFile = getLogFile(projectId, buildNumber);
 						if (!logFile.exists())	{
 							snippet = new LogSnippet();
 							recentSnippets.put(buildId, snippet);
 						}
 					}
 					if (snippet != null) {
-						snippet.entries.add(new JobLogEntry(new Date(), message));
+						snippet.entries.addAll(entries);
 						if (snippet.entries.size() > MAX_CACHE_ENTRIES) {
-							File logFile = getLogFile(projectId, buildNumber);
-							try (ObjectOutputStream oos = newOutputStream(logFile)) {
-								while (snippet.entries.size() > MIN_CACHE_ENTRIES) {
-									JobLogEntry entry = snippet.entries.remove(0);
-									oos.writeObject(entry);
-									snippet.offset++;
-								}
-							} catch (IOException e) {
-								throw new RuntimeException(e);
-							}
+							List<JobLogEntry> entriesToFlush = new ArrayList<>();
+							while (snippet.entries.size() > MIN_CACHE_ENTRIES) 
+								entriesToFlush.add(snippet.entries.remove(0));
+							getLogFile(projectId, buildNumber).append(snippet.offset, entriesToFlush);
+							snippet.offset += entriesToFlush.size();
 						}
 						
 						webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(buildId), null);
@@ -175,6 +218,32 @@ public class DefaultLogManager implements LogManager {
 					logger.error("Error logging", e);
 				}
 			}
+
+			@Override
+			public void log(List<JobLogEntry> entries) {
+				List<JobLogEntry> batch = new ArrayList<>();
+				for (JobLogEntry entry: entries) {
+					if (entry.getMessage().startsWith(LogInstruction.PREFIX)) {
+						if (!batch.isEmpty()) {
+							logBatch(batch);
+							batch = new ArrayList<>();
+						}
+						log(entry.getMessage());
+					} else {
+						batch.add(entry);
+					}
+				}
+				if (!batch.isEmpty())
+					logBatch(batch);
+			}
+			
+			private void logBatch(List<JobLogEntry> batch) {
+				try {
+					doLog(batch);
+				} catch (Exception e) {
+					logger.error("Error logging", e);
+				}
+			}
 			
 		};
 	}
@@ -190,6 +259,7 @@ public class DefaultLogManager implements LogManager {
 
 	@Override
 	public boolean matches(Build build, Pattern pattern) {
+		LogFile logFile = getLogFile(build);
 		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
 		lock.lock();
 		try {
@@ -203,20 +273,15 @@ public class DefaultLogManager implements LogManager {
 				}
 			}
 			
-			File logFile = getLogFile(build.getProject().getId(), build.getNumber());
-			
 			if (logFile.exists()) {
-				try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
-					while (true) {
-						JobLogEntry entry  = (JobLogEntry) ois.readObject();
+				try (LogFile.Reader reader = logFile.openReader(0)) {
+					JobLogEntry entry;
+					while ((entry = reader.next()) != null) {
 						if ((build.getRetryDate() == null || !entry.getDate().before(build.getRetryDate())) 
 								&& pattern.matcher(entry.getMessage()).find()) {
 							return true;
 						}
 					}
-				} catch (EOFException e) {
-				} catch (IOException|ClassNotFoundException e) {
-					throw new RuntimeException(e);
 				}
 			}
 			return false;
@@ -225,46 +290,6 @@ public class DefaultLogManager implements LogManager {
 		}
 	}
 	
-	private List<JobLogEntry> readLogEntries(File logFile, int from, int count) {
-		List<JobLogEntry> entries = new ArrayList<>();
-		if (logFile.exists()) {
-			try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
-				int numOfReadEntries = 0;
-				while (numOfReadEntries < from) {
-					ois.readObject();
-					numOfReadEntries++;
-				}
-				while (count == 0 || numOfReadEntries - from < count) {
-					entries.add((JobLogEntry) ois.readObject());
-					numOfReadEntries++;
-				}
-			} catch (EOFException e) {
-			} catch (IOException | ClassNotFoundException e) {
-				throw new RuntimeException(e);
-			}
-		}
-		return entries;
-	}
-	
-	private LogSnippet readLogSnippetReversely(File logFile, int count) {
-		LogSnippet snippet = new LogSnippet();
-		if (logFile.exists()) {
-			try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
-				while (true) {
-					snippet.entries.add((JobLogEntry) ois.readObject());
-					if (snippet.entries.size() > count) {
-						snippet.entries.remove(0);
-						snippet.offset ++;
-					}
-				}
-			} catch (EOFException e) {
-			} catch (IOException | ClassNotFoundException e) {
-				throw new RuntimeException(e);
-			}
-		}
-		return snippet;
-	}
-	
 	private List<JobLogEntry> readLogEntries(List<JobLogEntry> cachedEntries, int from, int count) {
 		if (from < cachedEntries.size()) {
 			int to = from + count;
@@ -279,17 +304,17 @@ public class DefaultLogManager implements LogManager {
 	@Sessional
 	@Override
 	public List<JobLogEntry> readLogEntries(Build build, int from, int count) {
+		LogFile logFile = getLogFile(build);
 		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
 		lock.lock();
 		try {
-			File logFile = getLogFile(build.getProject().getId(), build.getNumber());
 			LogSnippet snippet = recentSnippets.get(build.getId());
 			if (snippet != null) {
 				if (from >= snippet.offset) {
 					return readLogEntries(snippet.entries, from - snippet.offset, count);
 				} else {
 					List<JobLogEntry> entries = new ArrayList<>();
-					entries.addAll(readLogEntries(logFile, from, count));
+					entries.addAll(logFile.read(from, count));
 					if (count == 0)
 						entries.addAll(snippet.entries);
 					else if (entries.size() < count) 
@@ -297,7 +322,7 @@ public class DefaultLogManager implements LogManager {
 					return entries;
 				}
 			} else {
-				return readLogEntries(logFile, from, count);
+				return logFile.read(from, count);
 			}
 		} finally {
 			lock.unlock();
@@ -307,10 +332,10 @@ public class DefaultLogManager implements LogManager {
 	@Sessional
 	@Override
 	public LogSnippet readLogSnippetReversely(Build build, int count) {
+		LogFile logFile = getLogFile(build);
 		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
 		lock.lock();
 		try {
-			File logFile = getLogFile(build.getProject().getId(), build.getNumber());
 			LogSnippet recentSnippet = recentSnippets.get(build.getId());
 			if (recentSnippet != null) {
 				LogSnippet snippet = new LogSnippet();
@@ -318,38 +343,19 @@ public class DefaultLogManager implements LogManager {
 					snippet.entries.addAll(recentSnippet.entries.subList(
 							recentSnippet.entries.size()-count, recentSnippet.entries.size()));
 				} else {
-					snippet.entries.addAll(readLogSnippetReversely(logFile, count - recentSnippet.entries.size()).entries);
+					snippet.entries.addAll(logFile.readReversely(count - recentSnippet.entries.size()).entries);
 					snippet.entries.addAll(recentSnippet.entries);
 				}
 				snippet.offset = recentSnippet.entries.size() + recentSnippet.offset - snippet.entries.size();
 				return snippet;
 			} else {
-				return readLogSnippetReversely(logFile, count);
+				return logFile.readReversely(count);
 			}
 		} finally {
 			lock.unlock();
 		}
 	}
 	
-	private ObjectOutputStream newOutputStream(File logFile) {
-		try {
-			if (logFile.exists()) {
-				return new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true))) {
-
-					@Override
-					protected void writeStreamHeader() throws IOException {
-						reset();
-					}
-					
-				};
-			} else {
-				return new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(logFile)));
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-	
 	@Sessional
 	@Listen
 	public void on(BuildFinished event) {
@@ -357,19 +363,119 @@ public class DefaultLogManager implements LogManager {
 		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).writeLock();
 		lock.lock();
 		try {
+			LogFile logFile = getLogFile(build.getProject().getId(), build.getNumber());
 			LogSnippet snippet = recentSnippets.remove(build.getId());
-			if (snippet != null) {
-				File logFile = getLogFile(build.getProject().getId(), build.getNumber());
-				try (ObjectOutputStream oos = newOutputStream(logFile)) {
-					for (JobLogEntry entry: snippet.entries)
-						oos.writeObject(entry);
-				} catch (IOException e) {
-					throw new RuntimeException(e);
-				} 
-			}
+			if (snippet != null) 
+				logFile.append(snippet.offset, snippet.entries);
+			logFile.compress();
 		} finally {
 			lock.unlock();
 		}
+		
+		if (serverConfig.isBuildLogIndexEnabled())
+			requestToIndex(build.getProject().getId(), build.getId());
+	}
+	
+	@Sessional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (serverConfig.isBuildLogIndexEnabled() && event.getEntity() instanceof Build) {
+			Build build = (Build) event.getEntity();
+			requestToIndex(build.getProject().getId(), build.getId());
+		} else if (event.getEntity() instanceof Project) {
+			LogIndex logIndex = logIndexes.remove(event.getEntity().getId());
+			if (logIndex != null)
+				logIndex.close();
+		}
+	}
+	
+	@Listen
+	public void on(SystemStopping event) {
+		for (LogIndex logIndex: logIndexes.values())
+			logIndex.close();
+		logIndexes.clear();
+	}
+	
+	/*
+	 * Index works only carry build id, and state of the build is checked when the work is 
+	 * done, so that works of same build can be done in any order
+	 */
+	private void requestToIndex(Long projectId, Long buildId) {
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				batchWorkManager.submit(getBatchWorker(projectId), new IndexWork(buildId));
+			}
+			
+		});
+	}
+	
+	private BatchWorker getBatchWorker(Long projectId) {
+		return new BatchWorker("project-" + projectId + "-indexBuildLog") {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				Collection<Long> buildIds = new HashSet<>();
+				for (Prioritized work: works)
+					buildIds.add(((IndexWork) work).getBuildId());
+				index(projectId, buildIds);
+			}
+			
+		};
+	}
+	
+	@Sessional
+	protected void index(Long projectId, Collection<Long> buildIds) {
+		try (LogIndex.Writer writer = getLogIndex(projectId).openWriter()) {
+			for (Long buildId: buildIds) {
+				Build build = buildManager.get(buildId);
+				if (build != null && build.isFinished()) {
+					LogFile logFile = getLogFile(build);
+					Lock lock = LockUtils.getReadWriteLock(getLockKey(buildId)).readLock();
+					lock.lock();
+					try {
+						if (logFile.exists()) {
+							try (LogFile.Reader reader = logFile.openReader(0)) {
+								writer.update(buildId, reader, build.getRetryDate());
+							}
+						} else {
+							writer.delete(buildId);
+						}
+					} finally {
+						lock.unlock();
+					}
+				} else {
+					writer.delete(buildId);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Log index is cached per project so that its searcher is shared across queries
+	 */
+	private LogIndex getLogIndex(Long projectId) {
+		return logIndexes.computeIfAbsent(projectId, 
+				key -> new LogIndex(new File(storageManager.getProjectInfoDir(projectId), LOG_INDEX_DIR)));
+	}
+	
+	@Override
+	public boolean isLogIndexEnabled() {
+		return serverConfig.isBuildLogIndexEnabled();
+	}
+	
+	@Override
+	public Collection<Long> searchBuilds(Project project, String text) {
+		Collection<Long> buildIds = getLogIndex(project.getId()).query(text);
+		if (!buildIds.isEmpty())
+			buildIds.retainAll(buildManager.getIdsByProject(project.getId()));
+		return buildIds;
+	}
+	
+	@Override
+	public boolean contains(Build build, String text) {
+		return getLogIndex(build.getProject().getId()).contains(build.getId(), text);
 	}
 
 	@Override
@@ -379,7 +485,7 @@ public class DefaultLogManager implements LogManager {
 
 	class LogStream extends InputStream {
 
-		private ObjectInputStream ois;
+		private LogFile.Reader reader;
 		
 		private final Lock lock;
 
@@ -390,13 +496,12 @@ public class DefaultLogManager implements LogManager {
 		private int pos = 0;
 		
 		public LogStream(Build build) {
+			LogFile logFile = getLogFile(build);
 			lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
 			lock.lock();
 			try {
-				File logFile = getLogFile(build.getProject().getId(), build.getNumber());
-				
 				if (logFile.exists())
-					ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+					reader = logFile.openReader(0);
 				
 				LogSnippet snippet = recentSnippets.get(build.getId());
 				if (snippet != null) {
@@ -430,20 +535,19 @@ public class DefaultLogManager implements LogManager {
 		@Override
 		public int read() throws IOException {
 			if (pos == buffer.length) {
-				if (ois != null) {
-					try {
-						buffer = (renderAsText((JobLogEntry) ois.readObject()) + "\n").getBytes(StandardCharsets.UTF_8);
-					} catch (EOFException e) {
-						IOUtils.closeQuietly(ois);
-						ois = null;
+				if (reader != null) {
+					JobLogEntry entry = reader.next();
+					if (entry != null) {
+						buffer = (renderAsText(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+					} else {
+						reader.close();
+						reader = null;
 						if (recentBuffer != null) {
 							buffer = recentBuffer;
 							recentBuffer = null;
 						} else {
 							return -1;
 						}
-					} catch (ClassNotFoundException e) {
-						throw new RuntimeException(e);
 					}
 				} else if (recentBuffer != null) {
 					buffer = recentBuffer;
@@ -452,17 +556,52 @@ public class DefaultLogManager implements LogManager {
 					return -1;
 				}
 				pos = 1;
-				return buffer[0];
+				return buffer[0] & 0xff;
+			} else {
+				return buffer[pos++] & 0xff;
+			}
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (pos == buffer.length) {
+				int value = read();
+				if (value == -1)
+					return -1;
+				b[off] = (byte) value;
+				return 1;
 			} else {
-				return buffer[pos++];
+				int count = Math.min(len, buffer.length - pos);
+				System.arraycopy(buffer, pos, b, off, count);
+				pos += count;
+				return count;
 			}
 		}
 		
 		@Override
 		public void close() throws IOException {
-			IOUtils.closeQuietly(ois);
+			if (reader != null)
+				reader.close();
 			lock.unlock();
 		}
 				
 	}
+	
+	private static class IndexWork extends Prioritized {
+
+		private final Long buildId;
+		
+		public IndexWork(Long buildId) {
+			super(INDEXING_PRIORITY);
+			this.buildId = buildId;
+		}
+
+		public Long getBuildId() {
+			return buildId;
+		}
+		
+	}
+	
 }
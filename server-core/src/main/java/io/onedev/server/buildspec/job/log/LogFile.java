@@ -0,0 +1,420 @@
+package io.onedev.server.buildspec.job.log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Log entries of a build stored in an append-only data file, together with a sparse offset index
+ * to locate entries without reading from start of the log.
+ * <p>
+ * Each record in data file is timestamp of the entry, followed by length of UTF-8 encoded message
+ * and the message itself. Every {@link #INDEX_INTERVAL} entries, position of the entry in data file
+ * is appended to index file, so that entry <tt>n</tt> is reached by seeking to the position recorded
+ * for entry <tt>n/INDEX_INTERVAL*INDEX_INTERVAL</tt> and skipping less than {@link #INDEX_INTERVAL}
+ * records. Number of entries is calculated the same way from last indexed position, so no header
+ * needs to be updated in place.
+ * <p>
+ * Once a build is finished, its log is compacted via {@link #compress()}. Entries of each index 
+ * interval are deflated into a separate block, and the block index records position of each block 
+ * in the compressed file. Entries are then located the same way, except that the block containing 
+ * the entry is inflated instead of being read directly.
+ * <p>
+ * Logs written by earlier versions as serialized entries are converted to this format the first
+ * time they are accessed.
+ * <p>
+ * This class does not do any locking, and callers are expected to serialize writes with reads.
+ */
+class LogFile {
+
+	static final int INDEX_INTERVAL = 1024;
+
+	private static final String DATA_FILE = "build-log.data";
+
+	private static final String INDEX_FILE = "build-log.index";
+
+	private static final String COMPRESSED_FILE = "build-log.blocks";
+	
+	private static final String BLOCK_INDEX_FILE = "build-log.blocks.index";
+	
+	private static final String LEGACY_FILE = "build.log";
+
+	private final File dataFile;
+
+	private final File indexFile;
+	
+	private final File compressedFile;
+	
+	private final File blockIndexFile;
+
+	public LogFile(File buildDir) {
+		dataFile = new File(buildDir, DATA_FILE);
+		indexFile = new File(buildDir, INDEX_FILE);
+		compressedFile = new File(buildDir, COMPRESSED_FILE);
+		blockIndexFile = new File(buildDir, BLOCK_INDEX_FILE);
+	}
+
+	public boolean exists() {
+		return compressedFile.exists() || dataFile.exists() || getLegacyFile().exists();
+	}
+	
+	public boolean isCompressed() {
+		return compressedFile.exists();
+	}
+
+	private File getLegacyFile() {
+		return new File(dataFile.getParentFile(), LEGACY_FILE);
+	}
+
+	/**
+	 * @return
+	 * 			<tt>true</tt> if this log was written by an earlier version and should be converted
+	 * 			via {@link #convertLegacy()} before accessing
+	 */
+	public boolean isLegacy() {
+		return !compressedFile.exists() && !dataFile.exists() && getLegacyFile().exists();
+	}
+
+	/**
+	 * Convert log written by earlier versions to current format. Converted files are moved into
+	 * place with data file last, so an interrupted conversion will simply be redone
+	 */
+	public void convertLegacy() {
+		File legacyFile = getLegacyFile();
+		File tempDataFile = new File(dataFile.getPath() + ".tmp");
+		File tempIndexFile = new File(indexFile.getPath() + ".tmp");
+		FileUtils.deleteQuietly(tempDataFile);
+		FileUtils.deleteQuietly(tempIndexFile);
+
+		List<JobLogEntry> entries = new ArrayList<>();
+		int count = 0;
+		try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(legacyFile)))) {
+			while (true) {
+				entries.add((JobLogEntry) ois.readObject());
+				if (entries.size() == INDEX_INTERVAL) {
+					append(tempDataFile, tempIndexFile, count, entries);
+					count += entries.size();
+					entries.clear();
+				}
+			}
+		} catch (EOFException e) {
+		} catch (IOException | ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+		append(tempDataFile, tempIndexFile, count, entries);
+
+		try {
+			Files.move(tempIndexFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tempDataFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		FileUtils.deleteQuietly(legacyFile);
+	}
+
+	/**
+	 * Append entries to this log
+	 *
+	 * @param ordinal
+	 * 			ordinal of first entry to append, that is, number of entries already in this log
+	 * @param entries
+	 * 			entries to append
+	 */
+	public void append(int ordinal, Collection<JobLogEntry> entries) {
+		append(dataFile, indexFile, ordinal, entries);
+	}
+
+	private static void append(File dataFile, File indexFile, int ordinal, Collection<JobLogEntry> entries) {
+		long startPosition = dataFile.length();
+		try (	DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile, true)));
+				DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)))) {
+			for (JobLogEntry entry: entries) {
+				if (ordinal % INDEX_INTERVAL == 0)
+					index.writeLong(startPosition + data.size());
+				writeEntry(data, entry);
+				ordinal++;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Compress this log. No more entries can be appended afterwards. Compressed files are moved 
+	 * into place with compressed file last, and uncompressed files are only deleted after that, 
+	 * so this log is readable at any time even if compression is interrupted
+	 */
+	public void compress() {
+		if (compressedFile.exists()) {
+			FileUtils.deleteQuietly(dataFile);
+			FileUtils.deleteQuietly(indexFile);
+			return;
+		} else if (!dataFile.exists()) {
+			return;
+		}
+		
+		File tempCompressedFile = new File(compressedFile.getPath() + ".tmp");
+		File tempBlockIndexFile = new File(blockIndexFile.getPath() + ".tmp");
+		try (	Reader reader = openReader(0);
+				OutputStream blocks = new BufferedOutputStream(new FileOutputStream(tempCompressedFile));
+				DataOutputStream blockIndex = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempBlockIndexFile)))) {
+			ByteArrayOutputStream block = new ByteArrayOutputStream();
+			DataOutputStream blockData = new DataOutputStream(block);
+			long position = 0;
+			int count = 0;
+			JobLogEntry entry;
+			while ((entry = reader.next()) != null) {
+				writeEntry(blockData, entry);
+				if (++count % INDEX_INTERVAL == 0) {
+					position = writeBlock(blocks, blockIndex, block, position);
+					block.reset();
+				}
+			}
+			if (block.size() != 0)
+				writeBlock(blocks, blockIndex, block, position);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		try {
+			Files.move(tempBlockIndexFile.toPath(), blockIndexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tempCompressedFile.toPath(), compressedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		FileUtils.deleteQuietly(dataFile);
+		FileUtils.deleteQuietly(indexFile);
+	}
+	
+	private static long writeBlock(OutputStream blocks, DataOutputStream blockIndex, 
+			ByteArrayOutputStream block, long position) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DeflaterOutputStream dos = new DeflaterOutputStream(compressed, deflater)) {
+			block.writeTo(dos);
+		} finally {
+			deflater.end();
+		}
+		blockIndex.writeLong(position);
+		compressed.writeTo(blocks);
+		return position + compressed.size();
+	}
+	
+	private static void writeEntry(DataOutputStream os, JobLogEntry entry) throws IOException {
+		byte[] message = entry.getMessage().getBytes(StandardCharsets.UTF_8);
+		os.writeLong(entry.getDate().getTime());
+		os.writeInt(message.length);
+		os.write(message);
+	}
+	
+	/**
+	 * Open reader positioned at specified entry
+	 *
+	 * @param from
+	 * 			ordinal of the entry to start reading
+	 */
+	public Reader openReader(int from) {
+		Reader reader = new Reader();
+		reader.seek(from);
+		return reader;
+	}
+
+	/**
+	 * @return
+	 * 			number of entries in this log
+	 */
+	public int count() {
+		if (compressedFile.exists() || dataFile.exists()) {
+			try (Reader reader = new Reader()) {
+				int from = Math.max(0, reader.blocks-1) * INDEX_INTERVAL;
+				reader.seek(from);
+				int count = from;
+				while (reader.skip())
+					count++;
+				return count;
+			}
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * Read specified number of entries starting from specified entry
+	 *
+	 * @param from
+	 * 			ordinal of the entry to start reading
+	 * @param count
+	 * 			number of entries to read, or <tt>0</tt> to read all entries since <tt>from</tt>
+	 */
+	public List<JobLogEntry> read(int from, int count) {
+		List<JobLogEntry> entries = new ArrayList<>();
+		if (compressedFile.exists() || dataFile.exists()) {
+			try (Reader reader = openReader(from)) {
+				JobLogEntry entry;
+				while ((count == 0 || entries.size() < count) && (entry = reader.next()) != null)
+					entries.add(entry);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Read specified number of entries from end of this log
+	 */
+	public LogSnippet readReversely(int count) {
+		LogSnippet snippet = new LogSnippet();
+		if (compressedFile.exists() || dataFile.exists()) {
+			snippet.offset = Math.max(0, count() - count);
+			snippet.entries.addAll(read(snippet.offset, count));
+		}
+		return snippet;
+	}
+
+	public class Reader implements AutoCloseable {
+
+		private final boolean compressed;
+		
+		private final RandomAccessFile file;
+		
+		private final File positionsFile;
+		
+		private final int blocks;
+		
+		private int block;
+		
+		private DataInputStream data;
+
+		Reader() {
+			compressed = compressedFile.exists();
+			positionsFile = compressed?blockIndexFile:indexFile;
+			blocks = (int) (positionsFile.length() / Long.BYTES);
+			try {
+				file = new RandomAccessFile(compressed?compressedFile:dataFile, "r");
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		/*
+		 * Position this reader at specified entry. For uncompressed log, the block denotes entries 
+		 * between two indexed positions 
+		 */
+		void seek(int entry) {
+			block = Math.max(0, Math.min(entry / INDEX_INTERVAL, blocks-1));
+			openBlock();
+			int entriesToSkip = entry - block*INDEX_INTERVAL;
+			while (entriesToSkip-- > 0 && skip());
+		}
+		
+		private long getBlockPosition(int block) throws IOException {
+			if (block < blocks) {
+				try (RandomAccessFile positions = new RandomAccessFile(positionsFile, "r")) {
+					positions.seek((long)block * Long.BYTES);
+					return positions.readLong();
+				}
+			} else {
+				return file.length();
+			}
+		}
+		
+		private void openBlock() {
+			try {
+				long position = blocks!=0?getBlockPosition(block):0;
+				if (compressed) {
+					byte[] bytes = new byte[(int) (getBlockPosition(block+1) - position)];
+					file.seek(position);
+					file.readFully(bytes);
+					data = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes))));
+				} else {
+					// uncompressed log is read through to the end regardless of block boundaries
+					file.seek(position);
+					data = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.getChannel())));
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		private boolean nextBlock() {
+			if (compressed && block+1 < blocks) {
+				block++;
+				openBlock();
+				return true;
+			} else {
+				return false;
+			}
+		}
+
+		/**
+		 * @return
+		 * 			next entry, or <tt>null</tt> if end of the log is reached
+		 */
+		@Nullable
+		public JobLogEntry next() {
+			try {
+				long time = data.readLong();
+				byte[] message = new byte[data.readInt()];
+				data.readFully(message);
+				return new JobLogEntry(new Date(time), new String(message, StandardCharsets.UTF_8));
+			} catch (EOFException e) {
+				if (nextBlock())
+					return next();
+				else
+					return null;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		boolean skip() {
+			try {
+				data.readLong();
+				int length = data.readInt();
+				if (data.skipBytes(length) != length)
+					return false;
+				return true;
+			} catch (EOFException e) {
+				return nextBlock() && skip();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			try {
+				file.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,340 @@
+package io.onedev.server.buildspec.job.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.LowerCaseFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Term index of build logs of a project. Each indexed build gets a document holding terms of its
+ * log, so that builds printing some text can be found without reading their logs. Terms are runs
+ * of letters and digits, and text is considered to be contained in a log if its terms appear in
+ * the log consecutively, regardless of case and other characters in between. Consecutive log
+ * entries are indexed as continuous text, so that text spanning multiple lines can be matched.
+ * <p>
+ * Queries share a searcher which is opened on first query against existing index, and refreshed 
+ * when a writer is closed. Callers are expected to serialize writes, and to close the index when 
+ * it is no longer used.
+ */
+class LogIndex implements AutoCloseable {
+
+	static final String FIELD_BUILD_ID = "buildId";
+
+	static final String FIELD_LOG = "log";
+
+	private final File indexDir;
+	
+	private Directory searcherDirectory;
+	
+	private volatile SearcherManager searcherManager;
+
+	public LogIndex(File indexDir) {
+		this.indexDir = indexDir;
+	}
+
+	public boolean exists() {
+		if (searcherManager != null) {
+			return true;
+		} else if (indexDir.exists()) {
+			try (Directory directory = FSDirectory.open(indexDir.toPath())) {
+				return DirectoryReader.indexExists(directory);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Open writer of this index. Changes made via the writer will be visible to queries after it
+	 * is closed
+	 */
+	public Writer openWriter() {
+		return new Writer();
+	}
+
+	/**
+	 * Get terms of specified text
+	 *
+	 * @return
+	 * 			terms of specified text, or an empty list if the text does not contain any letters
+	 * 			or digits
+	 */
+	public static List<String> getTerms(String text) {
+		List<String> terms = new ArrayList<>();
+		try (	Analyzer analyzer = new LogAnalyzer();
+				TokenStream stream = analyzer.tokenStream(FIELD_LOG, new StringReader(text))) {
+			CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while (stream.incrementToken())
+				terms.add(termAttribute.toString());
+			stream.end();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return terms;
+	}
+
+	private static Query newLogQuery(String text) {
+		List<String> terms = getTerms(text);
+		Preconditions.checkArgument(!terms.isEmpty(), "Text should contain letters or digits");
+		if (terms.size() == 1) {
+			return new TermQuery(new Term(FIELD_LOG, terms.get(0)));
+		} else {
+			PhraseQuery.Builder builder = new PhraseQuery.Builder();
+			for (String term: terms)
+				builder.add(new Term(FIELD_LOG, term));
+			return builder.build();
+		}
+	}
+
+	@Nullable
+	private SearcherManager getSearcherManager() throws IOException {
+		if (searcherManager == null) synchronized (this) {
+			if (searcherManager == null && exists()) {
+				searcherDirectory = FSDirectory.open(indexDir.toPath());
+				searcherManager = new SearcherManager(searcherDirectory, null);
+			}
+		}
+		return searcherManager;
+	}
+	
+	private Collection<Long> query(Query query) {
+		Collection<Long> buildIds = new HashSet<>();
+		try {
+			SearcherManager searcherManager = getSearcherManager();
+			if (searcherManager != null) {
+				IndexSearcher searcher = searcherManager.acquire();
+				try {
+					searcher.search(query, new SimpleCollector() {
+	
+						private int docBase;
+	
+						@Override
+						public void collect(int doc) throws IOException {
+							buildIds.add(Long.valueOf(searcher.doc(docBase+doc).get(FIELD_BUILD_ID)));
+						}
+	
+						@Override
+						protected void doSetNextReader(LeafReaderContext context) throws IOException {
+							docBase = context.docBase;
+						}
+	
+						@Override
+						public boolean needsScores() {
+							return false;
+						}
+	
+					});
+				} finally {
+					searcherManager.release(searcher);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return buildIds;
+	}
+
+	/**
+	 * Query builds whose log contains specified text
+	 *
+	 * @param text
+	 * 			text to query, must contain at least one letter or digit
+	 * @return
+	 * 			ids of indexed builds whose log contains specified text
+	 */
+	public Collection<Long> query(String text) {
+		return query(newLogQuery(text));
+	}
+
+	/**
+	 * Check whether or not log of specified build contains specified text
+	 *
+	 * @param text
+	 * 			text to check, must contain at least one letter or digit
+	 * @return
+	 * 			<tt>true</tt> if specified build is indexed and its log contains specified text
+	 */
+	public boolean contains(Long buildId, String text) {
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		builder.add(new TermQuery(new Term(FIELD_BUILD_ID, String.valueOf(buildId))), Occur.FILTER);
+		builder.add(newLogQuery(text), Occur.FILTER);
+		return !query(builder.build()).isEmpty();
+	}
+	
+	@Override
+	public synchronized void close() {
+		try {
+			if (searcherManager != null) {
+				searcherManager.close();
+				searcherDirectory.close();
+				searcherManager = null;
+				searcherDirectory = null;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public class Writer implements AutoCloseable {
+
+		private final Directory directory;
+
+		private final IndexWriter writer;
+
+		Writer() {
+			try {
+				directory = FSDirectory.open(indexDir.toPath());
+				IndexWriterConfig writerConfig = new IndexWriterConfig(new LogAnalyzer());
+				writerConfig.setOpenMode(OpenMode.CREATE_OR_APPEND);
+				writer = new IndexWriter(directory, writerConfig);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Index log of specified build, replacing previously indexed log of the build if any
+		 *
+		 * @param reader
+		 * 			reader to read log entries of the build. It will be consumed but not closed by
+		 * 			this method
+		 * @param since
+		 * 			log entries before this date will be ignored, <tt>null</tt> to index all
+		 * 			log entries
+		 */
+		public void update(Long buildId, LogFile.Reader reader, @Nullable Date since) {
+			Document document = new Document();
+			document.add(new StringField(FIELD_BUILD_ID, String.valueOf(buildId), Store.YES));
+			document.add(new TextField(FIELD_LOG, new LogReader(reader, since)));
+			try {
+				writer.updateDocument(new Term(FIELD_BUILD_ID, String.valueOf(buildId)), document);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		public void delete(Long buildId) {
+			try {
+				writer.deleteDocuments(new Term(FIELD_BUILD_ID, String.valueOf(buildId)));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			try {
+				writer.close();
+				directory.close();
+				SearcherManager searcherManager = LogIndex.this.searcherManager;
+				if (searcherManager != null)
+					searcherManager.maybeRefreshBlocking();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+	}
+
+	private static class LogAnalyzer extends Analyzer {
+
+		@Override
+		protected TokenStreamComponents createComponents(String fieldName) {
+			Tokenizer src = new CharTokenizer() {
+
+				@Override
+				protected boolean isTokenChar(int c) {
+					return Character.isLetterOrDigit(c);
+				}
+
+			};
+			TokenStream stream = new LowerCaseFilter(src);
+			return new TokenStreamComponents(src, stream);
+		}
+
+	}
+
+	/*
+	 * Streams messages of log entries as text separated by new lines, so that log of a build
+	 * can be indexed without loading it into memory
+	 */
+	private static class LogReader extends Reader {
+
+		private final LogFile.Reader reader;
+
+		private final Date since;
+
+		private String buffer = "";
+
+		private int pos;
+
+		LogReader(LogFile.Reader reader, @Nullable Date since) {
+			this.reader = reader;
+			this.since = since;
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			while (pos == buffer.length()) {
+				JobLogEntry entry = reader.next();
+				if (entry == null)
+					return -1;
+				if (since == null || !entry.getDate().before(since)) {
+					buffer = entry.getMessage() + "\n";
+					pos = 0;
+				}
+			}
+			int count = Math.min(len, buffer.length() - pos);
+			buffer.getChars(pos, pos + count, cbuf, off);
+			pos += count;
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+
+	}
+
+}
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.regex.Pattern;
 
 import io.onedev.server.model.Build;
+import io.onedev.server.model.Project;
 import io.onedev.server.util.JobLogger;
 
 public interface LogManager {
@@ -30,6 +31,35 @@ public interface LogManager {
 	
 	boolean matches(Build build, Pattern pattern);
 	
+	/**
+	 * Whether or not logs of finished builds are indexed. Methods querying build log index 
+	 * should only be called if this returns <tt>true</tt>
+	 */
+	boolean isLogIndexEnabled();
+	
+	/**
+	 * Search build log index for builds whose log contains specified text. Text is matched by 
+	 * terms, that is, runs of letters and digits of the text should appear in the log 
+	 * consecutively, regardless of case and other characters in between
+	 * 
+	 * @param project
+	 * 			project to search builds in
+	 * @param text
+	 * 			text to search, should contain at least one letter or digit
+	 * @return
+	 * 			ids of finished builds whose log contains specified text
+	 */
+	Collection<Long> searchBuilds(Project project, String text);
+	
+	/**
+	 * Check build log index to see whether or not log of specified build contains specified text. 
+	 * Text is matched the same way as {@link #searchBuilds(Project, String)}
+	 * 
+	 * @return
+	 * 			<tt>true</tt> if specified build is finished and its log contains specified text
+	 */
+	boolean contains(Build build, String text);
+	
 	/**
 	 * Read specified number of log entries starting from end of the log
 	 * 
@@ -5,12 +5,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -21,10 +18,8 @@ import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
-import org.apache.commons.lang3.time.DateUtils;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.hibernate.Session;
@@ -45,7 +40,6 @@ import io.onedev.server.event.codecomment.CodeCommentCreated;
 import io.onedev.server.event.codecomment.CodeCommentEvent;
 import io.onedev.server.event.codecomment.CodeCommentUpdated;
 import io.onedev.server.git.GitUtils;
-import io.onedev.server.git.command.RevListCommand;
 import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.CodeCommentRelation;
@@ -68,8 +62,6 @@ import io.onedev.server.util.query.CodeCommentQueryConstants;
 @Singleton
 public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment> implements CodeCommentManager {
 
-	private final int MAX_HISTORY_COMMITS_TO_CHECK = 50000;
-	
 	private final int MAX_HISTORY_FILES_TO_CHECK = 500;
 	
 	private final ListenerRegistry listenerRegistry;
@@ -151,11 +143,15 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 		
 		Map<String, Map<String, List<CodeComment>>> possibleComments = new HashMap<>();
 		Collection<String> possiblePaths = Sets.newHashSet(path);
-		possiblePaths.addAll(commitInfoManager.getHistoryPaths(project, path));
-		for (String possiblePath: possiblePaths) {
+		possiblePaths.addAll(commitInfoManager.getHistoryPaths(project, commitId, path));
+		
+		// Query in chunks to stay within parameter limit of databases 
+		for (List<String> possiblePathsChunk: Lists.partition(new ArrayList<>(possiblePaths), 
+				io.onedev.server.search.entity.EntityCriteria.IN_CLAUSE_LIMIT)) {
 			EntityCriteria<CodeComment> criteria = EntityCriteria.of(CodeComment.class);
-			criteria.add(Restrictions.eq("markPos.path", possiblePath));
+			criteria.add(Restrictions.in("markPos.path", possiblePathsChunk));
 			for (CodeComment comment: query(criteria)) {
+				String possiblePath = comment.getMarkPos().getPath();
 				if (comment.getMarkPos().getCommit().equals(commitId.name()) && possiblePath.equals(path)) {
 					comments.put(comment, comment.getMarkPos().getRange());
 				} else {
@@ -176,28 +172,15 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 		}
 
 		try (RevWalk revWalk = new RevWalk(project.getRepository())) {
-			Date oldestDate = null;
 			List<RevCommit> historyCommits = new ArrayList<>();
 			for (Map.Entry<String, Map<String, List<CodeComment>>> entry: possibleComments.entrySet()) {
 				try {
-					RevCommit commit = revWalk.parseCommit(ObjectId.fromString(entry.getKey()));
-					historyCommits.add(commit);
-					PersonIdent committer = commit.getCommitterIdent();
-					if (committer != null && committer.getWhen() != null 
-							&& (oldestDate == null || committer.getWhen().before(oldestDate))) {
-						oldestDate = committer.getWhen();
-					}
+					historyCommits.add(revWalk.parseCommit(ObjectId.fromString(entry.getKey())));
 				} catch (MissingObjectException e) {
 				}
 			}
 			
-			if (oldestDate != null) {
-				RevListCommand command = new RevListCommand(project.getRepository().getDirectory());
-				command.after(DateUtils.addDays(oldestDate, -1));
-				command.revisions(Lists.newArrayList(commitId.name()));
-				command.count(MAX_HISTORY_COMMITS_TO_CHECK);
-				Set<String> revisions = new HashSet<>(command.call());
-				
+			if (!historyCommits.isEmpty()) {
 				RevCommit commit = revWalk.parseCommit(commitId);
 				List<String> newLines = GitUtils.readLines(project.getRepository(), commit, path, 
 						WhitespaceOption.DEFAULT);
@@ -210,9 +193,11 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 					}
 					
 				});
+				Collection<ObjectId> mergedCommits = commitInfoManager.filterMergedInto(
+						project, historyCommits, commitId);
 				int checkedHistoryFiles = 0;
 				for (RevCommit historyCommit: historyCommits) {
-					if (revisions.contains(historyCommit.name())) {
+					if (mergedCommits.contains(historyCommit)) {
 						Map<String, List<CodeComment>> commentsOnCommit = 
 								Preconditions.checkNotNull(possibleComments.get(historyCommit.name()));
 						for (Map.Entry<String, List<CodeComment>> pathEntry: commentsOnCommit.entrySet()) {
@@ -5,21 +5,30 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
 import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.FileUtils;
 import io.onedev.server.event.system.SystemStopping;
 import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.ExodusException;
 import jetbrains.exodus.env.Environment;
 import jetbrains.exodus.env.EnvironmentConfig;
 import jetbrains.exodus.env.Environments;
@@ -34,10 +43,39 @@ public abstract class AbstractEnvironmentManager {
 	
 	private static final long DEFAULT_LOG_FILE_SIZE = 8192;
 	
-	private static final int MEMORY_USAGE_PERCENT = 25;
+	/*
+	 * Log cache is shared by all environments and is sized on opening the first environment, 
+	 * so this is the memory budget of all environments instead of each environment
+	 */
+	private static final long LOG_CACHE_SIZE = Runtime.getRuntime().maxMemory() / 4;
+	
+	private static final long ENV_IDLE_TIMEOUT = 10*60*1000L;
+	
+	private static final long ENV_MIN_IDLE_TIME = 60*1000L;
+	
+	private static final long ENV_SWEEP_INTERVAL = 60*1000L;
+	
+	private static final int MAX_OPEN_ENVS = 500;
+	
+	private static final Logger logger = LoggerFactory.getLogger(AbstractEnvironmentManager.class);
 	
 	private final Map<String, Environment> envs = new ConcurrentHashMap<>();
 	
+	private final Map<String, Long> envAccessTimes = new ConcurrentHashMap<>();
+	
+	/*
+	 * Number of callers holding environments across transactions, guarded by lock of envs 
+	 */
+	private final Map<String, Integer> envUsages = new HashMap<>();
+	
+	private final AtomicLong lastEnvSweepTime = new AtomicLong(System.currentTimeMillis());
+	
+	private static final AtomicInteger openEnvCount = new AtomicInteger(0);
+	
+	private static final AtomicLong openedEnvCount = new AtomicLong(0);
+	
+	private static final AtomicLong evictedEnvCount = new AtomicLong(0);
+	
 	protected void checkVersion(String envKey) {
 		File versionFile = new File(getEnvDir(envKey), VERSION_FILE);
 		int versionFromFile;
@@ -70,22 +108,108 @@ public abstract class AbstractEnvironmentManager {
 	}
 	
 	protected Environment getEnv(String envKey) {
+		long now = System.currentTimeMillis();
+		envAccessTimes.put(envKey, now);
+		
 		Environment env = envs.get(envKey);
-		if (env == null) synchronized (envs) {
+		if (env == null || !env.isOpen()) synchronized (envs) {
 			env = envs.get(envKey);
-			if (env == null) {
+			if (env == null || !env.isOpen()) {
 				checkVersion(envKey);
 				EnvironmentConfig config = new EnvironmentConfig();
 				config.setEnvCloseForcedly(true);
-				config.setMemoryUsagePercentage(MEMORY_USAGE_PERCENT);
+				config.setMemoryUsage(LOG_CACHE_SIZE);
 				config.setLogFileSize(getLogFileSize());
 				env = Environments.newInstance(getEnvDir(envKey), config);
-				envs.put(envKey, env);
+				if (envs.put(envKey, env) == null)
+					openEnvCount.incrementAndGet();
+				openedEnvCount.incrementAndGet();
 			}
 		}
+		
+		long lastSweepTime = lastEnvSweepTime.get();
+		if ((now - lastSweepTime >= ENV_SWEEP_INTERVAL || envs.size() > MAX_OPEN_ENVS) 
+				&& lastEnvSweepTime.compareAndSet(lastSweepTime, now)) {
+			evictEnvs(now);
+		}
 		return env;
 	}
 	
+	/**
+	 * Get environment of specified key and keep it from being evicted until {@link #releaseEnv(String)} 
+	 * is called. Callers holding environment or its stores across multiple transactions should get 
+	 * the environment with this method, as environment might otherwise be closed between transactions
+	 */
+	protected Environment acquireEnv(String envKey) {
+		synchronized (envs) {
+			envUsages.merge(envKey, 1, Integer::sum);
+		}
+		try {
+			return getEnv(envKey);
+		} catch (Exception e) {
+			releaseEnv(envKey);
+			throw e;
+		}
+	}
+	
+	protected void releaseEnv(String envKey) {
+		envAccessTimes.put(envKey, System.currentTimeMillis());
+		synchronized (envs) {
+			envUsages.computeIfPresent(envKey, (key, value) -> value > 1? value-1: null);
+		}
+	}
+	
+	/**
+	 * Close environments idle for a long time, as well as least recently used environments if 
+	 * there are too many open environments. Environments accessed recently, acquired by callers, 
+	 * or with active transactions are never closed, and closed environments will be opened again 
+	 * on next access
+	 */
+	private void evictEnvs(long now) {
+		synchronized (envs) {
+			List<String> envKeys = new ArrayList<>(envs.keySet());
+			envKeys.sort(Comparator.comparing(it->envAccessTimes.getOrDefault(it, 0L)));
+			int envCount = envKeys.size();
+			for (String envKey: envKeys) {
+				long idleTime = now - envAccessTimes.getOrDefault(envKey, 0L);
+				if (!envUsages.containsKey(envKey) && (idleTime >= ENV_IDLE_TIMEOUT 
+						|| envCount > MAX_OPEN_ENVS && idleTime >= ENV_MIN_IDLE_TIME)) {
+					Environment env = envs.get(envKey);
+					if (closeIfInactive(env)) {
+						envs.remove(envKey);
+						envCount--;
+						openEnvCount.decrementAndGet();
+						evictedEnvCount.incrementAndGet();
+						logger.debug("Closed idle environment (manager: {}, key: {})", 
+								getClass().getSimpleName(), envKey);
+					}
+				} 
+			}
+		}
+	}
+	
+	private boolean closeIfInactive(Environment env) {
+		if (env.isOpen()) {
+			// Xodus refuses to close environment with active transactions if not closing forcedly 
+			env.getEnvironmentConfig().setEnvCloseForcedly(false);
+			try {
+				env.close();
+			} catch (ExodusException e) {
+				env.getEnvironmentConfig().setEnvCloseForcedly(true);
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return
+	 * 			status of environments of all environment managers
+	 */
+	public static EnvironmentStatus getStatus() {
+		return new EnvironmentStatus(openEnvCount.get(), openedEnvCount.get(), evictedEnvCount.get());
+	}
+	
 	protected Store getStore(Environment env, String storeName) {
 		return env.computeInTransaction(new TransactionalComputable<Store>() {
 		    @Override
@@ -98,17 +222,25 @@ public abstract class AbstractEnvironmentManager {
 	protected void removeEnv(String envKey) {
 		synchronized (envs) {
 			Environment env = envs.remove(envKey);
-			if (env != null)
-				env.close();
+			envAccessTimes.remove(envKey);
+			if (env != null) {
+				openEnvCount.decrementAndGet();
+				if (env.isOpen())
+					env.close();
+			}
 		}
 	}
 
 	@Listen
 	public void on(SystemStopping event) {
 		synchronized (envs) {
-			for (Environment env: envs.values())
-				env.close();
+			for (Environment env: envs.values()) {
+				openEnvCount.decrementAndGet();
+				if (env.isOpen())
+					env.close();
+			}
 			envs.clear();
+			envAccessTimes.clear();
 		}
 	}
 
@@ -0,0 +1,523 @@
+package io.onedev.server.infomanager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable snapshot of commit graph of a project. Commits are identified by dense ordinals
+ * assigned in topological order, that is, parents of a commit always have smaller ordinals than
+ * the commit itself. Commit ids and parent edges are stored as packed arrays in memory mapped
+ * files, so that descendant and ancestor closures can be calculated with a single sweep over
+ * ordinals into a bitset without allocating objects per commit. Generation number of each commit
+ * (one more than maximum generation of its parents) is also stored to prune ancestor checks.
+ * <p>
+ * Snapshot is stored as a chain of chunk files, each holding a continuous range of ordinals. New
+ * commits are appended as a new chunk, and trailing chunks are merged when the last chunk grows 
+ * to half size of its predecessor. This keeps number of chunks logarithmic to number of commits, 
+ * while each commit is only rewritten a logarithmic number of times.
+ *
+ * Chunk file is named <tt>graph.&lt;start&gt;.&lt;end&gt;</tt> with below layout:
+ * <pre>
+ * int commitCount
+ * int edgeCount
+ * byte[commitCount*20] commit ids indexed by ordinal-start
+ * int[commitCount+1] start of parents of each ordinal in parent array of the chunk
+ * int[edgeCount] parent ordinals
+ * int[commitCount] generation numbers
+ * </pre>
+ */
+class CommitGraph {
+
+	private static final Logger logger = LoggerFactory.getLogger(CommitGraph.class);
+
+	private static final String FILE_PREFIX = "graph.";
+
+	private static final int HEADER_SIZE = 2*Integer.BYTES;
+
+	private final Chunk[] chunks;
+
+	private final int count;
+
+	private CommitGraph(Chunk[] chunks) {
+		this.chunks = chunks;
+		count = chunks.length!=0?chunks[chunks.length-1].end:0;
+	}
+
+	private Chunk getChunk(int ordinal) {
+		int low = 0;
+		int high = chunks.length-1;
+		while (low < high) {
+			int mid = (low+high+1) >>> 1;
+			if (chunks[mid].start <= ordinal)
+				low = mid;
+			else
+				high = mid-1;
+		}
+		return chunks[low];
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public ObjectId getCommit(int ordinal) {
+		return getChunk(ordinal).getCommit(ordinal);
+	}
+
+	public int getGeneration(int ordinal) {
+		return getChunk(ordinal).getGeneration(ordinal);
+	}
+	
+	public int[] getParents(int ordinal) {
+		return getChunk(ordinal).getParents(ordinal);
+	}
+
+	/**
+	 * Get descendants of specified commits, including specified commits themselves
+	 *
+	 * @param ancestors
+	 * 			ordinals of ancestor commits
+	 * @return
+	 * 			ordinals of descendant commits
+	 */
+	public BitSet getDescendants(BitSet ancestors) {
+		BitSet descendants = (BitSet) ancestors.clone();
+		int from = ancestors.nextSetBit(0);
+		if (from != -1) {
+			for (Chunk chunk: chunks) {
+				for (int ordinal=Math.max(from+1, chunk.start); ordinal<chunk.end; ordinal++) {
+					if (!descendants.get(ordinal)) {
+						int to = chunk.getParentsFrom(ordinal+1);
+						for (int i=chunk.getParentsFrom(ordinal); i<to; i++) {
+							if (descendants.get(chunk.getParent(i))) {
+								descendants.set(ordinal);
+								break;
+							}
+						}
+					}
+				}
+			}
+		}
+		return descendants;
+	}
+
+	/**
+	 * Get ancestors of specified commits, including specified commits themselves
+	 *
+	 * @param descendants
+	 * 			ordinals of descendant commits
+	 * @return
+	 * 			ordinals of ancestor commits
+	 */
+	public BitSet getAncestors(BitSet descendants) {
+		BitSet ancestors = (BitSet) descendants.clone();
+		int from = Math.min(descendants.length(), count)-1;
+		for (int index=chunks.length-1; index>=0; index--) {
+			Chunk chunk = chunks[index];
+			for (int ordinal=Math.min(from, chunk.end-1); ordinal>=chunk.start; ordinal--) {
+				if (ancestors.get(ordinal)) {
+					int to = chunk.getParentsFrom(ordinal+1);
+					for (int i=chunk.getParentsFrom(ordinal); i<to; i++)
+						ancestors.set(chunk.getParent(i));
+				}
+			}
+		}
+		return ancestors;
+	}
+
+	/**
+	 * Get ancestors of specified commit, including the commit itself
+	 * 
+	 * @param descendant
+	 * 			ordinal of descendant commit
+	 * @param knownAncestors
+	 * 			known ancestors of the descendant commit. Ancestors of commits in this set are 
+	 * 			assumed to be in this set as well and will not be visited again. Pass <tt>null</tt> 
+	 * 			to calculate from scratch
+	 * @return
+	 * 			ordinals of ancestor commits
+	 */
+	public BitSet getAncestors(int descendant, @Nullable BitSet knownAncestors) {
+		BitSet ancestors = knownAncestors!=null?(BitSet)knownAncestors.clone():new BitSet();
+		BitSet pending = new BitSet();
+		pending.set(descendant);
+		for (int ordinal=descendant; ordinal>=0; ordinal=pending.previousSetBit(ordinal-1)) {
+			if (!ancestors.get(ordinal)) {
+				ancestors.set(ordinal);
+				Chunk chunk = getChunk(ordinal);
+				int to = chunk.getParentsFrom(ordinal+1);
+				for (int i=chunk.getParentsFrom(ordinal); i<to; i++) {
+					int parent = chunk.getParent(i);
+					if (!ancestors.get(parent))
+						pending.set(parent);
+				}
+			}
+		}
+		return ancestors;
+	}
+	
+	/**
+	 * Check if a commit is ancestor of another commit. Commits with ordinal or generation not 
+	 * larger than the ancestor commit are not visited, as they can not reach it 
+	 * 
+	 * @param ancestor
+	 * 			ordinal of ancestor commit
+	 * @param descendant
+	 * 			ordinal of descendant commit
+	 * @return
+	 * 			<tt>true</tt> if ancestor is the same as or reachable from descendant
+	 */
+	public boolean isAncestor(int ancestor, int descendant) {
+		if (ancestor == descendant)
+			return true;
+		int ancestorGeneration = getGeneration(ancestor);
+		if (ancestor > descendant || ancestorGeneration >= getGeneration(descendant))
+			return false;
+		
+		// Only commits between ancestor and descendant need to be tracked, index them relatively 
+		BitSet pending = new BitSet(descendant-ancestor+1);
+		pending.set(descendant-ancestor);
+		for (int index=descendant-ancestor; index>0; index=pending.previousSetBit(index-1)) {
+			int ordinal = index + ancestor;
+			Chunk chunk = getChunk(ordinal);
+			int to = chunk.getParentsFrom(ordinal+1);
+			for (int i=chunk.getParentsFrom(ordinal); i<to; i++) {
+				int parent = chunk.getParent(i);
+				if (parent == ancestor)
+					return true;
+				else if (parent > ancestor && getGeneration(parent) > ancestorGeneration)
+					pending.set(parent-ancestor);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Open latest commit graph snapshot in specified directory
+	 *
+	 * @return
+	 * 			latest snapshot, or <tt>null</tt> if no snapshot exists yet
+	 */
+	@Nullable
+	public static CommitGraph open(File dir) {
+		List<File> chunkFiles = getChunkFiles(dir);
+		if (!chunkFiles.isEmpty()) {
+			List<Chunk> chunks = new ArrayList<>();
+			try {
+				for (File chunkFile: chunkFiles) 
+					chunks.add(Chunk.map(chunkFile, getRange(chunkFile)[0]));
+				return new CommitGraph(chunks.toArray(new Chunk[0]));
+			} catch (IOException e) {
+				logger.error("Error opening commit graph, will rebuild", e);
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Get start and end ordinal of specified chunk file, or null if it is not a chunk file
+	 */
+	@Nullable
+	private static int[] getRange(File file) {
+		String name = file.getName();
+		if (name.startsWith(FILE_PREFIX)) {
+			String[] fields = name.substring(FILE_PREFIX.length()).split("\\.");
+			if (fields.length == 2) {
+				try {
+					int start = Integer.parseInt(fields[0]);
+					int end = Integer.parseInt(fields[1]);
+					if (start < end)
+						return new int[] {start, end};
+				} catch (NumberFormatException e) {
+				}
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Get longest chain of chunk files starting from ordinal 0
+	 */
+	private static List<File> getChunkFiles(File dir) {
+		Map<Integer, File> chunkFiles = new HashMap<>();
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file: files) {
+				int[] range = getRange(file);
+				if (range != null) {
+					File chunkFile = chunkFiles.get(range[0]);
+					if (chunkFile == null || getRange(chunkFile)[1] < range[1])
+						chunkFiles.put(range[0], file);
+				}
+			}
+		}
+		List<File> chain = new ArrayList<>();
+		File chunkFile = chunkFiles.get(0);
+		while (chunkFile != null) {
+			chain.add(chunkFile);
+			chunkFile = chunkFiles.get(getRange(chunkFile)[1]);
+		}
+		return chain;
+	}
+
+	/**
+	 * Write a new snapshot by appending commits to specified base snapshot. Commits of base 
+	 * snapshot are not rewritten except when trailing chunks are merged. Files in the directory 
+	 * not used by the new snapshot will be deleted if possible
+	 *
+	 * @param base
+	 * 			base snapshot to append to, <tt>null</tt> to write from scratch
+	 * @param count
+	 * 			number of commits of new snapshot
+	 * @param source
+	 * 			source to read commits not contained in base snapshot
+	 */
+	public static CommitGraph write(File dir, @Nullable CommitGraph base, int count, Source source) {
+		int baseCount = base!=null?base.count:0;
+		List<Chunk> chunks = new ArrayList<>();
+		if (base != null) {
+			for (Chunk chunk: base.chunks)
+				chunks.add(chunk);
+		}
+		
+		try {
+			if (count > baseCount) {
+				int newCount = count - baseCount;
+				byte[] commits = new byte[newCount*20];
+				int[] offsets = new int[newCount+1];
+				int[] parents = new int[newCount];
+				int edgeCount = 0;
+				int[] generations = new int[newCount];
+				for (int ordinal=baseCount; ordinal<count; ordinal++) {
+					System.arraycopy(source.getCommit(ordinal), 0, commits, (ordinal-baseCount)*20, 20);
+					int generation = 0;
+					for (int parent: source.getParents(ordinal)) {
+						if (edgeCount == parents.length)
+							parents = Arrays.copyOf(parents, edgeCount*2);
+						parents[edgeCount++] = parent;
+						int parentGeneration;
+						if (parent < baseCount)
+							parentGeneration = base.getGeneration(parent);
+						else
+							parentGeneration = generations[parent-baseCount];
+						if (parentGeneration > generation)
+							generation = parentGeneration;
+					}
+					generations[ordinal-baseCount] = generation + 1;
+					offsets[ordinal-baseCount+1] = edgeCount;
+				}
+				chunks.add(writeChunk(dir, baseCount, commits, offsets, 
+						Arrays.copyOf(parents, edgeCount), generations));
+				
+				while (chunks.size() >= 2 
+						&& chunks.get(chunks.size()-2).getCount() <= chunks.get(chunks.size()-1).getCount()*2) {
+					Chunk last = chunks.remove(chunks.size()-1);
+					Chunk previous = chunks.remove(chunks.size()-1);
+					chunks.add(merge(dir, previous, last));
+				}
+			}
+			
+			/*
+			 * Unused files might still be mapped on some platforms and can not be deleted. They
+			 * will be deleted when next snapshot is written
+			 */
+			Set<String> usedFileNames = new HashSet<>();
+			for (Chunk chunk: chunks)
+				usedFileNames.add(getFileName(chunk.start, chunk.end));
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File file: files) {
+					if (file.getName().startsWith(FILE_PREFIX) && !usedFileNames.contains(file.getName()))
+						file.delete();
+				}
+			}
+			return new CommitGraph(chunks.toArray(new Chunk[0]));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String getFileName(int start, int end) {
+		return FILE_PREFIX + start + "." + end;
+	}
+	
+	private static Chunk merge(File dir, Chunk first, Chunk second) throws IOException {
+		int count = first.getCount() + second.getCount();
+		byte[] commits = new byte[count*20];
+		System.arraycopy(first.getCommits(), 0, commits, 0, first.getCount()*20);
+		System.arraycopy(second.getCommits(), 0, commits, first.getCount()*20, second.getCount()*20);
+		
+		int firstEdgeCount = first.getEdgeCount();
+		int[] offsets = new int[count+1];
+		System.arraycopy(first.getOffsets(), 0, offsets, 0, first.getCount());
+		int[] secondOffsets = second.getOffsets();
+		for (int i=0; i<secondOffsets.length; i++)
+			offsets[first.getCount()+i] = firstEdgeCount + secondOffsets[i];
+		
+		int[] parents = new int[firstEdgeCount + second.getEdgeCount()];
+		System.arraycopy(first.getParents(), 0, parents, 0, firstEdgeCount);
+		System.arraycopy(second.getParents(), 0, parents, firstEdgeCount, second.getEdgeCount());
+		
+		int[] generations = new int[count];
+		System.arraycopy(first.getGenerations(), 0, generations, 0, first.getCount());
+		System.arraycopy(second.getGenerations(), 0, generations, first.getCount(), second.getCount());
+		
+		return writeChunk(dir, first.start, commits, offsets, parents, generations);
+	}
+	
+	private static Chunk writeChunk(File dir, int start, byte[] commits, int[] offsets, 
+			int[] parents, int[] generations) throws IOException {
+		int count = generations.length;
+		File file = new File(dir, getFileName(start, start+count));
+		File tempFile = new File(dir, file.getName() + ".tmp");
+		try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			os.writeInt(count);
+			os.writeInt(parents.length);
+			os.write(commits);
+			writeInts(os, offsets);
+			writeInts(os, parents);
+			writeInts(os, generations);
+		}
+		file.delete();
+		if (!tempFile.renameTo(file))
+			throw new IOException("Unable to rename '" + tempFile + "' to '" + file + "'");
+		return Chunk.map(file, start);
+	}
+	
+	private static void writeInts(DataOutputStream os, int[] values) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(values.length*Integer.BYTES);
+		buffer.asIntBuffer().put(values);
+		os.write(buffer.array());
+	}
+	
+	public static interface Source {
+
+		byte[] getCommit(int ordinal);
+
+		int[] getParents(int ordinal);
+
+	}
+
+	private static class Chunk {
+		
+		final MappedByteBuffer buffer;
+		
+		final int start;
+		
+		final int end;
+		
+		final int offsetsStart;
+
+		final int parentsStart;
+		
+		final int generationsStart;
+		
+		Chunk(MappedByteBuffer buffer, int start) {
+			this.buffer = buffer;
+			this.start = start;
+			int count = buffer.getInt(0);
+			end = start + count;
+			offsetsStart = HEADER_SIZE + count*20;
+			parentsStart = offsetsStart + (count+1)*Integer.BYTES;
+			generationsStart = parentsStart + getEdgeCount()*Integer.BYTES;
+		}
+		
+		static Chunk map(File file, int start) throws IOException {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+				return new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), start);
+			}
+		}
+		
+		int getCount() {
+			return end - start;
+		}
+		
+		int getEdgeCount() {
+			return buffer.getInt(Integer.BYTES);
+		}
+		
+		ObjectId getCommit(int ordinal) {
+			byte[] bytes = new byte[20];
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.position(HEADER_SIZE + (ordinal-start)*20);
+			duplicate.get(bytes);
+			return ObjectId.fromRaw(bytes);
+		}
+
+		/*
+		 * Get index of first parent of specified ordinal in parent array of this chunk. 
+		 * Specified ordinal may be end of this chunk to get end of parent array 
+		 */
+		int getParentsFrom(int ordinal) {
+			return buffer.getInt(offsetsStart + (ordinal-start)*Integer.BYTES);
+		}
+
+		int getParent(int edgeIndex) {
+			return buffer.getInt(parentsStart + edgeIndex*Integer.BYTES);
+		}
+
+		int getGeneration(int ordinal) {
+			return buffer.getInt(generationsStart + (ordinal-start)*Integer.BYTES);
+		}
+		
+		int[] getParents(int ordinal) {
+			int from = getParentsFrom(ordinal);
+			int to = getParentsFrom(ordinal+1);
+			int[] parents = new int[to-from];
+			for (int i=from; i<to; i++)
+				parents[i-from] = getParent(i);
+			return parents;
+		}
+		
+		byte[] getCommits() {
+			byte[] commits = new byte[getCount()*20];
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.position(HEADER_SIZE);
+			duplicate.get(commits);
+			return commits;
+		}
+		
+		private int[] getInts(int from, int length) {
+			int[] values = new int[length];
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.position(from);
+			duplicate.asIntBuffer().get(values);
+			return values;
+		}
+		
+		int[] getOffsets() {
+			return getInts(offsetsStart, getCount()+1);
+		}
+		
+		int[] getParents() {
+			return getInts(parentsStart, getEdgeCount());
+		}
+		
+		int[] getGenerations() {
+			return getInts(generationsStart, getCount());
+		}
+		
+	}
+	
+}
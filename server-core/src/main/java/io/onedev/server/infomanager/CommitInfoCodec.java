@@ -0,0 +1,343 @@
+package io.onedev.server.infomanager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import io.onedev.server.git.Contribution;
+import io.onedev.server.git.NameAndEmail;
+
+/**
+ * Compact binary encoding of values stored in commit info environment. Every encoded value
+ * starts with a format byte, integers are written as varints, and repeated strings are
+ * written only once and referenced by their position in a string table afterwards.
+ *
+ * Stored data is rebuilt from git history whenever environment version changes, so format
+ * changes here should be accompanied by increasing INFO_VERSION of {@link DefaultCommitInfoManager}
+ */
+class CommitInfoCodec {
+
+	static final byte FORMAT_VERSION = 1;
+
+	private CommitInfoCodec() {
+	}
+
+	public static byte[] encodeUser(NameAndEmail user) {
+		Encoder encoder = new Encoder();
+		writeUser(encoder, user);
+		return encoder.toBytes();
+	}
+
+	public static NameAndEmail decodeUser(byte[] bytes) {
+		return readUser(new Decoder(bytes));
+	}
+
+	public static byte[] encodeUsers(Collection<NameAndEmail> users) {
+		Encoder encoder = new Encoder();
+		encoder.writeVarInt(users.size());
+		for (NameAndEmail user: users)
+			writeUser(encoder, user);
+		return encoder.toBytes();
+	}
+
+	public static Set<NameAndEmail> decodeUsers(@Nullable byte[] bytes) {
+		Set<NameAndEmail> users = new HashSet<>();
+		if (bytes != null) {
+			Decoder decoder = new Decoder(bytes);
+			int size = decoder.readVarInt();
+			for (int i=0; i<size; i++)
+				users.add(readUser(decoder));
+		}
+		return users;
+	}
+
+	private static void writeUser(Encoder encoder, NameAndEmail user) {
+		encoder.writeNullableString(user.getName());
+		encoder.writeNullableString(user.getEmailAddress());
+	}
+
+	private static NameAndEmail readUser(Decoder decoder) {
+		return new NameAndEmail(decoder.readNullableString(), decoder.readNullableString());
+	}
+
+	public static byte[] encodeLineStats(Map<Integer, Map<String, Integer>> lineStats) {
+		Integer[] days = lineStats.keySet().toArray(new Integer[0]);
+		Arrays.sort(days);
+		Encoder encoder = new Encoder();
+		encoder.writeVarInt(days.length);
+		int prevDay = 0;
+		for (int day: days) {
+			encoder.writeVarInt(day - prevDay);
+			prevDay = day;
+			Map<String, Integer> lineStatsOnDay = lineStats.get(day);
+			encoder.writeVarInt(lineStatsOnDay.size());
+			for (Map.Entry<String, Integer> entry: lineStatsOnDay.entrySet()) {
+				encoder.writeTableString(entry.getKey());
+				encoder.writeZigZagInt(entry.getValue());
+			}
+		}
+		return encoder.toBytes();
+	}
+
+	public static Map<Integer, Map<String, Integer>> decodeLineStats(@Nullable byte[] bytes) {
+		Map<Integer, Map<String, Integer>> lineStats = new HashMap<>();
+		if (bytes != null) {
+			Decoder decoder = new Decoder(bytes);
+			int size = decoder.readVarInt();
+			int day = 0;
+			for (int i=0; i<size; i++) {
+				day += decoder.readVarInt();
+				int sizeOnDay = decoder.readVarInt();
+				Map<String, Integer> lineStatsOnDay = new HashMap<>();
+				for (int j=0; j<sizeOnDay; j++)
+					lineStatsOnDay.put(decoder.readTableString(), decoder.readZigZagInt());
+				lineStats.put(day, lineStatsOnDay);
+			}
+		}
+		return lineStats;
+	}
+
+	public static byte[] encodeContributions(Map<Integer, Contribution> contributions) {
+		Integer[] keys = contributions.keySet().toArray(new Integer[0]);
+		Arrays.sort(keys);
+		Encoder encoder = new Encoder();
+		encoder.writeVarInt(keys.length);
+		int prevKey = 0;
+		for (int key: keys) {
+			encoder.writeVarInt(key - prevKey);
+			prevKey = key;
+			Contribution contribution = contributions.get(key);
+			encoder.writeVarInt(contribution.getCommits());
+			encoder.writeVarInt(contribution.getAdditions());
+			encoder.writeVarInt(contribution.getDeletions());
+		}
+		return encoder.toBytes();
+	}
+
+	public static Map<Integer, Contribution> decodeContributions(@Nullable byte[] bytes) {
+		Map<Integer, Contribution> contributions = new HashMap<>();
+		if (bytes != null) {
+			Decoder decoder = new Decoder(bytes);
+			int size = decoder.readVarInt();
+			int key = 0;
+			for (int i=0; i<size; i++) {
+				key += decoder.readVarInt();
+				contributions.put(key, new Contribution(decoder.readVarInt(),
+						decoder.readVarInt(), decoder.readVarInt()));
+			}
+		}
+		return contributions;
+	}
+
+	public static byte[] encodeRenames(List<PathRename> renames) {
+		Encoder encoder = new Encoder();
+		encoder.writeVarInt(renames.size());
+		for (PathRename rename: renames) {
+			encoder.writeVarInt(rename.getOldPathIndex());
+			encoder.writeVarInt(rename.getCommitOrdinal());
+		}
+		return encoder.toBytes();
+	}
+
+	public static List<PathRename> decodeRenames(@Nullable byte[] bytes) {
+		List<PathRename> renames = new ArrayList<>();
+		if (bytes != null) {
+			Decoder decoder = new Decoder(bytes);
+			int size = decoder.readVarInt();
+			for (int i=0; i<size; i++)
+				renames.add(new PathRename(decoder.readVarInt(), decoder.readVarInt()));
+		}
+		return renames;
+	}
+
+	static class Encoder {
+
+		private byte[] buffer = new byte[64];
+
+		private int pos;
+
+		private final Map<String, Integer> stringTable = new HashMap<>();
+
+		Encoder() {
+			buffer[pos++] = FORMAT_VERSION;
+		}
+
+		private void ensureCapacity(int additional) {
+			if (pos + additional > buffer.length)
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length*2, pos+additional));
+		}
+
+		void writeByte(int value) {
+			ensureCapacity(1);
+			buffer[pos++] = (byte) value;
+		}
+
+		void writeVarInt(int value) {
+			ensureCapacity(5);
+			while ((value & ~0x7F) != 0) {
+				buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[pos++] = (byte) value;
+		}
+
+		void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[pos++] = (byte) value;
+		}
+
+		void writeZigZagInt(int value) {
+			writeVarInt((value << 1) ^ (value >> 31));
+		}
+
+		void writeZigZagLong(long value) {
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+
+		void writeString(String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeBytes(bytes, 0, bytes.length);
+		}
+
+		void writeBytes(byte[] bytes, int from, int length) {
+			writeVarInt(length);
+			ensureCapacity(length);
+			System.arraycopy(bytes, from, buffer, pos, length);
+			pos += length;
+		}
+
+		void writeNullableString(@Nullable String value) {
+			if (value != null) {
+				writeByte(1);
+				writeString(value);
+			} else {
+				writeByte(0);
+			}
+		}
+
+		/**
+		 * Write string via string table. First occurrence of a string is written inline and
+		 * remembered, and subsequent occurrences are written as index into the table
+		 */
+		void writeTableString(String value) {
+			Integer index = stringTable.get(value);
+			if (index != null) {
+				writeVarInt((index<<1) | 1);
+			} else {
+				stringTable.put(value, stringTable.size());
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				writeVarInt(bytes.length<<1);
+				ensureCapacity(bytes.length);
+				System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+				pos += bytes.length;
+			}
+		}
+
+		byte[] toBytes() {
+			return Arrays.copyOf(buffer, pos);
+		}
+
+	}
+
+	static class Decoder {
+
+		private final byte[] buffer;
+
+		private int pos;
+
+		private final List<String> stringTable = new ArrayList<>();
+
+		Decoder(byte[] buffer) {
+			this.buffer = buffer;
+			if (buffer.length == 0 || buffer[0] != FORMAT_VERSION) {
+				throw new IllegalStateException("Unexpected commit info format version: "
+						+ (buffer.length != 0? buffer[0]: "<empty>"));
+			}
+			pos = 1;
+		}
+
+		int readByte() {
+			return buffer[pos++];
+		}
+
+		int readVarInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer[pos++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer[pos++];
+				value |= (long)(b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		int readZigZagInt() {
+			int value = readVarInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		long readZigZagLong() {
+			long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		String readString() {
+			int length = readVarInt();
+			String value = new String(buffer, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			return value;
+		}
+
+		@Nullable
+		String readNullableString() {
+			if (readByte() != 0)
+				return readString();
+			else
+				return null;
+		}
+
+		String readTableString() {
+			int header = readVarInt();
+			if ((header & 1) != 0) {
+				return stringTable.get(header>>>1);
+			} else {
+				int length = header>>>1;
+				String value = new String(buffer, pos, length, StandardCharsets.UTF_8);
+				pos += length;
+				stringTable.add(value);
+				return value;
+			}
+		}
+
+		boolean hasRemaining() {
+			return pos < buffer.length;
+		}
+
+	}
+
+}
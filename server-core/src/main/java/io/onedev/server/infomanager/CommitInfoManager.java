@@ -15,7 +15,15 @@ import io.onedev.server.util.Day;
 
 public interface CommitInfoManager {
 	
-	List<String> getFiles(Project project);
+	/**
+	 * Get index of files touched by collected commits of specified project
+	 * 
+	 * @param project
+	 * 			project to get files for
+	 * @return
+	 * 			index of file paths
+	 */
+	PathIndex getFiles(Project project);
 	
 	int getCommitCount(Project project, User user, String path);
 	
@@ -35,10 +43,67 @@ public interface CommitInfoManager {
 	 * 			descendant commits
 	 */
 	Collection<ObjectId> getDescendants(Project project, Collection<ObjectId> ancestors);
+
+	/**
+	 * Given a descendant commit, get all its ancestor commits including the descendant commit itself.
+	 * The result might be incomplete if some commits have not be cached yet
+	 *
+	 * @param project
+	 * 			project to get ancestor commits
+	 * @param descendants
+	 * 			for which commits to get ancestors
+	 * @return
+	 * 			ancestor commits
+	 */
+	Collection<ObjectId> getAncestors(Project project, Collection<ObjectId> descendants);
+
+	/**
+	 * Check if base commit is merged into tip commit. This is answered from collected commit graph
+	 * and branch reachability bitmaps, and falls back to git if tip commit is not collected yet
+	 *
+	 * @param project
+	 * 			project to check commits in
+	 * @param base
+	 * 			base commit
+	 * @param tip
+	 * 			tip commit
+	 * @return
+	 * 			<tt>true</tt> if base commit is the same as or an ancestor of tip commit
+	 */
+	boolean isMergedInto(Project project, ObjectId base, ObjectId tip);
 	
+	/**
+	 * Get base commits merged into tip commit. This is the batch version of 
+	 * {@link #isMergedInto(Project, ObjectId, ObjectId)} which loads commit graph and reachability 
+	 * bitmap of the tip only once
+	 *
+	 * @param project
+	 * 			project to check commits in
+	 * @param bases
+	 * 			base commits to check
+	 * @param tip
+	 * 			tip commit
+	 * @return
+	 * 			base commits being the same as or ancestors of tip commit
+	 */
+	Collection<ObjectId> filterMergedInto(Project project, Collection<? extends ObjectId> bases, ObjectId tip);
+
 	void cloneInfo(Project from, Project to);
 	
-	Collection<String> getHistoryPaths(Project project, String path);
+	/**
+	 * Get history paths of specified path, following renames recorded in collected commits
+	 * 
+	 * @param project
+	 * 			project to get history paths for
+	 * @param commitId
+	 * 			commit to get history paths at. Only renames made in this commit or its ancestors 
+	 * 			are followed. All renames are followed if this commit is not collected yet
+	 * @param path
+	 * 			path to get history paths for
+	 * @return
+	 * 			specified path and all paths it was renamed from
+	 */
+	Collection<String> getHistoryPaths(Project project, ObjectId commitId, String path);
 	
 	/**
 	 * Get overall contributions
@@ -0,0 +1,87 @@
+package io.onedev.server.infomanager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+
+import io.onedev.server.util.Day;
+
+/**
+ * Buckets accounting days with contributions in a day range. Each day in the range is accounted
+ * by exactly one bucket: its month if the whole month is in range, otherwise its week if the whole
+ * week is in range and does not overlap with any accounted month, otherwise the day itself.
+ * Months and weeks are identified by day value of their first day, with weeks starting on Monday
+ */
+class ContributionBuckets {
+
+	private final int fromDayValue;
+
+	private final int toDayValue;
+
+	private final Set<Integer> months = new HashSet<>();
+
+	private final Set<Integer> weeks = new HashSet<>();
+
+	private final Set<Integer> days = new HashSet<>();
+
+	/**
+	 * @param dayValues
+	 * 			values of days with contributions. Days out of range are ignored
+	 */
+	public ContributionBuckets(Collection<Integer> dayValues, Day fromDay, Day toDay) {
+		fromDayValue = fromDay.getValue();
+		toDayValue = toDay.getValue();
+		for (int dayValue: dayValues) {
+			if (dayValue >= fromDayValue && dayValue <= toDayValue) {
+				int monthValue = getMonthValue(dayValue);
+				if (isMonthCovered(monthValue)) {
+					months.add(monthValue);
+				} else {
+					int weekValue = getWeekValue(dayValue);
+					int weekEndValue = new Day(new DateTime(new Day(weekValue).getDate()).plusDays(6)).getValue();
+					if (isCovered(weekValue, weekEndValue)
+							&& !isMonthCovered(getMonthValue(weekValue))
+							&& !isMonthCovered(getMonthValue(weekEndValue))) {
+						weeks.add(weekValue);
+					} else {
+						days.add(dayValue);
+					}
+				}
+			}
+		}
+	}
+
+	public static int getWeekValue(int dayValue) {
+		DateTime dateTime = new DateTime(new Day(dayValue).getDate());
+		return new Day(dateTime.withDayOfWeek(DateTimeConstants.MONDAY)).getValue();
+	}
+
+	public static int getMonthValue(int dayValue) {
+		return (dayValue & 0xffffff00) | 1;
+	}
+
+	boolean isCovered(int fromValue, int toValue) {
+		return fromValue >= fromDayValue && toValue <= toDayValue;
+	}
+
+	boolean isMonthCovered(int monthValue) {
+		DateTime monthEnd = new DateTime(new Day(monthValue).getDate()).dayOfMonth().withMaximumValue();
+		return isCovered(monthValue, new Day(monthEnd).getValue());
+	}
+
+	public Set<Integer> getMonths() {
+		return months;
+	}
+
+	public Set<Integer> getWeeks() {
+		return weeks;
+	}
+
+	public Set<Integer> getDays() {
+		return days;
+	}
+
+}
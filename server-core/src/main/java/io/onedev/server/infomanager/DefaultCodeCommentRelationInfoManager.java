@@ -113,18 +113,24 @@ public class DefaultCodeCommentRelationInfoManager extends AbstractEnvironmentMa
 
 			@Override
 			public void doWorks(Collection<Prioritized> works) {
-				boolean hasMore;
-				do {
-					// do the work batch by batch to avoid consuming too much memory
-					hasMore = sessionManager.call(new Callable<Boolean>() {
-
-						@Override
-						public Boolean call() throws Exception {
-							return collect(projectManager.load(projectId));
-						}
-						
-					});
-				} while (hasMore);
+				// Environment is held across transactions while collecting
+				acquireEnv(projectId.toString());
+				try {
+					boolean hasMore;
+					do {
+						// do the work batch by batch to avoid consuming too much memory
+						hasMore = sessionManager.call(new Callable<Boolean>() {
+	
+							@Override
+							public Boolean call() throws Exception {
+								return collect(projectManager.load(projectId));
+							}
+							
+						});
+					} while (hasMore);
+				} finally {
+					releaseEnv(projectId.toString());
+				}
 			}
 			
 		};
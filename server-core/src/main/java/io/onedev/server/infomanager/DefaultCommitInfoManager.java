@@ -2,10 +2,12 @@ package io.onedev.server.infomanager;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -13,19 +15,21 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.commons.lang3.SerializationUtils;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
@@ -38,11 +42,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Splitter;
+import com.google.common.collect.Sets;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.FileUtils;
-import io.onedev.commons.utils.PathUtils;
+import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.event.RefUpdated;
@@ -70,11 +74,13 @@ import io.onedev.server.util.Pair;
 import io.onedev.server.util.concurrent.Prioritized;
 import io.onedev.server.util.work.BatchWorkManager;
 import io.onedev.server.util.work.BatchWorker;
+import io.onedev.server.util.work.ProjectReconciler;
 import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
 import jetbrains.exodus.backup.BackupStrategy;
 import jetbrains.exodus.backup.BackupStrategy.FileDescriptor;
 import jetbrains.exodus.backup.VirtualFileDescriptor;
+import jetbrains.exodus.env.Cursor;
 import jetbrains.exodus.env.Environment;
 import jetbrains.exodus.env.Store;
 import jetbrains.exodus.env.Transaction;
@@ -86,7 +92,11 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultCommitInfoManager.class);
 	
-	private static final int INFO_VERSION = 8;
+	/*
+	 * Increase this whenever format of stored info changes. Environments of older versions 
+	 * will be cleaned and collected again from git history at startup
+	 */
+	private static final int INFO_VERSION = 18;
 	
 	private static final long LOG_FILE_SIZE = 256*1024;
 	
@@ -94,19 +104,32 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private static final int MAX_COLLECTING_FILES = 50000;
 	
-	private static final int MAX_HISTORY_PATHS = 100;
-	
 	private static final String INFO_DIR = "commit";
 	
 	private static final String DEFAULT_STORE = "default";
 	
 	private static final String COMMITS_STORE = "commits";
 	
+	private static final String COMMIT_GRAPH_STORE = "commitGraph";
+	
+	private static final String REF_TIPS_STORE = "refTips";
+	
+	private static final String REF_REACHABILITY_STORE = "refReachability";
+	
+	/*
+	 * Mapping of tip ordinal to one of the refs pointing to it, so that reachability bitmap of a 
+	 * tip can be looked up without scanning all ref tips
+	 */
+	private static final String TIP_REFS_STORE = "tipRefs";
+	
 	private static final String FIX_COMMITS_STORE = "fixCommits";
 	
 	private static final String COMMIT_COUNTS_STORE = "commitCounts";
 
-	private static final String HISTORY_PATHS_STORE = "historyPaths";
+	/*
+	 * Path rename graph, mapping index of a path to renames creating it 
+	 */
+	private static final String PATH_RENAMES_STORE = "pathRenames";
 	
 	private static final String PATH_TO_INDEX_STORE = "pathToIndex";
 	
@@ -118,10 +141,27 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private static final String DAILY_CONTRIBUTIONS_STORE = "dailyContributions";
 	
+	/*
+	 * Weekly and monthly rollups of daily contributions, keyed by day value of first day 
+	 * of the week (Monday) or month. Top contributors over a long range are ranked by 
+	 * combining these buckets instead of reading every day in the range
+	 */
+	private static final String WEEKLY_CONTRIBUTIONS_STORE = "weeklyContributions";
+	
+	private static final String MONTHLY_CONTRIBUTIONS_STORE = "monthlyContributions";
+	
+	/*
+	 * Daily contributions of each user keyed by user index, so that contribution series of top 
+	 * contributors can be read without decoding contributions of all users on every day
+	 */
+	private static final String USER_CONTRIBUTIONS_STORE = "userContributions";
+	
 	private static final ByteIterable NEXT_PATH_INDEX_KEY = new StringByteIterable("nextPathIndex");
 	
 	private static final ByteIterable NEXT_USER_INDEX_KEY = new StringByteIterable("nextUserIndex");
 	
+	private static final ByteIterable NEXT_COMMIT_ORDINAL_KEY = new StringByteIterable("nextCommitOrdinal");
+	
 	private static final ByteIterable LAST_COMMIT_KEY = new StringByteIterable("lastCommit");
 	
 	private static final ByteIterable LAST_COMMIT_OF_DEFAULT_BRANCH_KEY = new StringByteIterable("lastCommitOfDefaultBranch");
@@ -130,7 +170,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private static final ByteIterable USERS_KEY = new StringByteIterable("users");
 	
-	private static final ByteIterable FILES_KEY = new StringByteIterable("files");
+	private static final ByteIterable FILE_INDEX_KEY = new StringByteIterable("fileIndex");
 	
 	private static final ByteIterable OVERALL_CONTRIBUTIONS_KEY = new StringByteIterable("overallContributions");
 	
@@ -138,6 +178,14 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private static final int PRIORITY = 100;
 	
+	/*
+	 * Collecting works submitted at startup run after works triggered by ref updates, and 
+	 * works of more active projects run first
+	 */
+	private static final int STARTUP_PRIORITY = 200;
+	
+	private static final int MAX_CACHED_TOP_CONTRIBUTORS = 50;
+	
 	private static final Map<String, String> PROGRAMMING_LANGUAGES = new HashMap<>();
 	
 	static {
@@ -278,27 +326,26 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private final SessionManager sessionManager;
 	
-	private final Map<Long, List<String>> filesCache = new ConcurrentHashMap<>();
+	private final ExecutorService executorService;
+	
+	private final Map<Long, PathIndex> filesCache = new ConcurrentHashMap<>();
 	
 	private final Map<Long, Integer> totalCommitCountCache = new ConcurrentHashMap<>();
 	
 	private final Map<Long, List<NameAndEmail>> usersCache = new ConcurrentHashMap<>();
 	
+	private final Map<Long, Map<String, List<Contributor>>> topContributorsCache = new ConcurrentHashMap<>();
+	
+	private final Map<Long, CommitGraph> commitGraphs = new ConcurrentHashMap<>();
+	
 	@Inject
 	public DefaultCommitInfoManager(ProjectManager projectManager, StorageManager storageManager, 
-			BatchWorkManager batchWorkManager, SessionManager sessionManager) {
+			BatchWorkManager batchWorkManager, SessionManager sessionManager, ExecutorService executorService) {
 		this.projectManager = projectManager;
 		this.storageManager = storageManager;
 		this.batchWorkManager = batchWorkManager;
 		this.sessionManager = sessionManager;
-	}
-	
-	private boolean isCommitCollected(byte[] commitBytes) {
-		/*
-		 * Collected commits stores an additional byte to differentiate from those not collected but with parent 
-		 * information stored 
-		 */
-		return commitBytes != null && commitBytes.length % 20 != 0;
+		this.executorService = executorService;
 	}
 	
 	private void doCollect(Project project, ObjectId commitId, String refName) {
@@ -307,14 +354,18 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		Environment env = getEnv(project.getId().toString());
 		Store defaultStore = getStore(env, DEFAULT_STORE);
 		Store commitsStore = getStore(env, COMMITS_STORE);
+		Store commitGraphStore = getStore(env, COMMIT_GRAPH_STORE);
 		Store commitCountsStore = getStore(env, COMMIT_COUNTS_STORE); 
-		Store historyPathsStore = getStore(env, HISTORY_PATHS_STORE);
+		Store pathRenamesStore = getStore(env, PATH_RENAMES_STORE);
 		Store pathToIndexStore = getStore(env, PATH_TO_INDEX_STORE);
 		Store indexToPathStore = getStore(env, INDEX_TO_PATH_STORE);
 		Store emailToIndexStore = getStore(env, EMAIL_TO_INDEX_STORE);
 		Store indexToUserStore = getStore(env, INDEX_TO_USER_STORE);
 		Store fixCommitsStore = getStore(env, FIX_COMMITS_STORE);
 		Store dailyContributionsStore = getStore(env, DAILY_CONTRIBUTIONS_STORE);	
+		Store weeklyContributionsStore = getStore(env, WEEKLY_CONTRIBUTIONS_STORE);
+		Store monthlyContributionsStore = getStore(env, MONTHLY_CONTRIBUTIONS_STORE);
+		Store userContributionsStore = getStore(env, USER_CONTRIBUTIONS_STORE);
 		
 		Repository repository = project.getRepository();
 
@@ -339,7 +390,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			}
 		});
 		
-		if (!isCommitCollected(result.getFirst())) {
+		if (result.getFirst() == null) {
 			AtomicReference<ObjectId> lastCommitIdRef = new AtomicReference<>(result.getSecond());
 			RevListCommand revList = new RevListCommand(project.getGitDir());
 			List<String> revisions = new ArrayList<>();
@@ -389,7 +440,6 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			for(ObjectId intermediateCommitId: intermediateCommitIds) {
 				env.executeInTransaction(new TransactionalExecutable() {
 					
-					@SuppressWarnings("unchecked")
 					@Override
 					public void execute(Transaction txn) {
 						AtomicInteger totalCommitCount = new AtomicInteger(readInt(defaultStore, txn, COMMIT_COUNT_KEY, 0));
@@ -400,19 +450,13 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 						
 						Map<Long, Integer> commitCountCache = new HashMap<>();
 						
-						Set<NameAndEmail> users;
-						byte[] userBytes = readBytes(defaultStore, txn, USERS_KEY);
-						if (userBytes != null)
-							users = (Set<NameAndEmail>) SerializationUtils.deserialize(userBytes);
-						else
-							users = new HashSet<>();
-
-						Map<String, Long> files;
-						byte[] fileBytes = readBytes(defaultStore, txn, FILES_KEY);
-						if (fileBytes != null)
-							files = (Map<String, Long>) SerializationUtils.deserialize(fileBytes);
-						else
-							files = new HashMap<>();
+						Map<ObjectId, List<ObjectId>> newCommits = new LinkedHashMap<>();
+						
+						// Map of commit to pairs of new path index and old path index renamed in the commit 
+						Map<ObjectId, List<Pair<Integer, Integer>>> newRenames = new HashMap<>();
+						
+						Set<NameAndEmail> users = CommitInfoCodec.decodeUsers(readBytes(defaultStore, txn, USERS_KEY));
+						Map<String, Long> files = PathIndex.fromBytes(readBytes(defaultStore, txn, FILE_INDEX_KEY)).getTimestamps();
 
 						new ElementPumper<GitCommit>() {
 
@@ -442,32 +486,13 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 								ByteIterable currentCommitKey = new CommitByteIterable(currentCommitId);
 								byte[] currentCommitBytes = readBytes(commitsStore, txn, currentCommitKey);
 								
-								if (!isCommitCollected(currentCommitBytes)) {
+								if (currentCommitBytes == null) {
 									totalCommitCount.incrementAndGet();
 									
-									byte[] newCurrentCommitBytes;
-									if (currentCommitBytes == null) {
-										newCurrentCommitBytes = new byte[1];
-									} else {
-										newCurrentCommitBytes = new byte[1+currentCommitBytes.length];
-										System.arraycopy(currentCommitBytes, 0, newCurrentCommitBytes, 1, currentCommitBytes.length);
-									}
-									
-									commitsStore.put(txn, currentCommitKey, new ArrayByteIterable(newCurrentCommitBytes));
-									
-									for (String parentCommitHash: currentCommit.getParentHashes()) {
-										ByteIterable parentCommitKey = new CommitByteIterable(ObjectId.fromString(parentCommitHash));
-										byte[] parentCommitBytes = readBytes(commitsStore, txn, parentCommitKey);
-										byte[] newParentCommitBytes;
-										if (parentCommitBytes != null) {
-											newParentCommitBytes = new byte[parentCommitBytes.length+20];
-											System.arraycopy(parentCommitBytes, 0, newParentCommitBytes, 0, parentCommitBytes.length);
-										} else {
-											newParentCommitBytes = new byte[20];
-										}
-										currentCommitId.copyRawTo(newParentCommitBytes, newParentCommitBytes.length-20);
-										commitsStore.put(txn, parentCommitKey, new ArrayByteIterable(newParentCommitBytes));
-									}
+									List<ObjectId> parentIds = new ArrayList<>();
+									for (String parentCommitHash: currentCommit.getParentHashes()) 
+										parentIds.add(ObjectId.fromString(parentCommitHash));
+									newCommits.put(currentCommitId, parentIds);
 									
 									String commitMessage = currentCommit.getSubject();
 									if (currentCommit.getBody() != null)
@@ -513,7 +538,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 												writeInt(emailToIndexStore, txn, emailKey, userIndex);
 												indexToUserStore.put(txn, 
 														new IntByteIterable(userIndex), 
-														new ArrayByteIterable(SerializationUtils.serialize(nameAndEmail)));
+														new ArrayByteIterable(CommitInfoCodec.encodeUser(nameAndEmail)));
 											}
 											
 											for (FileChange change: currentCommit.getFileChanges()) {
@@ -540,50 +565,42 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 												&& !change.getOldPath().equals(change.getNewPath())) {
 											int pathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
 													nextIndex, change.getNewPath());
-											ByteIterable pathKey = new IntByteIterable(pathIndex);
-											Set<Integer> historyPathIndexes = new HashSet<>();
-											byte[] bytesOfHistoryPaths = readBytes(historyPathsStore, txn, pathKey);
-											if (bytesOfHistoryPaths == null) {
-												bytesOfHistoryPaths = new byte[0];
-												int pos = 0;
-												for (int i=0; i<bytesOfHistoryPaths.length/Integer.SIZE; i++) {
-													historyPathIndexes.add(ByteBuffer.wrap(bytesOfHistoryPaths, pos, Integer.SIZE).getInt());
-													pos += Integer.SIZE;
-												}
-											} else {
-												historyPathIndexes = new HashSet<>();
-											}
-											if (historyPathIndexes.size() < MAX_HISTORY_PATHS) {
-												int oldPathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
-														nextIndex, change.getOldPath());
-												if (!historyPathIndexes.contains(oldPathIndex)) {
-													historyPathIndexes.add(oldPathIndex);
-													byte[] newBytesOfHistoryPaths = 
-															new byte[bytesOfHistoryPaths.length+Integer.SIZE];
-													System.arraycopy(bytesOfHistoryPaths, 0, 
-															newBytesOfHistoryPaths, 0, bytesOfHistoryPaths.length);
-													ByteBuffer buffer = ByteBuffer.wrap(newBytesOfHistoryPaths, 
-															bytesOfHistoryPaths.length, Integer.BYTES);
-													buffer.putInt(oldPathIndex);
-													historyPathsStore.put(txn, pathKey, 
-															new ArrayByteIterable(newBytesOfHistoryPaths));
-												}
-											}
+											int oldPathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
+													nextIndex, change.getOldPath());
+											newRenames.computeIfAbsent(currentCommitId, it->new ArrayList<>())
+													.add(new Pair<>(pathIndex, oldPathIndex));
 										}
-									}											
+									}
 								}
 							}
 
 						}.pump();
 
+						int nextCommitOrdinal = readInt(defaultStore, txn, NEXT_COMMIT_ORDINAL_KEY, 0);
+						nextCommitOrdinal = addToCommitGraph(txn, commitsStore, commitGraphStore, 
+								newCommits, nextCommitOrdinal);
+						writeInt(defaultStore, txn, NEXT_COMMIT_ORDINAL_KEY, nextCommitOrdinal);
+						
+						for (Map.Entry<ObjectId, List<Pair<Integer, Integer>>> entry: newRenames.entrySet()) {
+							int commitOrdinal = readInt(commitsStore, txn, new CommitByteIterable(entry.getKey()), -1);
+							Preconditions.checkState(commitOrdinal != -1);
+							for (Pair<Integer, Integer> rename: entry.getValue()) {
+								ByteIterable pathKey = new IntByteIterable(rename.getFirst());
+								List<PathRename> renames = CommitInfoCodec.decodeRenames(
+										readBytes(pathRenamesStore, txn, pathKey));
+								renames.add(new PathRename(rename.getSecond(), commitOrdinal));
+								pathRenamesStore.put(txn, pathKey, 
+										new ArrayByteIterable(CommitInfoCodec.encodeRenames(renames)));
+							}
+						}
+						
 						writeInt(defaultStore, txn, COMMIT_COUNT_KEY, totalCommitCount.get());
 						totalCommitCountCache.remove(project.getId());
 						
 						writeInt(defaultStore, txn, NEXT_USER_INDEX_KEY, nextIndex.user);
 						writeInt(defaultStore, txn, NEXT_PATH_INDEX_KEY, nextIndex.path);
 						
-						userBytes = SerializationUtils.serialize((Serializable) users);
-						defaultStore.put(txn, USERS_KEY, new ArrayByteIterable(userBytes));
+						defaultStore.put(txn, USERS_KEY, new ArrayByteIterable(CommitInfoCodec.encodeUsers(users)));
 						usersCache.remove(project.getId());
 						
 						if (files.size() > MAX_COLLECTING_FILES) {
@@ -592,8 +609,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 							for (int i=0; i<fileList.size() - MAX_COLLECTING_FILES; i++)
 								files.remove(fileList.get(i));
 						}
-						fileBytes = SerializationUtils.serialize((Serializable) files);
-						defaultStore.put(txn, FILES_KEY, new ArrayByteIterable(fileBytes));
+						defaultStore.put(txn, FILE_INDEX_KEY, new ArrayByteIterable(PathIndex.build(files).toBytes()));
 						filesCache.remove(project.getId());
 						
 						for (Map.Entry<Long, Integer> entry: commitCountCache.entrySet()) 
@@ -614,15 +630,15 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 					byte[] lastCommitBytes = readBytes(defaultStore, txn, LAST_COMMIT_OF_DEFAULT_BRANCH_KEY);
 					if (lastCommitBytes != null) {
 						ObjectId lastCommitId = ObjectId.fromRaw(lastCommitBytes);
-						if (repository.hasObject(lastCommitId) 
-								&& GitUtils.isMergedInto(repository, null, lastCommitId, commitId)) {
+						if (repository.hasObject(lastCommitId)) 
 							return lastCommitId;
-						} 
 					} 
 					return null;
 				}
 				
 			});
+			if (lastCommitId != null && !isMergedInto(project, lastCommitId, commitId))
+				lastCommitId = null;
 			
 			if (lastCommitId == null) {
 				Map<Integer, Map<String, Integer>> lineStats = new HashMap<>();
@@ -670,18 +686,52 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 							
 						}.pump();
 						
-						for (int dayValue: deserializeContributions(readBytes(defaultStore, txn, OVERALL_CONTRIBUTIONS_KEY)).keySet()) 
+						for (int dayValue: CommitInfoCodec.decodeContributions(readBytes(defaultStore, txn, OVERALL_CONTRIBUTIONS_KEY)).keySet()) { 
 							dailyContributionsStore.delete(txn, new IntByteIterable(dayValue));
+							weeklyContributionsStore.delete(txn, new IntByteIterable(ContributionBuckets.getWeekValue(dayValue)));
+							monthlyContributionsStore.delete(txn, new IntByteIterable(ContributionBuckets.getMonthValue(dayValue)));
+						}
+						Cursor cursor = userContributionsStore.openCursor(txn);
+						try {
+							while (cursor.getNext())
+								cursor.deleteCurrent();
+						} finally {
+							cursor.close();
+						}
+						
+						Map<Integer, Map<Integer, Contribution>> weeklyContributionsCache = new HashMap<>();
+						Map<Integer, Map<Integer, Contribution>> monthlyContributionsCache = new HashMap<>();
+						Map<Integer, Map<Integer, Contribution>> userContributionsCache = new HashMap<>();
 						for (Map.Entry<Integer, Map<Integer, Contribution>> entry: dailyContributionsCache.entrySet()) {
-							byte[] bytesOfContributionsOnDay = serializeContributions(entry.getValue());
+							byte[] bytesOfContributionsOnDay = CommitInfoCodec.encodeContributions(entry.getValue());
 							dailyContributionsStore.put(txn, new IntByteIterable(entry.getKey()), 
 									new ArrayByteIterable(bytesOfContributionsOnDay));
+							for (Map.Entry<Integer, Contribution> userEntry: entry.getValue().entrySet()) {
+								userContributionsCache.computeIfAbsent(userEntry.getKey(), it->new HashMap<>())
+										.put(entry.getKey(), userEntry.getValue());
+							}
+							addContributions(weeklyContributionsCache.computeIfAbsent(
+									ContributionBuckets.getWeekValue(entry.getKey()), it->new HashMap<>()), entry.getValue());
+							addContributions(monthlyContributionsCache.computeIfAbsent(
+									ContributionBuckets.getMonthValue(entry.getKey()), it->new HashMap<>()), entry.getValue());
+						}
+						for (Map.Entry<Integer, Map<Integer, Contribution>> entry: weeklyContributionsCache.entrySet()) {
+							weeklyContributionsStore.put(txn, new IntByteIterable(entry.getKey()), 
+									new ArrayByteIterable(CommitInfoCodec.encodeContributions(entry.getValue())));
+						}
+						for (Map.Entry<Integer, Map<Integer, Contribution>> entry: monthlyContributionsCache.entrySet()) {
+							monthlyContributionsStore.put(txn, new IntByteIterable(entry.getKey()), 
+									new ArrayByteIterable(CommitInfoCodec.encodeContributions(entry.getValue())));
+						}
+						for (Map.Entry<Integer, Map<Integer, Contribution>> entry: userContributionsCache.entrySet()) {
+							userContributionsStore.put(txn, new IntByteIterable(entry.getKey()), 
+									new ArrayByteIterable(CommitInfoCodec.encodeContributions(entry.getValue())));
 						}
 						defaultStore.put(txn, OVERALL_CONTRIBUTIONS_KEY, 
-								new ArrayByteIterable(serializeContributions(overallContributions)));
+								new ArrayByteIterable(CommitInfoCodec.encodeContributions(overallContributions)));
 						
-						byte[] bytesOfLineStats = SerializationUtils.serialize((Serializable) lineStats);
-						defaultStore.put(txn, LINE_STATS_KEY, new ArrayByteIterable(bytesOfLineStats));
+						defaultStore.put(txn, LINE_STATS_KEY, 
+								new ArrayByteIterable(CommitInfoCodec.encodeLineStats(lineStats)));
 						
 						defaultStore.put(txn, LAST_COMMIT_OF_DEFAULT_BRANCH_KEY, new CommitByteIterable(commitId));
 					}
@@ -690,17 +740,10 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			} else {
 				env.executeInTransaction(new TransactionalExecutable() {
 					
-					@SuppressWarnings("unchecked")
 					@Override
 					public void execute(Transaction txn) {
-						Map<Integer, Map<String, Integer>> lineStats;
-						byte[] bytesOfLineStats = readBytes(defaultStore, txn, LINE_STATS_KEY);
-						if (bytesOfLineStats != null) {
-							lineStats = (Map<Integer, Map<String, Integer>>) SerializationUtils.deserialize(
-									bytesOfLineStats);
-						} else {
-							lineStats = new HashMap<>();
-						}
+						Map<Integer, Map<String, Integer>> lineStats = 
+								CommitInfoCodec.decodeLineStats(readBytes(defaultStore, txn, LINE_STATS_KEY));
 						
 						ListNumStatsCommand command = new ListNumStatsCommand(project.getGitDir());
 						List<FileChange> fileChanges = command.fromRev(lastCommitId.name()).toRev(commitId.name()).call();
@@ -709,22 +752,48 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 								revCommit.getCommitterIdent().getWhen(), null, null, fileChanges);
 						
 						int dayValue = new Day(revCommit.getCommitterIdent().getWhen()).getValue();
-						Map<Integer, Contribution> contributionsOnDay = deserializeContributions(
+						Map<Integer, Contribution> contributionsOnDay = CommitInfoCodec.decodeContributions(
 								readBytes(dailyContributionsStore, txn, new IntByteIterable(dayValue)));	
 						Map<Integer, Contribution> overallContributions = 
-								deserializeContributions(readBytes(defaultStore, txn, OVERALL_CONTRIBUTIONS_KEY));
+								CommitInfoCodec.decodeContributions(readBytes(defaultStore, txn, OVERALL_CONTRIBUTIONS_KEY));
 						
 						updateOverallContributionsAndLineStats(txn, emailToIndexStore, gitCommit, lineStats, overallContributions);
 						updateContribution(txn, emailToIndexStore, gitCommit, contributionsOnDay);
 
-						byte[] bytesOfContributionsOnDay = serializeContributions(contributionsOnDay);
+						byte[] bytesOfContributionsOnDay = CommitInfoCodec.encodeContributions(contributionsOnDay);
 						dailyContributionsStore.put(txn, new IntByteIterable(dayValue), 
 								new ArrayByteIterable(bytesOfContributionsOnDay));
+						
+						ByteIterable weekKey = new IntByteIterable(ContributionBuckets.getWeekValue(dayValue));
+						Map<Integer, Contribution> contributionsOnWeek = 
+								CommitInfoCodec.decodeContributions(readBytes(weeklyContributionsStore, txn, weekKey));
+						updateContribution(txn, emailToIndexStore, gitCommit, contributionsOnWeek);
+						weeklyContributionsStore.put(txn, weekKey, 
+								new ArrayByteIterable(CommitInfoCodec.encodeContributions(contributionsOnWeek)));
+						
+						ByteIterable monthKey = new IntByteIterable(ContributionBuckets.getMonthValue(dayValue));
+						Map<Integer, Contribution> contributionsOnMonth = 
+								CommitInfoCodec.decodeContributions(readBytes(monthlyContributionsStore, txn, monthKey));
+						updateContribution(txn, emailToIndexStore, gitCommit, contributionsOnMonth);
+						monthlyContributionsStore.put(txn, monthKey, 
+								new ArrayByteIterable(CommitInfoCodec.encodeContributions(contributionsOnMonth)));
+						
+						if (gitCommit.getAuthor() != null 
+								&& StringUtils.isNotBlank(gitCommit.getAuthor().getEmailAddress())) {
+							ByteIterable emailKey = new StringByteIterable(gitCommit.getAuthor().getEmailAddress());
+							ByteIterable userKey = new IntByteIterable(readInt(emailToIndexStore, txn, emailKey, -1));
+							Map<Integer, Contribution> contributionsOfUser = 
+									CommitInfoCodec.decodeContributions(readBytes(userContributionsStore, txn, userKey));
+							updateContribution(contributionsOfUser, dayValue, gitCommit);
+							userContributionsStore.put(txn, userKey, 
+									new ArrayByteIterable(CommitInfoCodec.encodeContributions(contributionsOfUser)));
+						}
+						
 						defaultStore.put(txn, OVERALL_CONTRIBUTIONS_KEY, 
-								new ArrayByteIterable(serializeContributions(overallContributions)));
+								new ArrayByteIterable(CommitInfoCodec.encodeContributions(overallContributions)));
 						
-						bytesOfLineStats = SerializationUtils.serialize((Serializable) lineStats);
-						defaultStore.put(txn, LINE_STATS_KEY, new ArrayByteIterable(bytesOfLineStats));
+						defaultStore.put(txn, LINE_STATS_KEY, 
+								new ArrayByteIterable(CommitInfoCodec.encodeLineStats(lineStats)));
 						
 						defaultStore.put(txn, LAST_COMMIT_OF_DEFAULT_BRANCH_KEY, new CommitByteIterable(commitId));
 					}
@@ -732,11 +801,142 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 				});
 				
 			}		
+			topContributorsCache.remove(project.getId());
 		}		
 		
+		if (refName.startsWith(Constants.R_HEADS))
+			updateReachability(project, refName, commitId);
+		
 		logger.debug("Collected commit information (project: {}, ref: {})", project.getName(), refName);
 	}
 	
+	/**
+	 * Maintain bitmap of commits reachable from specified branch. If new tip of the branch is descendant 
+	 * of its old tip, the bitmap is updated incrementally by only visiting newly reachable commits  
+	 */
+	private void updateReachability(Project project, String refName, ObjectId commitId) {
+		CommitGraph commitGraph = getCommitGraph(project);
+		Environment env = getEnv(project.getId().toString());
+		Store commitsStore = getStore(env, COMMITS_STORE);
+		Store refTipsStore = getStore(env, REF_TIPS_STORE);
+		Store refReachabilityStore = getStore(env, REF_REACHABILITY_STORE);
+		Store tipRefsStore = getStore(env, TIP_REFS_STORE);
+		
+		env.executeInTransaction(new TransactionalExecutable() {
+			
+			@Override
+			public void execute(Transaction txn) {
+				ByteIterable refKey = new StringByteIterable(refName);
+				int tipOrdinal = readInt(commitsStore, txn, new CommitByteIterable(commitId), -1);
+				int oldTipOrdinal = readInt(refTipsStore, txn, refKey, -1);
+				if (oldTipOrdinal != -1 && oldTipOrdinal != tipOrdinal)
+					removeTipRef(tipRefsStore, txn, oldTipOrdinal, refKey);
+				if (tipOrdinal != -1 && tipOrdinal < commitGraph.getCount()) {
+					if (oldTipOrdinal != tipOrdinal) {
+						BitSet knownAncestors = null;
+						if (oldTipOrdinal != -1 && oldTipOrdinal < commitGraph.getCount() 
+								&& commitGraph.isAncestor(oldTipOrdinal, tipOrdinal)) {
+							byte[] bitmapBytes = readBytes(refReachabilityStore, txn, refKey);
+							if (bitmapBytes != null)
+								knownAncestors = BitSet.valueOf(bitmapBytes);
+						}
+						BitSet ancestors = commitGraph.getAncestors(tipOrdinal, knownAncestors);
+						writeInt(refTipsStore, txn, refKey, tipOrdinal);
+						refReachabilityStore.put(txn, refKey, new ArrayByteIterable(ancestors.toByteArray()));
+						tipRefsStore.put(txn, new IntByteIterable(tipOrdinal), refKey);
+					}
+				} else {
+					refTipsStore.delete(txn, refKey);
+					refReachabilityStore.delete(txn, refKey);
+				}
+			}
+			
+		});
+	}
+	
+	/*
+	 * Remove mapping of specified tip if it points to specified ref. Other refs pointing to the 
+	 * same tip lose the mapping until updated, and reachability checks of the tip fall back to
+	 * commit graph in the meantime
+	 */
+	private void removeTipRef(Store tipRefsStore, Transaction txn, int tipOrdinal, ByteIterable refKey) {
+		ByteIterable tipKey = new IntByteIterable(tipOrdinal);
+		ByteIterable value = tipRefsStore.get(txn, tipKey);
+		if (value != null && value.compareTo(refKey) == 0)
+			tipRefsStore.delete(txn, tipKey);
+	}
+	
+	/**
+	 * Assign ordinals to newly collected commits in topological order, so that parents always get 
+	 * smaller ordinals than their children, and record parent ordinals of each commit in commit 
+	 * graph store
+	 * 
+	 * @return
+	 * 			next commit ordinal
+	 */
+	private int addToCommitGraph(Transaction txn, Store commitsStore, Store commitGraphStore, 
+			Map<ObjectId, List<ObjectId>> newCommits, int nextCommitOrdinal) {
+		Map<ObjectId, Integer> pendingParentCounts = new HashMap<>();
+		Map<ObjectId, List<ObjectId>> newChildren = new HashMap<>();
+		Queue<ObjectId> readyCommits = new ArrayDeque<>();
+		for (Map.Entry<ObjectId, List<ObjectId>> entry: newCommits.entrySet()) {
+			int pendingParentCount = 0;
+			for (ObjectId parentId: entry.getValue()) {
+				if (newCommits.containsKey(parentId)) {
+					pendingParentCount++;
+					List<ObjectId> children = newChildren.get(parentId);
+					if (children == null) {
+						children = new ArrayList<>();
+						newChildren.put(parentId, children);
+					}
+					children.add(entry.getKey());
+				}
+			}
+			if (pendingParentCount != 0)
+				pendingParentCounts.put(entry.getKey(), pendingParentCount);
+			else
+				readyCommits.add(entry.getKey());
+		}
+		
+		while (!readyCommits.isEmpty()) {
+			ObjectId commitId = readyCommits.remove();
+			List<ObjectId> parentIds = newCommits.get(commitId);
+			ByteBuffer buffer = ByteBuffer.allocate(20 + parentIds.size()*Integer.BYTES);
+			byte[] commitBytes = new byte[20];
+			commitId.copyRawTo(commitBytes, 0);
+			buffer.put(commitBytes);
+			for (ObjectId parentId: parentIds) {
+				// Parents are collected before children, so missing parents are only possible for 
+				// broken histories, for instance shallow clones. Edges to them are ignored 
+				int parentOrdinal = readInt(commitsStore, txn, new CommitByteIterable(parentId), -1);
+				if (parentOrdinal != -1) {
+					buffer.putInt(parentOrdinal);
+				} else {
+					logger.warn("Parent of commit not collected, ignoring it in commit graph (commit: {}, parent: {})", 
+							commitId.name(), parentId.name());
+				}
+			}
+			writeInt(commitsStore, txn, new CommitByteIterable(commitId), nextCommitOrdinal);
+			commitGraphStore.put(txn, new IntByteIterable(nextCommitOrdinal), 
+					new ArrayByteIterable(Arrays.copyOf(buffer.array(), buffer.position())));
+			nextCommitOrdinal++;
+			
+			List<ObjectId> children = newChildren.get(commitId);
+			if (children != null) {
+				for (ObjectId child: children) {
+					int pendingParentCount = pendingParentCounts.get(child) - 1;
+					if (pendingParentCount == 0) {
+						pendingParentCounts.remove(child);
+						readyCommits.add(child);
+					} else {
+						pendingParentCounts.put(child, pendingParentCount);
+					}
+				}
+			}
+		}
+		return nextCommitOrdinal;
+	}
+	
 	private void updateContribution(Transaction txn, Store emailToIndexStore, 
 			GitCommit currentCommit, Map<Integer, Contribution> contributionsOnDay) {
 		if (currentCommit.getAuthor() != null 
@@ -819,18 +1019,12 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 
 			users = env.computeInReadonlyTransaction(new TransactionalComputable<List<NameAndEmail>>() {
 
-				@SuppressWarnings("unchecked")
 				@Override
 				public List<NameAndEmail> compute(Transaction txn) {
-					byte[] bytes = readBytes(store, txn, USERS_KEY);
-					if (bytes != null) { 
-						List<NameAndEmail> users = 
-								new ArrayList<>((Set<NameAndEmail>) SerializationUtils.deserialize(bytes));
-						Collections.sort(users);
-						return users;
-					} else { 
-						return new ArrayList<>();
-					}
+					List<NameAndEmail> users = new ArrayList<>(
+							CommitInfoCodec.decodeUsers(readBytes(store, txn, USERS_KEY)));
+					Collections.sort(users);
+					return users;
 				}
 				
 			});
@@ -840,39 +1034,19 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	}
 
 	@Override
-	public List<String> getFiles(Project project) {
-		List<String> files = filesCache.get(project.getId());
+	public PathIndex getFiles(Project project) {
+		PathIndex files = filesCache.get(project.getId());
 		if (files == null) {
 			Environment env = getEnv(project.getId().toString());
 			final Store store = getStore(env, DEFAULT_STORE);
 
-			files = env.computeInReadonlyTransaction(new TransactionalComputable<List<String>>() {
+			files = env.computeInReadonlyTransaction(new TransactionalComputable<PathIndex>() {
 
-				@SuppressWarnings("unchecked")
 				@Override
-				public List<String> compute(Transaction txn) {
-					byte[] bytes = readBytes(store, txn, FILES_KEY);
-					if (bytes != null) {
-						List<String> files = new ArrayList<>(
-								((Map<String, Long>)SerializationUtils.deserialize(bytes)).keySet());
-						Map<String, List<String>> segmentsMap = new HashMap<>();
-						Splitter splitter = Splitter.on("/");
-						for (String file: files) {
-							segmentsMap.put(file, splitter.splitToList(file));
-						}
-						files.sort(new Comparator<String>() {
-
-							@Override
-							public int compare(String o1, String o2) {
-								return PathUtils.compare(segmentsMap.get(o1), segmentsMap.get(o2));
-							}
-							
-						});
-						return files;
-					} else {
-						return new ArrayList<>();
-					}
+				public PathIndex compute(Transaction txn) {
+					return PathIndex.fromBytes(readBytes(store, txn, FILE_INDEX_KEY));
 				}
+				
 			});
 			filesCache.put(project.getId(), files);
 		}
@@ -889,20 +1063,31 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			@Override
 			public Map<Day, Map<String, Integer>> compute(Transaction txn) {
 				Map<Day, Map<String, Integer>> lineIncrements = new HashMap<>();
-				byte[] bytes = readBytes(store, txn, LINE_STATS_KEY);
-				if (bytes != null) {
-					@SuppressWarnings("unchecked")
-					Map<Integer, Map<String, Integer>> storedMap = 
-							(Map<Integer, Map<String, Integer>>) SerializationUtils.deserialize(bytes);
-					for (Map.Entry<Integer, Map<String, Integer>> entry: storedMap.entrySet())
-						lineIncrements.put(new Day(entry.getKey()), entry.getValue());
-				} 
+				Map<Integer, Map<String, Integer>> storedMap = 
+						CommitInfoCodec.decodeLineStats(readBytes(store, txn, LINE_STATS_KEY));
+				for (Map.Entry<Integer, Map<String, Integer>> entry: storedMap.entrySet())
+					lineIncrements.put(new Day(entry.getKey()), entry.getValue());
 				return lineIncrements;
 			}
 			
 		});
 	}
 	
+	private void addContributions(Map<Integer, Contribution> contributions, Map<Integer, Contribution> toAdd) {
+		for (Map.Entry<Integer, Contribution> entry: toAdd.entrySet()) {
+			Contribution contribution = contributions.get(entry.getKey());
+			if (contribution != null) {
+				contribution = new Contribution(
+						contribution.getCommits() + entry.getValue().getCommits(), 
+						contribution.getAdditions() + entry.getValue().getAdditions(), 
+						contribution.getDeletions() + entry.getValue().getDeletions());
+			} else {
+				contribution = entry.getValue();
+			}
+			contributions.put(entry.getKey(), contribution);
+		}
+	}
+	
 	private void updateContribution(Map<Integer, Contribution> contributions, int key, GitCommit commit) {
 		Contribution contribution = contributions.get(key);
 		if (contribution != null) {
@@ -943,51 +1128,172 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		}
 	}
 	
-	@Override
-	public Collection<ObjectId> getDescendants(Project project, Collection<ObjectId> ancestors) {
+	/*
+	 * Loading commit graph may take a long time. Callers should get it before getting the 
+	 * environment, as the environment may otherwise be evicted before being used
+	 */
+	private CommitGraph getCommitGraph(Project project) {
 		Environment env = getEnv(project.getId().toString());
-		final Store store = getStore(env, COMMITS_STORE);
-
-		return env.computeInReadonlyTransaction(new TransactionalComputable<Set<ObjectId>>() {
+		Store defaultStore = getStore(env, DEFAULT_STORE);
+		Store commitGraphStore = getStore(env, COMMIT_GRAPH_STORE);
+		
+		return env.computeInReadonlyTransaction(new TransactionalComputable<CommitGraph>() {
 
 			@Override
-			public Set<ObjectId> compute(Transaction txn) {
-				Set<ObjectId> descendants = new HashSet<>();
-				
-				// Use stack instead of recursion to avoid StackOverflowException
-				Stack<ObjectId> stack = new Stack<>();
-				descendants.addAll(ancestors);
-				stack.addAll(ancestors);
-				while (!stack.isEmpty()) {
-					ObjectId current = stack.pop();
-					byte[] valueBytes = readBytes(store, txn, new CommitByteIterable(current));
-					if (valueBytes != null) {
-						if (valueBytes.length % 20 == 0) {
-							for (int i=0; i<valueBytes.length/20; i++) {
-								ObjectId child = ObjectId.fromRaw(valueBytes, i*20);
-								if (!descendants.contains(child)) {
-									descendants.add(child);
-									stack.push(child);
+			public CommitGraph compute(Transaction txn) {
+				int commitCount = readInt(defaultStore, txn, NEXT_COMMIT_ORDINAL_KEY, 0);
+				CommitGraph commitGraph = commitGraphs.get(project.getId());
+				if (commitGraph == null || commitGraph.getCount() != commitCount) {
+					Lock lock = LockUtils.getLock("commit-graph:" + project.getId());
+					lock.lock();
+					try {
+						commitGraph = commitGraphs.get(project.getId());
+						if (commitGraph == null)
+							commitGraph = CommitGraph.open(getEnvDir(project.getId().toString()));
+						if (commitGraph == null || commitGraph.getCount() != commitCount) {
+							// Graph snapshot might be newer than environment if environment is restored from backup
+							if (commitGraph != null && commitGraph.getCount() > commitCount)
+								commitGraph = null;
+							commitGraph = CommitGraph.write(getEnvDir(project.getId().toString()), 
+									commitGraph, commitCount, new CommitGraph.Source() {
+
+								@Override
+								public byte[] getCommit(int ordinal) {
+									byte[] bytes = readBytes(commitGraphStore, txn, new IntByteIterable(ordinal));
+									return Arrays.copyOf(Preconditions.checkNotNull(bytes), 20);
 								}
-							}
-						} else { 
-							for (int i=0; i<(valueBytes.length-1)/20; i++) {
-								ObjectId child = ObjectId.fromRaw(valueBytes, i*20+1);
-								if (!descendants.contains(child)) {
-									descendants.add(child);
-									stack.push(child);
+
+								@Override
+								public int[] getParents(int ordinal) {
+									byte[] bytes = readBytes(commitGraphStore, txn, new IntByteIterable(ordinal));
+									int[] parents = new int[(bytes.length-20)/Integer.BYTES];
+									ByteBuffer buffer = ByteBuffer.wrap(bytes, 20, bytes.length-20);
+									for (int i=0; i<parents.length; i++)
+										parents[i] = buffer.getInt();
+									return parents;
 								}
-							}
+								
+							});
 						}
+						commitGraphs.put(project.getId(), commitGraph);
+					} finally {
+						lock.unlock();
 					}
 				}
-				
-				return descendants;
+				return commitGraph;
 			}
 			
 		});
 	}
+	
+	private BitSet getOrdinals(Project project, Collection<ObjectId> commitIds) {
+		Environment env = getEnv(project.getId().toString());
+		Store commitsStore = getStore(env, COMMITS_STORE);
+		
+		return env.computeInReadonlyTransaction(new TransactionalComputable<BitSet>() {
+
+			@Override
+			public BitSet compute(Transaction txn) {
+				BitSet ordinals = new BitSet();
+				for (ObjectId commitId: commitIds) {
+					int ordinal = readInt(commitsStore, txn, new CommitByteIterable(commitId), -1);
+					if (ordinal != -1)
+						ordinals.set(ordinal);
+				}
+				return ordinals;
+			}
+			
+		});
+	}
+	
+	private Collection<ObjectId> getCommits(CommitGraph commitGraph, BitSet ordinals) {
+		Collection<ObjectId> commitIds = new HashSet<>();
+		for (int ordinal=ordinals.nextSetBit(0); ordinal>=0 && ordinal<commitGraph.getCount(); 
+				ordinal=ordinals.nextSetBit(ordinal+1)) {
+			commitIds.add(commitGraph.getCommit(ordinal));
+		}
+		return commitIds;
+	}
+	
+	@Override
+	public Collection<ObjectId> getDescendants(Project project, Collection<ObjectId> ancestors) {
+		CommitGraph commitGraph = getCommitGraph(project);
+		Collection<ObjectId> descendants = getCommits(commitGraph, 
+				commitGraph.getDescendants(getOrdinals(project, ancestors)));
+		descendants.addAll(ancestors);
+		return descendants;
+	}
+
+	@Override
+	public boolean isMergedInto(Project project, ObjectId base, ObjectId tip) {
+		return !filterMergedInto(project, Collections.singleton(base), tip).isEmpty();
+	}
+	
+	@Override
+	public Collection<ObjectId> filterMergedInto(Project project, Collection<? extends ObjectId> bases, 
+			ObjectId tip) {
+		CommitGraph commitGraph = getCommitGraph(project);
+		Environment env = getEnv(project.getId().toString());
+		Store commitsStore = getStore(env, COMMITS_STORE);
+		Store tipRefsStore = getStore(env, TIP_REFS_STORE);
+		Store refReachabilityStore = getStore(env, REF_REACHABILITY_STORE);
+		
+		Collection<ObjectId> merged = new HashSet<>();
+		Collection<ObjectId> uncollected = new ArrayList<>();
+		env.executeInReadonlyTransaction(new TransactionalExecutable() {
 
+			@Override
+			public void execute(Transaction txn) {
+				int tipOrdinal = readInt(commitsStore, txn, new CommitByteIterable(tip), -1);
+				if (tipOrdinal == -1 || tipOrdinal >= commitGraph.getCount()) {
+					uncollected.addAll(bases);
+					return;
+				}
+				
+				byte[] bitmap = null;
+				ByteIterable refKey = tipRefsStore.get(txn, new IntByteIterable(tipOrdinal));
+				if (refKey != null) {
+					ByteIterable bitmapBytes = refReachabilityStore.get(txn, refKey);
+					if (bitmapBytes != null) 
+						bitmap = Arrays.copyOf(bitmapBytes.getBytesUnsafe(), bitmapBytes.getLength());
+				}
+				
+				for (ObjectId base: bases) {
+					int baseOrdinal = readInt(commitsStore, txn, new CommitByteIterable(base), -1);
+					if (baseOrdinal == -1) {
+						// Ancestors of a collected commit are always collected 
+						continue;
+					} else if (baseOrdinal >= commitGraph.getCount()) {
+						uncollected.add(base);
+					} else if (bitmap != null) {
+						// Check bit directly against little-endian layout of BitSet.toByteArray
+						int byteIndex = baseOrdinal/8;
+						if (byteIndex < bitmap.length && (bitmap[byteIndex] & (1<<(baseOrdinal%8))) != 0)
+							merged.add(base.copy());
+					} else if (commitGraph.isAncestor(baseOrdinal, tipOrdinal)) {
+						merged.add(base.copy());
+					}
+				}
+			}
+			
+		});
+		
+		for (ObjectId base: uncollected) {
+			if (GitUtils.isMergedInto(project.getRepository(), null, base, tip))
+				merged.add(base.copy());
+		}
+		return merged;
+	}
+	
+	@Override
+	public Collection<ObjectId> getAncestors(Project project, Collection<ObjectId> descendants) {
+		CommitGraph commitGraph = getCommitGraph(project);
+		Collection<ObjectId> ancestors = getCommits(commitGraph, 
+				commitGraph.getAncestors(getOrdinals(project, descendants)));
+		ancestors.addAll(descendants);
+		return ancestors;
+	}
+	
 	@Listen
 	public void on(EntityRemoved event) {
 		if (event.getEntity() instanceof Project) {
@@ -996,6 +1302,8 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			filesCache.remove(projectId);
 			totalCommitCountCache.remove(projectId);
 			usersCache.remove(projectId);
+			commitGraphs.remove(projectId);
+			topContributorsCache.remove(projectId);
 		}
 	}
 	
@@ -1014,8 +1322,14 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 							collectingWorks.add((CollectingWork)work);
 						Collections.sort(collectingWorks, new CommitTimeComparator());
 						
-						for (CollectingWork work: collectingWorks) 
-							doCollect(project, work.getCommit().copy(), work.getRefName());
+						// Environment is held across transactions while collecting
+						acquireEnv(projectId.toString());
+						try {
+							for (CollectingWork work: collectingWorks) 
+								doCollect(project, work.getCommit().copy(), work.getRefName());
+						} finally {
+							releaseEnv(projectId.toString());
+						}
 					}
 					
 				});
@@ -1024,7 +1338,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		};		
 	}
 	
-	private void collect(Project project) {
+	private void collect(Project project, int priority) {
 		List<CollectingWork> works = new ArrayList<>();
 		try (RevWalk revWalk = new RevWalk(project.getRepository())) {
 			Collection<Ref> refs = new ArrayList<>();
@@ -1034,7 +1348,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			for (Ref ref: refs) {
 				RevObject revObj = revWalk.peel(revWalk.parseAny(ref.getObjectId()));
 				if (revObj instanceof RevCommit)
-					works.add(new CollectingWork(PRIORITY, (RevCommit) revObj, ref.getName()));
+					works.add(new CollectingWork(priority, (RevCommit) revObj, ref.getName()));
 			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
@@ -1049,16 +1363,42 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	@Sessional
 	@Listen
 	public void on(SystemStarted event) {
-		for (Project project: projectManager.query()) {
-			checkVersion(project.getId().toString());
-			collect(project);
-		}
+		ProjectReconciler reconciler = new ProjectReconciler("commit info", executorService, sessionManager);
+		reconciler.reconcile(projectManager.query(), new ProjectReconciler.Task() {
+
+			@Override
+			public void reconcile(Long projectId, int rank) {
+				// Opening environment cleans it if info version is changed
+				getEnv(projectId.toString());
+				collect(projectManager.load(projectId), STARTUP_PRIORITY + rank);
+			}
+			
+		});
 	}
 	
 	@Sessional
 	@Listen
 	public void on(RefUpdated event) {
-		if (!event.getNewCommitId().equals(ObjectId.zeroId()) 
+		if (event.getNewCommitId().equals(ObjectId.zeroId()) 
+				&& event.getRefName().startsWith(Constants.R_HEADS)) {
+			Environment env = getEnv(event.getProject().getId().toString());
+			Store refTipsStore = getStore(env, REF_TIPS_STORE);
+			Store refReachabilityStore = getStore(env, REF_REACHABILITY_STORE);
+			Store tipRefsStore = getStore(env, TIP_REFS_STORE);
+			env.executeInTransaction(new TransactionalExecutable() {
+				
+				@Override
+				public void execute(Transaction txn) {
+					ByteIterable refKey = new StringByteIterable(event.getRefName());
+					int tipOrdinal = readInt(refTipsStore, txn, refKey, -1);
+					if (tipOrdinal != -1)
+						removeTipRef(tipRefsStore, txn, tipOrdinal, refKey);
+					refTipsStore.delete(txn, refKey);
+					refReachabilityStore.delete(txn, refKey);
+				}
+				
+			});
+		} else if (!event.getNewCommitId().equals(ObjectId.zeroId()) 
 				&& (event.getRefName().startsWith(Constants.R_HEADS) 
 						|| event.getRefName().startsWith(Constants.R_TAGS))) {
 			try (RevWalk revWalk = new RevWalk(event.getProject().getRepository())) {
@@ -1125,7 +1465,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	@Sessional
 	@Override
 	public void cloneInfo(Project source, Project target) {
-		BackupStrategy backupStrategy = getEnv(source.getId().toString()).getBackupStrategy();
+		BackupStrategy backupStrategy = acquireEnv(source.getId().toString()).getBackupStrategy();
 		try {
 			File targetDir = getEnvDir(target.getId().toString());
 			backupStrategy.beforeBackup();
@@ -1139,6 +1479,8 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			writeVersion(target.getId().toString());
 		} catch (Exception e) {
 			throw new RuntimeException(e);
+		} finally {
+			releaseEnv(source.getId().toString());
 		}
 	}
 
@@ -1152,55 +1494,65 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	@Sessional
 	@Override
-	public Collection<String> getHistoryPaths(Project project, String path) {
+	public Collection<String> getHistoryPaths(Project project, ObjectId commitId, String path) {
+		CommitGraph commitGraph = getCommitGraph(project);
 		Environment env = getEnv(project.getId().toString());
-		Store historyPathsStore = getStore(env, HISTORY_PATHS_STORE);
+		Store commitsStore = getStore(env, COMMITS_STORE);
+		Store pathRenamesStore = getStore(env, PATH_RENAMES_STORE);
 		Store pathToIndexStore = getStore(env, PATH_TO_INDEX_STORE);
 		Store indexToPathStore = getStore(env, INDEX_TO_PATH_STORE);
 		
 		return env.computeInReadonlyTransaction(new TransactionalComputable<Collection<String>>() {
 
-			private Collection<String> getPaths(Transaction txn, Set<Integer> pathIndexes) {
-				Set<String> paths = new HashSet<>();
-				for (int pathIndex: pathIndexes) {
-					byte[] pathBytes = readBytes(indexToPathStore, txn, new IntByteIterable(pathIndex));
-					if (pathBytes != null)
-						paths.add(new String(pathBytes, StandardCharsets.UTF_8));
-				}
-				return paths;
-			}
-			
 			@Override
 			public Collection<String> compute(Transaction txn) {
+				Set<String> paths = new HashSet<>();
 				int pathIndex = readInt(pathToIndexStore, txn, new StringByteIterable(path), -1);
 				if (pathIndex != -1) {
-					Set<Integer> pathIndexes = new HashSet<>();
-					pathIndexes.add(pathIndex);
-					while (true) {
-						Set<Integer> newPathIndexes = new HashSet<>(pathIndexes);
-						for (int eachPathIndex: pathIndexes) {
-							byte[] bytesOfHistoryPaths = 
-									readBytes(historyPathsStore, txn, new IntByteIterable(eachPathIndex));
-							if (bytesOfHistoryPaths != null) {
-								int pos = 0;
-								for (int i=0; i<bytesOfHistoryPaths.length/Integer.BYTES; i++) {
-									newPathIndexes.add(ByteBuffer.wrap(bytesOfHistoryPaths, pos, Integer.BYTES).getInt());
-									if (newPathIndexes.size() == MAX_HISTORY_PATHS)
-										return getPaths(txn, newPathIndexes);
-									pos += Integer.BYTES;
+					int commitOrdinal = readInt(commitsStore, txn, new CommitByteIterable(commitId), -1);
+					if (commitOrdinal >= commitGraph.getCount())
+						commitOrdinal = -1;
+					
+					/*
+					 * Map of visited path index to ordinals of commits bounding its history. Only 
+					 * renames made in ancestors of bounding commits are followed, and -1 means 
+					 * history is not bounded, for instance when specified commit is not collected yet. 
+					 * A path reached again is visited again only if the new bound is not covered 
+					 * by its recorded bounds, that is, if it is not an ancestor of any of them
+					 */
+					Map<Integer, Set<Integer>> visited = new HashMap<>();
+					Queue<int[]> pending = new ArrayDeque<>();
+					visited.put(pathIndex, Sets.newHashSet(commitOrdinal));
+					pending.add(new int[] {pathIndex, commitOrdinal});
+					while (!pending.isEmpty()) {
+						int[] visit = pending.remove();
+						int boundOrdinal = visit[1];
+						for (PathRename rename: CommitInfoCodec.decodeRenames(
+								readBytes(pathRenamesStore, txn, new IntByteIterable(visit[0])))) {
+							int renameOrdinal = rename.getCommitOrdinal();
+							if (renameOrdinal < commitGraph.getCount() 
+									&& (boundOrdinal == -1 || commitGraph.isAncestor(renameOrdinal, boundOrdinal))) {
+								Set<Integer> oldPathBounds = visited.computeIfAbsent(rename.getOldPathIndex(), 
+										it->new HashSet<>());
+								if (oldPathBounds.stream().noneMatch(
+										it -> it == -1 || commitGraph.isAncestor(renameOrdinal, it))) {
+									oldPathBounds.removeIf(it -> commitGraph.isAncestor(it, renameOrdinal));
+									oldPathBounds.add(renameOrdinal);
+									pending.add(new int[] {rename.getOldPathIndex(), renameOrdinal});
 								}
 							}
 						}
-						if (pathIndexes.equals(newPathIndexes))
-							break;
-						else
-							pathIndexes = newPathIndexes;
 					}
-					return getPaths(txn, pathIndexes);
-				} else {
-					return new HashSet<>();
+					
+					for (int eachPathIndex: visited.keySet()) {
+						byte[] pathBytes = readBytes(indexToPathStore, txn, new IntByteIterable(eachPathIndex));
+						if (pathBytes != null)
+							paths.add(new String(pathBytes, StandardCharsets.UTF_8));
+					}
 				}
+				return paths;
 			}
+			
 		});
 	}
 	
@@ -1216,7 +1568,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			public Map<Day, Contribution> compute(Transaction txn) {
 				Map<Day, Contribution> overallContributions = new HashMap<>();
 				for (Map.Entry<Integer, Contribution> entry: 
-							deserializeContributions(readBytes(store, txn, OVERALL_CONTRIBUTIONS_KEY)).entrySet()) {
+							CommitInfoCodec.decodeContributions(readBytes(store, txn, OVERALL_CONTRIBUTIONS_KEY)).entrySet()) {
 					overallContributions.put(new Day(entry.getKey()), entry.getValue());
 				}
 				return overallContributions;
@@ -1229,37 +1581,53 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	@Override
 	public List<Contributor> getTopContributors(Project project, int top, Contribution.Type type, 
 			Day fromDay, Day toDay) {
+		String cacheKey = type.name() + ":" + top + ":" + fromDay.getValue() + ":" + toDay.getValue();
+		Map<String, List<Contributor>> cachedTopContributors = 
+				topContributorsCache.computeIfAbsent(project.getId(), it->new ConcurrentHashMap<>());
+		List<Contributor> topContributors = cachedTopContributors.get(cacheKey);
+		if (topContributors == null) {
+			topContributors = calcTopContributors(project, top, type, fromDay, toDay);
+			
+			// Do not cache result if contributions are updated while calculating 
+			if (topContributorsCache.get(project.getId()) == cachedTopContributors) {
+				if (cachedTopContributors.size() >= MAX_CACHED_TOP_CONTRIBUTORS)
+					cachedTopContributors.clear();
+				cachedTopContributors.put(cacheKey, topContributors);
+			}
+		}
+		return new ArrayList<>(topContributors);
+	}
+	
+	private List<Contributor> calcTopContributors(Project project, int top, Contribution.Type type, 
+			Day fromDay, Day toDay) {
 		Environment env = getEnv(project.getId().toString());
 		Store defaultStore = getStore(env, DEFAULT_STORE);
 		Store indexToUserStore = getStore(env, INDEX_TO_USER_STORE);
 		Store dailyContributionsStore = getStore(env, DAILY_CONTRIBUTIONS_STORE);
+		Store weeklyContributionsStore = getStore(env, WEEKLY_CONTRIBUTIONS_STORE);
+		Store monthlyContributionsStore = getStore(env, MONTHLY_CONTRIBUTIONS_STORE);
+		Store userContributionsStore = getStore(env, USER_CONTRIBUTIONS_STORE);
 		
 		return env.computeInReadonlyTransaction(new TransactionalComputable<List<Contributor>>() {
 
 			@Override
 			public List<Contributor> compute(Transaction txn) {
 				Map<Integer, Contribution> overallContributions = 
-						deserializeContributions(readBytes(defaultStore, txn, OVERALL_CONTRIBUTIONS_KEY));
+						CommitInfoCodec.decodeContributions(readBytes(defaultStore, txn, OVERALL_CONTRIBUTIONS_KEY));
+				ContributionBuckets buckets = new ContributionBuckets(overallContributions.keySet(), fromDay, toDay);
+				
 				Map<Integer, Contribution> totalContributions = new HashMap<>();
-				for (int dayValue: overallContributions.keySet()) {
-					if (dayValue >= fromDay.getValue() && dayValue <= toDay.getValue()) {
-						ByteIterable dayKey = new IntByteIterable(dayValue);
-						Map<Integer, Contribution> contributionsOnDay = 
-								deserializeContributions(readBytes(dailyContributionsStore, txn, dayKey));
-						for (Map.Entry<Integer, Contribution> entry: contributionsOnDay.entrySet()) {
-							Integer userIndex = entry.getKey();
-							Contribution totalContribution = totalContributions.get(userIndex);
-							if (totalContribution == null) {
-								totalContribution = entry.getValue();
-							} else {
-								totalContribution = new Contribution(
-										totalContribution.getCommits() + entry.getValue().getCommits(), 
-										totalContribution.getAdditions() + entry.getValue().getAdditions(), 
-										totalContribution.getDeletions() + entry.getValue().getDeletions());
-							}
-							totalContributions.put(userIndex, totalContribution);
-						}
-					}
+				for (int monthValue: buckets.getMonths()) {
+					addContributions(totalContributions, CommitInfoCodec.decodeContributions(
+							readBytes(monthlyContributionsStore, txn, new IntByteIterable(monthValue))));
+				}
+				for (int weekValue: buckets.getWeeks()) {
+					addContributions(totalContributions, CommitInfoCodec.decodeContributions(
+							readBytes(weeklyContributionsStore, txn, new IntByteIterable(weekValue))));
+				}
+				for (int dayValue: buckets.getDays()) {
+					addContributions(totalContributions, CommitInfoCodec.decodeContributions(
+							readBytes(dailyContributionsStore, txn, new IntByteIterable(dayValue))));
 				}
 				
 				List<Integer> topUserIndexes = new ArrayList<>(totalContributions.keySet());
@@ -1280,33 +1648,24 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 				if (top < topUserIndexes.size())
 					topUserIndexes = topUserIndexes.subList(0, top);
 				
-				Set<Integer> topUserIndexSet = new HashSet<>(topUserIndexes);
-				
 				Map<Integer, Map<Day, Integer>> userContributions = new HashMap<>();
-				
-				for (int dayValue: overallContributions.keySet()) {
-					if (dayValue >= fromDay.getValue() && dayValue <= toDay.getValue()) {
-						ByteIterable dayKey = new IntByteIterable(dayValue);
-						Map<Integer, Contribution> contributionsOnDay = 
-								deserializeContributions(readBytes(dailyContributionsStore, txn, dayKey));
-						Day day = new Day(dayValue);
-						for (Map.Entry<Integer, Contribution> entry: contributionsOnDay.entrySet()) {
-							Integer userIndex = entry.getKey();
-							if (topUserIndexSet.contains(userIndex)) {
-								Map<Day, Integer> contributionsByUser = userContributions.get(userIndex);
-								if (contributionsByUser == null) {
-									contributionsByUser = new HashMap<>();
-									userContributions.put(userIndex, contributionsByUser);
-								}
-								if (type == Contribution.Type.COMMITS)
-									contributionsByUser.put(day, entry.getValue().getCommits());
-								else if (type == Contribution.Type.ADDITIONS)
-									contributionsByUser.put(day, entry.getValue().getAdditions());
-								else
-									contributionsByUser.put(day, entry.getValue().getDeletions());
-							}
+				for (int userIndex: topUserIndexes) {
+					Map<Day, Integer> contributionsByUser = new HashMap<>();
+					for (Map.Entry<Integer, Contribution> entry: CommitInfoCodec.decodeContributions(
+							readBytes(userContributionsStore, txn, new IntByteIterable(userIndex))).entrySet()) {
+						int dayValue = entry.getKey();
+						if (dayValue >= fromDay.getValue() && dayValue <= toDay.getValue()) {
+							Day day = new Day(dayValue);
+							if (type == Contribution.Type.COMMITS)
+								contributionsByUser.put(day, entry.getValue().getCommits());
+							else if (type == Contribution.Type.ADDITIONS)
+								contributionsByUser.put(day, entry.getValue().getAdditions());
+							else
+								contributionsByUser.put(day, entry.getValue().getDeletions());
 						}
 					}
+					if (!contributionsByUser.isEmpty())
+						userContributions.put(userIndex, contributionsByUser);
 				}
 
 				List<Contributor> contributors = new ArrayList<>();
@@ -1315,7 +1674,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 					byte[] userBytes = readBytes(indexToUserStore, txn, new IntByteIterable(userIndex));
 					Map<Day, Integer> contributionsByUser = userContributions.get(userIndex);
 					if (userBytes != null && contributionsByUser != null) {
-						PersonIdent user = ((NameAndEmail)SerializationUtils.deserialize(userBytes)).asPersonIdent();
+						PersonIdent user = CommitInfoCodec.decodeUser(userBytes).asPersonIdent();
 						contributors.add(new Contributor(user, totalContributions.get(userIndex), contributionsByUser));
 					}
 				}
@@ -1326,47 +1685,6 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		});
 	}
 
-	private Map<Integer, Contribution> deserializeContributions(byte[] bytes) {
-		if (bytes != null) {
-			Map<Integer, Contribution> contributions = new HashMap<>();
-			int pos = 0;
-			for (int i=0; i<bytes.length/4/Integer.BYTES; i++) {
-				int key = ByteBuffer.wrap(bytes, pos, Integer.BYTES).getInt();
-				pos += Integer.BYTES;
-				int commits = ByteBuffer.wrap(bytes, pos, Integer.BYTES).getInt(); 
-				pos += Integer.BYTES;
-				int additions = ByteBuffer.wrap(bytes, pos, Integer.BYTES).getInt();
-				pos += Integer.BYTES;
-				int deletions = ByteBuffer.wrap(bytes, pos, Integer.BYTES).getInt(); 
-				pos += Integer.BYTES;
-				contributions.put(key, new Contribution(commits, additions, deletions));
-			}
-			return contributions;
-		} else {
-			return new HashMap<>();
-		}
-	}
-	
-	private byte[] serializeContributions(Map<Integer, Contribution> contributions) {
-		byte[] bytes = new byte[contributions.size()*Integer.BYTES*4];
-		int pos = 0;
-		for (Map.Entry<Integer, Contribution> entry: contributions.entrySet()) {
-			byte[] keyBytes = ByteBuffer.allocate(Integer.BYTES).putInt(entry.getKey()).array(); 
-			System.arraycopy(keyBytes, 0, bytes, pos, Integer.BYTES);
-			pos += Integer.BYTES;
-			byte[] commitsBytes = ByteBuffer.allocate(Integer.BYTES).putInt(entry.getValue().getCommits()).array();
-			System.arraycopy(commitsBytes, 0, bytes, pos, Integer.BYTES);
-			pos += Integer.BYTES;
-			byte[] additionsBytes = ByteBuffer.allocate(Integer.BYTES).putInt(entry.getValue().getAdditions()).array();
-			System.arraycopy(additionsBytes, 0, bytes, pos, Integer.BYTES);
-			pos += Integer.BYTES;
-			byte[] deletionsBytes = ByteBuffer.allocate(Integer.BYTES).putInt(entry.getValue().getDeletions()).array();
-			System.arraycopy(deletionsBytes, 0, bytes, pos, Integer.BYTES);
-			pos += Integer.BYTES;
-		}
-		return bytes;
-	}
-	
 	@Override
 	protected long getLogFileSize() {
 		return LOG_FILE_SIZE;
@@ -0,0 +1,48 @@
+package io.onedev.server.infomanager;
+
+import java.io.Serializable;
+
+/**
+ * Metrics of Xodus environments of info managers since server is started
+ */
+public class EnvironmentStatus implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int openEnvs;
+	
+	private final long openedEnvs;
+	
+	private final long evictedEnvs;
+	
+	public EnvironmentStatus(int openEnvs, long openedEnvs, long evictedEnvs) {
+		this.openEnvs = openEnvs;
+		this.openedEnvs = openedEnvs;
+		this.evictedEnvs = evictedEnvs;
+	}
+
+	/**
+	 * @return
+	 * 			number of environments currently open
+	 */
+	public int getOpenEnvs() {
+		return openEnvs;
+	}
+
+	/**
+	 * @return
+	 * 			number of environments opened, including environments opened again after eviction
+	 */
+	public long getOpenedEnvs() {
+		return openedEnvs;
+	}
+
+	/**
+	 * @return
+	 * 			number of environments closed due to idleness
+	 */
+	public long getEvictedEnvs() {
+		return evictedEnvs;
+	}
+	
+}
@@ -0,0 +1,266 @@
+package io.onedev.server.infomanager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Splitter;
+
+import io.onedev.commons.utils.PathUtils;
+import io.onedev.server.util.PathComparator;
+
+/**
+ * Compact immutable index of file paths along with their last modified timestamps. Paths are
+ * sorted in order of {@link PathComparator} so that they can be suggested without sorting, and
+ * are front coded, that is, each path only stores bytes not shared with its previous path, and
+ * each timestamp is stored as difference to previous timestamp. Memory consumption is a fraction
+ * of holding all paths as strings, and paths are only materialized when they are matched.
+ */
+public class PathIndex implements Iterable<String> {
+
+	private static final PathIndex EMPTY = new PathIndex(new byte[] {CommitInfoCodec.FORMAT_VERSION, 0});
+
+	private final byte[] data;
+
+	private final int size;
+
+	private final int start;
+
+	private PathIndex(byte[] data) {
+		this.data = data;
+		if (data[0] != CommitInfoCodec.FORMAT_VERSION)
+			throw new IllegalStateException("Unexpected path index format version: " + data[0]);
+		Cursor cursor = new Cursor(1);
+		size = cursor.readVarInt();
+		start = cursor.pos;
+	}
+
+	/**
+	 * Build index of specified files
+	 *
+	 * @param files
+	 * 			map of file path to last modified timestamp
+	 */
+	public static PathIndex build(Map<String, Long> files) {
+		Map<String, List<String>> segmentsMap = new HashMap<>();
+		Splitter splitter = Splitter.on('/');
+		for (String path: files.keySet())
+			segmentsMap.put(path, splitter.splitToList(path));
+		List<String> paths = new ArrayList<>(files.keySet());
+		paths.sort((path1, path2) -> PathUtils.compare(segmentsMap.get(path1), segmentsMap.get(path2)));
+
+		CommitInfoCodec.Encoder encoder = new CommitInfoCodec.Encoder();
+		encoder.writeVarInt(paths.size());
+		byte[] prevBytes = new byte[0];
+		long prevTimestamp = 0;
+		for (String path: paths) {
+			byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+			int shared = 0;
+			int maxShared = Math.min(prevBytes.length, bytes.length);
+			while (shared < maxShared && prevBytes[shared] == bytes[shared])
+				shared++;
+			encoder.writeVarInt(shared);
+			encoder.writeBytes(bytes, shared, bytes.length-shared);
+			long timestamp = files.get(path);
+			encoder.writeZigZagLong(timestamp - prevTimestamp);
+			prevBytes = bytes;
+			prevTimestamp = timestamp;
+		}
+		return new PathIndex(encoder.toBytes());
+	}
+
+	public static PathIndex fromBytes(@Nullable byte[] bytes) {
+		if (bytes != null)
+			return new PathIndex(bytes);
+		else
+			return EMPTY;
+	}
+
+	public byte[] toBytes() {
+		return data;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Iterate paths in order of {@link PathComparator}. Paths are decoded as iterated, so that
+	 * iteration can be stopped early without materializing all paths
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		Cursor cursor = new Cursor(start);
+		return new Iterator<String>() {
+
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public String next() {
+				if (index == size)
+					throw new NoSuchElementException();
+				index++;
+				cursor.next();
+				return cursor.toString();
+			}
+
+		};
+	}
+
+	/**
+	 * @return
+	 * 			all paths in order of {@link PathComparator}
+	 */
+	public List<String> getPaths() {
+		List<String> paths = new ArrayList<>(size);
+		for (String path: this)
+			paths.add(path);
+		return paths;
+	}
+
+	/**
+	 * @return
+	 * 			map of file path to last modified timestamp
+	 */
+	public Map<String, Long> getTimestamps() {
+		Map<String, Long> timestamps = new HashMap<>();
+		Cursor cursor = new Cursor(start);
+		for (int i=0; i<size; i++) {
+			cursor.next();
+			timestamps.put(cursor.toString(), cursor.timestamp);
+		}
+		return timestamps;
+	}
+
+	/**
+	 * Get paths containing specified substring. Matching is done against encoded bytes, and
+	 * only matched paths are materialized as strings
+	 *
+	 * @param substring
+	 * 			substring to look for
+	 * @param caseSensitive
+	 * 			whether or not to match case sensitively
+	 * @return
+	 * 			paths containing specified substring, in order of {@link PathComparator}
+	 */
+	public List<String> getPathsContaining(String substring, boolean caseSensitive) {
+		if (!caseSensitive)
+			substring = substring.toLowerCase();
+		byte[] substringBytes = substring.getBytes(StandardCharsets.UTF_8);
+		boolean asciiSubstring = isAscii(substringBytes, substringBytes.length);
+
+		List<String> paths = new ArrayList<>();
+		Cursor cursor = new Cursor(start);
+		for (int i=0; i<size; i++) {
+			cursor.next();
+			if (caseSensitive) {
+				if (indexOf(cursor.current, cursor.length, substringBytes, false) != -1)
+					paths.add(cursor.toString());
+			} else if (isAscii(cursor.current, cursor.length)) {
+				if (asciiSubstring && indexOf(cursor.current, cursor.length, substringBytes, true) != -1)
+					paths.add(cursor.toString());
+			} else {
+				String path = cursor.toString();
+				if (path.toLowerCase().contains(substring))
+					paths.add(path);
+			}
+		}
+		return paths;
+	}
+
+	private static boolean isAscii(byte[] bytes, int length) {
+		for (int i=0; i<length; i++) {
+			if (bytes[i] < 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static int indexOf(byte[] bytes, int length, byte[] substring, boolean ignoreAsciiCase) {
+		int max = length - substring.length;
+		for (int i=0; i<=max; i++) {
+			int j = 0;
+			while (j < substring.length) {
+				byte b = bytes[i+j];
+				if (ignoreAsciiCase && b >= 'A' && b <= 'Z')
+					b += 'a' - 'A';
+				if (b != substring[j])
+					break;
+				j++;
+			}
+			if (j == substring.length)
+				return i;
+		}
+		return -1;
+	}
+
+	private class Cursor {
+
+		int pos;
+
+		byte[] current = new byte[256];
+
+		int length;
+
+		long timestamp;
+
+		Cursor(int pos) {
+			this.pos = pos;
+		}
+
+		int readVarInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[pos++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[pos++];
+				value |= (long)(b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		void next() {
+			int shared = readVarInt();
+			int suffixLength = readVarInt();
+			length = shared + suffixLength;
+			if (length > current.length)
+				current = Arrays.copyOf(current, Math.max(length, current.length*2));
+			System.arraycopy(data, pos, current, shared, suffixLength);
+			pos += suffixLength;
+			long value = readVarLong();
+			timestamp += (value >>> 1) ^ -(value & 1);
+		}
+
+		@Override
+		public String toString() {
+			return new String(current, 0, length, StandardCharsets.UTF_8);
+		}
+
+	}
+
+}
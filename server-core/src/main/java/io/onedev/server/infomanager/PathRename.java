@@ -0,0 +1,34 @@
+package io.onedev.server.infomanager;
+
+/**
+ * Edge of path rename graph, recording that a path was renamed from another path in a commit
+ */
+class PathRename {
+
+	private final int oldPathIndex;
+
+	private final int commitOrdinal;
+
+	public PathRename(int oldPathIndex, int commitOrdinal) {
+		this.oldPathIndex = oldPathIndex;
+		this.commitOrdinal = commitOrdinal;
+	}
+
+	/**
+	 * @return
+	 * 			index of the path before renaming
+	 */
+	public int getOldPathIndex() {
+		return oldPathIndex;
+	}
+
+	/**
+	 * @return
+	 * 			ordinal of the commit renaming the path in commit graph. Content of the old path
+	 * 			is only available in ancestors of this commit
+	 */
+	public int getCommitOrdinal() {
+		return commitOrdinal;
+	}
+
+}
@@ -45,6 +45,7 @@ import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.PullRequestManager;
 import io.onedev.server.entitymanager.UserManager;
 import io.onedev.server.git.GitUtils;
+import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.infomanager.UserInfoManager;
 import io.onedev.server.model.support.CompareContext;
 import io.onedev.server.model.support.EntityWatch;
@@ -720,7 +721,7 @@ public class PullRequest extends AbstractEntity implements Referenceable, Attach
 	
 	public boolean isMergeIntoTarget() {
 		if (mergedIntoTarget == null) { 
-			mergedIntoTarget = GitUtils.isMergedInto(getTargetProject().getRepository(), null, 
+			mergedIntoTarget = OneDev.getInstance(CommitInfoManager.class).isMergedInto(getTargetProject(), 
 					ObjectId.fromString(getHeadCommitHash()), getTarget().getObjectId());
 		}
 		return mergedIntoTarget;
@@ -9,6 +9,7 @@ import org.eclipse.jgit.lib.Repository;
 import io.onedev.commons.utils.WordUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.git.GitUtils;
+import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.model.PullRequest;
 
 public enum MergeStrategy {
@@ -32,7 +33,8 @@ public enum MergeStrategy {
 			Repository repository = request.getTargetProject().getRepository();
 			ObjectId requestHead = request.getHeadCommit();
 			ObjectId targetHead = request.getTarget().getObjectId();
-			if (GitUtils.isMergedInto(repository, null, targetHead, requestHead)) {
+			CommitInfoManager commitInfoManager = OneDev.getInstance(CommitInfoManager.class);
+			if (commitInfoManager.isMergedInto(request.getTargetProject(), targetHead, requestHead)) {
 				return requestHead;
 			} else {
 				PersonIdent user = new PersonIdent(OneDev.NAME, "");
@@ -19,37 +19,61 @@ import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexFormatTooOldException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.eclipse.jgit.lib.AnyObjectId;
@@ -57,10 +81,13 @@ import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.ScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,22 +100,29 @@ import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.launcher.loader.ListenerRegistry;
 import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.ContentDetector;
 import io.onedev.server.util.IndexResult;
+import io.onedev.server.util.ServerConfig;
 import io.onedev.server.util.concurrent.Prioritized;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
 import io.onedev.server.util.work.BatchWorkManager;
 import io.onedev.server.util.work.BatchWorker;
+import io.onedev.server.util.work.ProjectReconciler;
 
 @Singleton
-public class DefaultIndexManager implements IndexManager {
+public class DefaultIndexManager implements IndexManager, SchedulableTask {
 	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultIndexManager.class);
 
@@ -96,7 +130,13 @@ public class DefaultIndexManager implements IndexManager {
 	
 	private static final int BACKEND_INDEXING_PRIORITY = 50;
 	
-	private static final int DATA_VERSION = 5;
+	private static final int MAINTENANCE_PRIORITY = 100;
+	
+	private static final String LAST_COMMIT_DATA = "lastCommit";
+	
+	private static final int DATA_VERSION = 6;
+	
+	private static final int LOOKUP_BATCH_SIZE = 10000;
 	
 	private final StorageManager storageManager;
 	
@@ -108,14 +148,49 @@ public class DefaultIndexManager implements IndexManager {
 	
 	private final ListenerRegistry listenerRegistry;
 	
+	private final ExecutorService executorService;
+	
+	private final TaskScheduler taskScheduler;
+	
+	private final ServerConfig serverConfig;
+	
+	private final ExecutorService indexingExecutor;
+	
+	private final int indexingMemoryPermits;
+	
+	// permits of indexing memory are in kilobytes
+	private final Semaphore indexingMemory;
+	
+	private final Map<Long, IndexStatus> indexStatuses = new ConcurrentHashMap<>();
+	
+	private String taskId;
+	
 	@Inject
 	public DefaultIndexManager(ListenerRegistry listenerRegistry, StorageManager storageManager, 
-			BatchWorkManager batchWorkManager, SessionManager sessionManager, ProjectManager projectManager) {
+			BatchWorkManager batchWorkManager, SessionManager sessionManager, ProjectManager projectManager, 
+			ExecutorService executorService, TaskScheduler taskScheduler, ServerConfig serverConfig) {
 		this.listenerRegistry = listenerRegistry;
 		this.storageManager = storageManager;
 		this.batchWorkManager = batchWorkManager;
 		this.sessionManager = sessionManager;
 		this.projectManager = projectManager;
+		this.executorService = executorService;
+		this.taskScheduler = taskScheduler;
+		this.serverConfig = serverConfig;
+		
+		AtomicInteger threadNumber = new AtomicInteger(0);
+		indexingExecutor = Executors.newFixedThreadPool(serverConfig.getIndexingThreads(), new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "code-indexing-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+		indexingMemoryPermits = serverConfig.getIndexingMemory() * 1024;
+		indexingMemory = new Semaphore(indexingMemoryPermits, true);
 	}
 
 	private String getCommitIndexVersion(final IndexSearcher searcher, AnyObjectId commitId) throws IOException {
@@ -169,57 +244,26 @@ public class DefaultIndexManager implements IndexManager {
 	
 			int indexed = 0;
 			int checked = 0;
-			while (treeWalk.next()) {
-				if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE 
-						&& (treeWalk.getTreeCount() == 1 || !treeWalk.idEqual(0, 1))) {
-					ObjectId blobId = treeWalk.getObjectId(0);
-					String blobPath = treeWalk.getPathString();
-					String blobName = treeWalk.getNameString();
-					
-					BooleanQuery.Builder builder = new BooleanQuery.Builder();
-					builder.add(BLOB_HASH.query(blobId.name()), Occur.MUST);
-					builder.add(BLOB_PATH.query(blobPath), Occur.MUST);
-					BooleanQuery query = builder.build();
-					
-					final AtomicReference<String> blobIndexVersionRef = new AtomicReference<>(null);
-					if (searcher != null) {
-						searcher.search(query, new SimpleCollector() {
-	
-							private LeafReaderContext context;
-	
-							@Override
-							public void collect(int doc) throws IOException {
-								blobIndexVersionRef.set(searcher.doc(context.docBase+doc).get(BLOB_INDEX_VERSION.name()));
-							}
-	
-							@Override
-							protected void doSetNextReader(LeafReaderContext context) throws IOException {
-								this.context = context;
-							}
-	
-							@Override
-							public boolean needsScores() {
-								return false;
-							}
-							
-						});
-						checked++;
-					}
-	
-					SymbolExtractor<Symbol> extractor = SymbolExtractorRegistry.getExtractor(blobName);
-					String currentBlobIndexVersion = getIndexVersion(extractor);
-					String blobIndexVersion = blobIndexVersionRef.get();
-					if (blobIndexVersion != null) {
-						if (!blobIndexVersion.equals(currentBlobIndexVersion)) {
-							writer.deleteDocuments(query);
-							indexBlob(writer, repository, extractor, blobId, blobPath);
-							indexed++;
+			try (BlobIndexer blobIndexer = new BlobIndexer(repository, writer)) {
+				Map<BytesRef, IndexCandidate> candidates = new HashMap<>();
+				while (treeWalk.next()) {
+					if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE 
+							&& (treeWalk.getTreeCount() == 1 || !treeWalk.idEqual(0, 1))) {
+						IndexCandidate candidate = new IndexCandidate(treeWalk.getObjectId(0), 
+								treeWalk.getPathString(), treeWalk.getNameString());
+						candidates.put(new BytesRef(candidate.blobPath), candidate);
+						if (candidates.size() == LOOKUP_BATCH_SIZE) {
+							IndexResult result = index(candidates, writer, searcher, blobIndexer);
+							checked += result.getChecked();
+							indexed += result.getIndexed();
+							candidates.clear();
 						}
-					} else {
-						indexBlob(writer, repository, extractor, blobId, blobPath);
-						indexed++;
 					}
 				}
+				IndexResult result = index(candidates, writer, searcher, blobIndexer);
+				checked += result.getChecked();
+				indexed += result.getIndexed();
+				blobIndexer.await();
 			}
 	
 			// record current commit so that we know which commit has been indexed
@@ -239,12 +283,113 @@ public class DefaultIndexManager implements IndexManager {
 		}
 	}
 	
+	private IndexResult index(Map<BytesRef, IndexCandidate> candidates, IndexWriter writer, 
+			@Nullable IndexSearcher searcher, BlobIndexer blobIndexer) throws Exception {
+		int checked = 0;
+		if (searcher != null) {
+			lookupIndexVersions(searcher, candidates);
+			checked = candidates.size();
+		}
+		
+		int indexed = 0;
+		for (IndexCandidate candidate: candidates.values()) {
+			BooleanQuery.Builder builder = new BooleanQuery.Builder();
+			builder.add(BLOB_HASH.query(candidate.blobId.name()), Occur.MUST);
+			builder.add(BLOB_PATH.query(candidate.blobPath), Occur.MUST);
+			BooleanQuery query = builder.build();
+			
+			String blobIndexVersion;
+			if (candidate.lookupRequired) 
+				blobIndexVersion = getBlobIndexVersion(searcher, query);
+			else
+				blobIndexVersion = candidate.blobIndexVersion;
+			
+			SymbolExtractor<Symbol> extractor = SymbolExtractorRegistry.getExtractor(candidate.blobName);
+			String currentBlobIndexVersion = getIndexVersion(extractor);
+			if (blobIndexVersion != null) {
+				if (!blobIndexVersion.equals(currentBlobIndexVersion)) {
+					writer.deleteDocuments(query);
+					blobIndexer.submit(extractor, candidate.blobId, candidate.blobPath);
+					indexed++;
+				}
+			} else {
+				blobIndexer.submit(extractor, candidate.blobId, candidate.blobPath);
+				indexed++;
+			}
+		}
+		return new IndexResult(checked, indexed);
+	}
+	
+	/*
+	 * Find index versions of candidate blobs with a single pass over doc values of the index, 
+	 * instead of searching the index for each candidate blob
+	 */
+	private void lookupIndexVersions(IndexSearcher searcher, Map<BytesRef, IndexCandidate> candidates) 
+			throws IOException {
+		for (LeafReaderContext context: searcher.getIndexReader().leaves()) {
+			LeafReader reader = context.reader();
+			BinaryDocValues blobPathValues = reader.getBinaryDocValues(BLOB_PATH.name());
+			if (blobPathValues == null)
+				continue;
+			SortedDocValues blobHashValues = reader.getSortedDocValues(BLOB_HASH.name());
+			SortedDocValues blobIndexVersionValues = reader.getSortedDocValues(BLOB_INDEX_VERSION.name());
+			Bits liveDocs = reader.getLiveDocs();
+			
+			int doc;
+			while ((doc = blobPathValues.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+				if (liveDocs != null && !liveDocs.get(doc))
+					continue;
+				IndexCandidate candidate = candidates.get(blobPathValues.binaryValue());
+				if (candidate != null) {
+					if (blobHashValues != null && blobHashValues.advanceExact(doc)) {
+						if (blobHashValues.binaryValue().bytesEquals(candidate.blobHash) 
+								&& blobIndexVersionValues != null && blobIndexVersionValues.advanceExact(doc)) {
+							candidate.blobIndexVersion = blobIndexVersionValues.binaryValue().utf8ToString();
+						}
+					} else {
+						// document indexed before blob hash doc values were introduced
+						candidate.lookupRequired = true;
+					}
+				}
+			}
+		}
+	}
+	
+	@Nullable
+	private String getBlobIndexVersion(IndexSearcher searcher, Query query) throws IOException {
+		AtomicReference<String> blobIndexVersionRef = new AtomicReference<>(null);
+		searcher.search(query, new SimpleCollector() {
+
+			private LeafReaderContext context;
+
+			@Override
+			public void collect(int doc) throws IOException {
+				blobIndexVersionRef.set(searcher.doc(context.docBase+doc).get(BLOB_INDEX_VERSION.name()));
+			}
+
+			@Override
+			protected void doSetNextReader(LeafReaderContext context) throws IOException {
+				this.context = context;
+			}
+
+			@Override
+			public boolean needsScores() {
+				return false;
+			}
+			
+		});
+		return blobIndexVersionRef.get();
+	}
+	
 	private void indexBlob(IndexWriter writer, Repository repository, 
 			SymbolExtractor<Symbol> extractor, ObjectId blobId, String blobPath) throws IOException {
 		Document document = new Document();
 		
-		document.add(new StoredField(BLOB_INDEX_VERSION.name(), getIndexVersion(extractor)));
+		String blobIndexVersion = getIndexVersion(extractor);
+		document.add(new StoredField(BLOB_INDEX_VERSION.name(), blobIndexVersion));
+		document.add(new SortedDocValuesField(BLOB_INDEX_VERSION.name(), new BytesRef(blobIndexVersion)));
 		document.add(new StringField(BLOB_HASH.name(), blobId.name(), Store.NO));
+		document.add(new SortedDocValuesField(BLOB_HASH.name(), new BytesRef(blobId.name())));
 		document.add(new StringField(BLOB_PATH.name(), blobPath, Store.NO));
 		document.add(new BinaryDocValuesField(BLOB_PATH.name(), new BytesRef(blobPath.getBytes(StandardCharsets.UTF_8))));
 		
@@ -282,8 +427,7 @@ public class DefaultIndexManager implements IndexManager {
 								document.add(new StringField(fieldName, fieldValue, Store.NO));
 							}
 						}
-						byte[] bytesOfSymbols = SerializationUtils.serialize((Serializable) symbols);
-						document.add(new StoredField(BLOB_SYMBOL_LIST.name(), bytesOfSymbols));
+						document.add(new StoredField(BLOB_SYMBOL_LIST.name(), SymbolListCodec.encode(symbols)));
 					}
 				} 
 			} else {
@@ -296,6 +440,93 @@ public class DefaultIndexManager implements IndexManager {
 		writer.addDocument(document);
 	}
 	
+	/**
+	 * Loads blobs and extracts their symbols on indexing threads while the tree is still being 
+	 * walked on calling thread. Documents are added to the index writer directly from indexing 
+	 * threads as the writer is thread safe. Content of pending blobs is bounded by indexing 
+	 * memory so that the tree walk blocks if blob loading falls behind  
+	 */
+	private class BlobIndexer implements AutoCloseable {
+		
+		private final Repository repository;
+		
+		private final IndexWriter writer;
+		
+		private final ObjectReader reader;
+		
+		private final Queue<Future<?>> futures = new ArrayDeque<>();
+		
+		private volatile boolean cancelled;
+		
+		public BlobIndexer(Repository repository, IndexWriter writer) {
+			this.repository = repository;
+			this.writer = writer;
+			reader = repository.newObjectReader();
+		}
+		
+		public void submit(SymbolExtractor<Symbol> extractor, ObjectId blobId, String blobPath) 
+				throws IOException, InterruptedException, ExecutionException {
+			checkCompleted();
+			
+			long blobSize = reader.getObjectSize(blobId, Constants.OBJ_BLOB);
+			int memoryPermits = (int) Math.min(Math.min(blobSize, MAX_INDEXABLE_SIZE)/1024 + 1, indexingMemoryPermits); 
+			indexingMemory.acquire(memoryPermits);
+			try {
+				futures.add(indexingExecutor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						try {
+							if (!cancelled)
+								indexBlob(writer, repository, extractor, blobId, blobPath);
+						} finally {
+							indexingMemory.release(memoryPermits);
+						}
+						return null;
+					}
+					
+				}));
+			} catch (Exception e) {
+				indexingMemory.release(memoryPermits);
+				throw e;
+			}
+		}
+		
+		/*
+		 * Fail fast if some blob can not be indexed, instead of walking through the whole tree
+		 */
+		private void checkCompleted() throws InterruptedException, ExecutionException {
+			while (!futures.isEmpty() && futures.peek().isDone())
+				futures.poll().get();
+		}
+		
+		public void await() throws InterruptedException, ExecutionException {
+			while (!futures.isEmpty())
+				futures.poll().get();
+		}
+
+		/*
+		 * Skip pending blobs and wait for running ones so that index writer is not 
+		 * touched by indexing threads after it is rolled back
+		 */
+		@Override
+		public void close() {
+			cancelled = true;
+			for (Future<?> future: futures) {
+				try {
+					future.get();
+				} catch (Exception e) {
+				}
+			}
+			reader.close();
+		}
+		
+	}
+	
+	private static String getIndexLockName(Long projectId) {
+		return "code-index:" + projectId;
+	}
+	
 	private BatchWorker getBatchWorker(Long projectId) {
 		return new BatchWorker("project-" + projectId + "-indexBlob", 1) {
 
@@ -307,11 +538,23 @@ public class DefaultIndexManager implements IndexManager {
 					public void run() {
 						Preconditions.checkState(works.size() == 1);
 
-						Project project = projectManager.load(projectId);
-						ObjectId commitId = ((IndexWork) works.iterator().next()).getCommitId();
-						doIndex(project, commitId);
-						
-						listenerRegistry.post(new CommitIndexed(project, commitId.copy()));
+						Prioritized work = works.iterator().next();
+						Lock lock = LockUtils.getLock(getIndexLockName(projectId));
+						lock.lock();
+						try {
+							if (work instanceof IndexWork) {
+								Project project = projectManager.load(projectId);
+								ObjectId commitId = ((IndexWork) work).getCommitId();
+								doIndex(project, commitId);
+								
+								listenerRegistry.post(new CommitIndexed(project, commitId.copy()));
+							} else {
+								doMaintain(projectId);
+							}
+							refreshIndexStatus(projectId);
+						} finally {
+							lock.unlock();
+						}
 					}
 					
 				});
@@ -320,13 +563,22 @@ public class DefaultIndexManager implements IndexManager {
 		};
 	}
 
-	private IndexResult doIndex(Project project, ObjectId commit, Directory directory, IndexSearcher searcher) {
+	private IndexWriterConfig newWriterConfig() {
 		IndexWriterConfig writerConfig = new IndexWriterConfig(new NGramAnalyzer(NGRAM_SIZE, NGRAM_SIZE));
 		writerConfig.setOpenMode(OpenMode.CREATE_OR_APPEND);
-		try (IndexWriter writer = new IndexWriter(directory, writerConfig)) {
+		TieredMergePolicy mergePolicy = new TieredMergePolicy();
+		mergePolicy.setSegmentsPerTier(serverConfig.getIndexSegmentsPerTier());
+		mergePolicy.setForceMergeDeletesPctAllowed(serverConfig.getIndexDeletesPctAllowed());
+		writerConfig.setMergePolicy(mergePolicy);
+		return writerConfig;
+	}
+	
+	private IndexResult doIndex(Project project, ObjectId commit, Directory directory, IndexSearcher searcher) {
+		try (IndexWriter writer = new IndexWriter(directory, newWriterConfig())) {
 			try {
 				logger.debug("Indexing commit (project: {}, commit: {})", project.getName(), commit.getName());
 				IndexResult indexResult = index(project.getRepository(), commit, writer, searcher);
+				writer.setLiveCommitData(Collections.singletonMap(LAST_COMMIT_DATA, commit.name()).entrySet());
 				writer.commit();
 				return indexResult;
 			} catch (Exception e) {
@@ -356,6 +608,79 @@ public class DefaultIndexManager implements IndexManager {
 		}
 	}
 
+	/*
+	 * Merge away deleted documents accumulated from reindexing blobs 
+	 */
+	private void doMaintain(Long projectId) {
+		IndexStatus status = getIndexStatus(projectId);
+		if (status != null && status.getDeletesPct() > serverConfig.getIndexDeletesPctAllowed()) {
+			File indexDir = storageManager.getProjectIndexDir(projectId);
+			try (	Directory directory = FSDirectory.open(indexDir.toPath());
+					IndexWriter writer = new IndexWriter(directory, newWriterConfig())) {
+				logger.debug("Compacting code index (project id: {}, deleted documents: {}%)", 
+						projectId, status.getDeletesPct());
+				writer.forceMergeDeletes();
+				writer.commit();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	private void refreshIndexStatus(Long projectId) {
+		IndexStatus status = getIndexStatus(projectId);
+		if (status != null)
+			indexStatuses.put(projectId, status);
+		else
+			indexStatuses.remove(projectId);
+	}
+	
+	@Override
+	public Map<Long, IndexStatus> getIndexStatuses() {
+		return new HashMap<>(indexStatuses);
+	}
+	
+	@Override
+	public IndexStatus getIndexStatus(Long projectId) {
+		File indexDir = storageManager.getProjectIndexDir(projectId);
+		if (indexDir.exists()) {
+			try (Directory directory = FSDirectory.open(indexDir.toPath())) {
+				if (DirectoryReader.indexExists(directory)) {
+					SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(directory);
+					long size = 0;
+					int documents = 0;
+					int deletedDocuments = 0;
+					for (SegmentCommitInfo segmentInfo: segmentInfos) {
+						size += segmentInfo.sizeInBytes();
+						documents += segmentInfo.info.maxDoc();
+						deletedDocuments += segmentInfo.getDelCount();
+					}
+					return new IndexStatus(size, segmentInfos.size(), documents, deletedDocuments, 
+							segmentInfos.getUserData().get(LAST_COMMIT_DATA));
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return null;
+	}
+
+	@Sessional
+	@Override
+	public void execute() {
+		for (Project project: projectManager.query()) {
+			refreshIndexStatus(project.getId());
+			IndexStatus status = indexStatuses.get(project.getId());
+			if (status != null && status.getDeletesPct() > serverConfig.getIndexDeletesPctAllowed())
+				batchWorkManager.submit(getBatchWorker(project.getId()), new MaintenanceWork());
+		}
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return CronScheduleBuilder.dailyAtHourAndMinute(1, 0);
+	}
+	
 	@Override
 	public String getIndexVersion() {
 		return DigestUtils.md5Hex(DATA_VERSION + ";" + SymbolExtractorRegistry.getVersion());
@@ -402,21 +727,52 @@ public class DefaultIndexManager implements IndexManager {
 	@Sessional
 	@Listen
 	public void on(SystemStarted event) {
-		for (Project project: projectManager.query()) {
-			File indexDir = storageManager.getProjectIndexDir(project.getId());
-			if (indexDir.exists()) {
-				try (Directory directory = FSDirectory.open(indexDir.toPath())) {
-					if (DirectoryReader.indexExists(directory)) {
-						try (IndexReader reader = DirectoryReader.open(directory)) {
-						} catch (IndexFormatTooOldException e) {
-							FileUtils.cleanDir(indexDir);
-						}
-					} 
-				} catch (IOException e) {
-					throw new RuntimeException(e);
+		ProjectReconciler reconciler = new ProjectReconciler("code index", executorService, sessionManager);
+		reconciler.reconcile(projectManager.query(), new ProjectReconciler.Task() {
+
+			/*
+			 * Server serves requests while reconciling, so hold index lock to keep off index works 
+			 * of the project, and let search manager close its searcher before index is cleaned
+			 */
+			@Override
+			public void reconcile(Long projectId, int rank) {
+				File indexDir = storageManager.getProjectIndexDir(projectId);
+				if (indexDir.exists()) {
+					Lock lock = LockUtils.getLock(getIndexLockName(projectId));
+					lock.lock();
+					try (Directory directory = FSDirectory.open(indexDir.toPath())) {
+						if (DirectoryReader.indexExists(directory)) {
+							try (IndexReader reader = DirectoryReader.open(directory)) {
+							} catch (IndexFormatTooOldException e) {
+								listenerRegistry.post(new IndexCleaning(projectManager.load(projectId)));
+								FileUtils.cleanDir(indexDir);
+							}
+						} 
+						refreshIndexStatus(projectId);
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					} finally {
+						lock.unlock();
+					}
 				}
 			}
-		}
+			
+		});
+		
+		taskId = taskScheduler.schedule(this);
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) 
+			indexStatuses.remove(event.getEntity().getId());
+	}
+	
+	@Listen
+	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+		indexingExecutor.shutdownNow();
 	}
 	
 	@Sessional
@@ -431,6 +787,37 @@ public class DefaultIndexManager implements IndexManager {
 		batchWorkManager.submit(getBatchWorker(project.getId()), work);
 	}
 	
+	private static class IndexCandidate {
+		
+		final ObjectId blobId;
+		
+		final BytesRef blobHash;
+		
+		final String blobPath;
+		
+		final String blobName;
+		
+		String blobIndexVersion;
+		
+		boolean lookupRequired;
+		
+		IndexCandidate(ObjectId blobId, String blobPath, String blobName) {
+			this.blobId = blobId;
+			this.blobPath = blobPath;
+			this.blobName = blobName;
+			blobHash = new BytesRef(blobId.name());
+		}
+		
+	}
+	
+	private static class MaintenanceWork extends Prioritized {
+
+		public MaintenanceWork() {
+			super(MAINTENANCE_PRIORITY);
+		}
+		
+	}
+	
 	private static class IndexWork extends Prioritized {
 
 		private final ObjectId commitId;
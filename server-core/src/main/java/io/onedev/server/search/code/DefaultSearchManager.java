@@ -8,18 +8,23 @@ import static io.onedev.server.search.code.FieldConstants.BLOB_SYMBOL_LIST;
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.commons.lang.SerializationUtils;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
@@ -32,14 +37,18 @@ import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.BytesRef;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.commons.jsymbol.SymbolExtractorRegistry;
@@ -58,12 +67,42 @@ public class DefaultSearchManager implements SearchManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultSearchManager.class);
 	
+	private static final int MAX_CACHED_SYMBOLS = 500000;
+	
+	private static final int MAX_CACHED_HITS = 100000;
+	
+	private static final int MAX_CANDIDATE_PATHS = 1000;
+	
 	private final StorageManager storageManager;
 	
 	private final Map<Long, SearcherManager> searcherManagers = new ConcurrentHashMap<>();
 	
 	private final IndexManager indexManager;
 	
+	/*
+	 * Decoded symbol lists keyed by blob id and index version of its symbol extractor, 
+	 * weighed by number of symbols
+	 */
+	private final Cache<String, List<Symbol>> symbolsCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_SYMBOLS)
+			.weigher((String key, List<Symbol> value) -> value.size() + 1)
+			.build();
+	
+	/*
+	 * Search results keyed by fork root, commit, query and page, weighed by number of hits. Entries 
+	 * of a fork root are invalidated whenever a commit of it is indexed 
+	 */
+	private final Cache<SearchKey, SearchResult> hitsCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_HITS)
+			.weigher((SearchKey key, SearchResult value) -> value.getHits().size() + 1)
+			.build();
+	
+	/*
+	 * Index generation of fork roots, used to avoid caching hits of a search racing 
+	 * with indexing 
+	 */
+	private final Map<Long, AtomicLong> indexGenerations = new ConcurrentHashMap<>();
+	
 	@Inject
 	public DefaultSearchManager(StorageManager storageManager, IndexManager indexManager) {
 		this.storageManager = storageManager;
@@ -98,49 +137,75 @@ public class DefaultSearchManager implements SearchManager {
 	}
 	
 	@Override
-	public List<QueryHit> search(Project project, ObjectId commit, final BlobQuery query) 
+	public List<QueryHit> search(Project project, ObjectId commit, BlobQuery query) 
 			throws InterruptedException {
+		return search(project, commit, query, null, false).getHits();
+	}
+	
+	@Override
+	public SearchResult search(Project project, ObjectId commit, BlobQuery query, 
+			@Nullable String afterBlobPath) throws InterruptedException {
+		return search(project, commit, query, afterBlobPath, true);
+	}
+	
+	private SearchResult search(Project project, ObjectId commit, BlobQuery query, 
+			@Nullable String afterBlobPath, boolean paged) throws InterruptedException {
+		Long forkRootId = project.getForkRoot().getId();
+		SearchKey searchKey = new SearchKey(forkRootId, commit.copy(), query, afterBlobPath, paged);
+		SearchResult cachedResult = hitsCache.getIfPresent(searchKey);
+		if (cachedResult != null)
+			return new SearchResult(new ArrayList<>(cachedResult.getHits()), cachedResult.getNextBlobPath());
+		long indexGeneration = getIndexGeneration(forkRootId).get();
+		
 		List<QueryHit> hits = new ArrayList<>();
+		String nextBlobPath = null;
 
 		SearcherManager searcherManager = getSearcherManager(project.getForkRoot());
 		if (searcherManager != null) {
 			try {
 				final IndexSearcher searcher = searcherManager.acquire();
-				try {
-					try (RevWalk revWalk = new RevWalk(project.getRepository())){
-						final RevTree revTree = revWalk.parseCommit(commit).getTree();
-						final Set<String> checkedBlobPaths = new HashSet<>();
+				try (RevWalk revWalk = new RevWalk(project.getRepository())) {
+					RevTree revTree = revWalk.parseCommit(commit).getTree();
+					
+					/*
+					 * Candidate paths are collected with a single query in tree order, and then 
+					 * resolved batch by batch, each batch in a single tree walk instead of descending 
+					 * the tree for each candidate path. Batches stop as soon as enough hits are found. 
+					 * Tree order of paths in a recursive walk is the same as order of their UTF-8 bytes
+					 */
+					BytesRef lowerBound = afterBlobPath!=null?new BytesRef(afterBlobPath):null;
+					Iterator<BytesRef> candidatePathsIt = getCandidatePaths(searcher, query, lowerBound).iterator();
+					String lastBlobPath = null;
+					boolean completed = false;
+					while (!completed && candidatePathsIt.hasNext() && !Thread.currentThread().isInterrupted()) {
+						Set<String> blobPaths = new HashSet<>();
+						while (blobPaths.size() < MAX_CANDIDATE_PATHS && candidatePathsIt.hasNext())
+							blobPaths.add(candidatePathsIt.next().utf8ToString());
 						
-						searcher.search(query.asLuceneQuery(), new SimpleCollector() {
-	
-							private BinaryDocValues blobPathValues;
+						try (TreeWalk treeWalk = new TreeWalk(revWalk.getObjectReader())) {
+							treeWalk.addTree(revTree);
+							treeWalk.setRecursive(true);
+							treeWalk.setFilter(PathFilterGroup.createFromStrings(blobPaths));
 							
-							@Override
-							public void collect(int doc) throws IOException {
-								if (hits.size() < query.getCount() && !Thread.currentThread().isInterrupted()) {
-									Preconditions.checkState(blobPathValues.advanceExact(doc));
-									String blobPath = blobPathValues.binaryValue().utf8ToString();
-									
-									if (!checkedBlobPaths.contains(blobPath)) {
-										TreeWalk treeWalk = TreeWalk.forPath(project.getRepository(), blobPath, revTree);									
-										if (treeWalk != null)
-											query.collect(searcher, treeWalk, hits);
-										checkedBlobPaths.add(blobPath);
-									}
+							while (!Thread.currentThread().isInterrupted() && treeWalk.next()) {
+								if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE)
+									continue;
+								if (hits.size() >= query.getCount()) {
+									// a page is only complete if there are more blobs to resume from
+									nextBlobPath = lastBlobPath;
+									completed = true;
+									break;
+								} else if (paged) {
+									// collect a blob as a whole so that its hits are never split across pages
+									List<QueryHit> blobHits = new ArrayList<>();
+									query.collect(searcher, treeWalk, blobHits);
+									hits.addAll(blobHits);
+									lastBlobPath = treeWalk.getPathString();
+								} else {
+									query.collect(searcher, treeWalk, hits);
 								}
 							}
-	
-							@Override
-							protected void doSetNextReader(LeafReaderContext context) throws IOException {
-								blobPathValues  = context.reader().getBinaryDocValues(FieldConstants.BLOB_PATH.name());
-							}
-
-							@Override
-							public boolean needsScores() {
-								return false;
-							}
-	
-						});
+						}
 					}
 				} finally {
 					searcherManager.release(searcher);
@@ -152,7 +217,56 @@ public class DefaultSearchManager implements SearchManager {
 		if (Thread.interrupted())
 			throw new InterruptedException();
 
-		return hits;
+		SearchResult result = new SearchResult(hits, paged?nextBlobPath:null);
+		if (getIndexGeneration(forkRootId).get() == indexGeneration)
+			hitsCache.put(searchKey, new SearchResult(new ArrayList<>(hits), result.getNextBlobPath()));
+		return result;
+	}
+	
+	/*
+	 * Get distinct candidate paths matching specified query after specified lower bound, in order 
+	 * of their UTF-8 bytes
+	 */
+	private TreeSet<BytesRef> getCandidatePaths(IndexSearcher searcher, BlobQuery query, 
+			@Nullable BytesRef lowerBound) throws IOException {
+		TreeSet<BytesRef> candidatePaths = new TreeSet<>();
+		searcher.search(query.asLuceneQuery(), new SimpleCollector() {
+
+			private BinaryDocValues blobPathValues;
+			
+			@Override
+			public void collect(int doc) throws IOException {
+				if (!Thread.currentThread().isInterrupted()) {
+					Preconditions.checkState(blobPathValues.advanceExact(doc));
+					BytesRef blobPath = blobPathValues.binaryValue();
+					if ((lowerBound == null || blobPath.compareTo(lowerBound) > 0) 
+							&& !candidatePaths.contains(blobPath)) {
+						candidatePaths.add(BytesRef.deepCopyOf(blobPath));
+					}
+				}
+			}
+
+			@Override
+			protected void doSetNextReader(LeafReaderContext context) throws IOException {
+				blobPathValues  = context.reader().getBinaryDocValues(FieldConstants.BLOB_PATH.name());
+			}
+
+			@Override
+			public boolean needsScores() {
+				return false;
+			}
+
+		});
+		return candidatePaths;
+	}
+	
+	private AtomicLong getIndexGeneration(Long forkRootId) {
+		return indexGenerations.computeIfAbsent(forkRootId, key->new AtomicLong(0));
+	}
+	
+	private void invalidateHits(Long forkRootId) {
+		getIndexGeneration(forkRootId).incrementAndGet();
+		hitsCache.asMap().keySet().removeIf(key->key.forkRootId.equals(forkRootId));
 	}
 
 	@Override
@@ -187,6 +301,11 @@ public class DefaultSearchManager implements SearchManager {
 		BooleanQuery query = builder.build();
 		
 		String indexVersion = indexManager.getIndexVersion(SymbolExtractorRegistry.getExtractor(blobPath));
+		String cacheKey = blobId.name() + ":" + indexVersion;
+		List<Symbol> cachedSymbols = symbolsCache.getIfPresent(cacheKey);
+		if (cachedSymbols != null)
+			return cachedSymbols;
+		
 		AtomicReference<List<Symbol>> symbolsRef = new AtomicReference<>(null);
 		if (searcher != null) {
 			try {
@@ -194,7 +313,6 @@ public class DefaultSearchManager implements SearchManager {
 
 					private LeafReaderContext context;
 
-					@SuppressWarnings("unchecked")
 					@Override
 					public void collect(int doc) throws IOException {
 						Document document = searcher.doc(context.docBase+doc);
@@ -202,7 +320,7 @@ public class DefaultSearchManager implements SearchManager {
 							BytesRef bytesRef = document.getBinaryValue(BLOB_SYMBOL_LIST.name());
 							if (bytesRef != null) {
 								try {
-									symbolsRef.set((List<Symbol>) SerializationUtils.deserialize(bytesRef.bytes));
+									symbolsRef.set(SymbolListCodec.decode(bytesRef));
 								} catch (Exception e) {
 									logger.error("Error deserializing symbols", e);
 								}
@@ -226,7 +344,12 @@ public class DefaultSearchManager implements SearchManager {
 			}
 		}
 		
-		return symbolsRef.get();
+		List<Symbol> symbols = symbolsRef.get();
+		if (symbols != null) {
+			symbols = Collections.unmodifiableList(symbols);
+			symbolsCache.put(cacheKey, symbols);
+		}
+		return symbols;
 	}
 	
 	@Listen
@@ -237,6 +360,8 @@ public class DefaultSearchManager implements SearchManager {
 				searcherManager.maybeRefresh();
 		} catch (InterruptedException | IOException e) {
 			throw ExceptionUtils.unchecked(e);
+		} finally {
+			invalidateHits(event.getProject().getForkRoot().getId());
 		}
 	}
 
@@ -244,15 +369,26 @@ public class DefaultSearchManager implements SearchManager {
 	@Listen
 	public void on(EntityRemoved event) {
 		if (event.getEntity() instanceof Project) {
-			synchronized (searcherManagers) {
-				Long projectId = event.getEntity().getId();						
-				SearcherManager searcherManager = searcherManagers.remove(projectId);
-				if (searcherManager != null) {
-					try {
-						searcherManager.close();
-					} catch (IOException e) {
-						throw ExceptionUtils.unchecked(e);
-					}
+			Long projectId = event.getEntity().getId();
+			closeSearcherManager(projectId);
+			indexGenerations.remove(projectId);
+		}
+	}
+
+	@Listen
+	public void on(IndexCleaning event) {
+		closeSearcherManager(event.getProject().getId());
+	}
+	
+	private void closeSearcherManager(Long projectId) {
+		invalidateHits(projectId);
+		synchronized (searcherManagers) {
+			SearcherManager searcherManager = searcherManagers.remove(projectId);
+			if (searcherManager != null) {
+				try {
+					searcherManager.close();
+				} catch (IOException e) {
+					throw ExceptionUtils.unchecked(e);
 				}
 			}
 		}
@@ -271,5 +407,55 @@ public class DefaultSearchManager implements SearchManager {
 			searcherManagers.clear();
 		}
 	}
+	
+	private static class SearchKey {
+		
+		final Long forkRootId;
+		
+		final ObjectId commitId;
+		
+		final BlobQuery query;
+		
+		final String afterBlobPath;
+		
+		final boolean paged;
+		
+		SearchKey(Long forkRootId, ObjectId commitId, BlobQuery query, 
+				@Nullable String afterBlobPath, boolean paged) {
+			this.forkRootId = forkRootId;
+			this.commitId = commitId;
+			this.query = query;
+			this.afterBlobPath = afterBlobPath;
+			this.paged = paged;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof SearchKey))
+				return false;
+			if (this == other)
+				return true;
+			SearchKey otherKey = (SearchKey) other;
+			return new EqualsBuilder()
+					.append(forkRootId, otherKey.forkRootId)
+					.append(commitId, otherKey.commitId)
+					.append(query, otherKey.query)
+					.append(afterBlobPath, otherKey.afterBlobPath)
+					.append(paged, otherKey.paged)
+					.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 37)
+					.append(forkRootId)
+					.append(commitId)
+					.append(query)
+					.append(afterBlobPath)
+					.append(paged)
+					.toHashCode();
+		}
+		
+	}
 
 }
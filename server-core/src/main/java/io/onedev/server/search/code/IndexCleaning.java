@@ -0,0 +1,21 @@
+package io.onedev.server.search.code;
+
+import io.onedev.server.model.Project;
+
+/**
+ * Posted before code index of a project is cleaned, so that opened searchers of the index 
+ * can be closed
+ */
+public class IndexCleaning {
+	
+	private final Project project;
+	
+	public IndexCleaning(Project project) {
+		this.project = project;
+	}
+
+	public Project getProject() {
+		return project;
+	}
+	
+}
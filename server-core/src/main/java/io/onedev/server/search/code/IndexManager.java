@@ -1,5 +1,7 @@
 package io.onedev.server.search.code;
 
+import java.util.Map;
+
 import javax.annotation.Nullable;
 
 import org.eclipse.jgit.lib.ObjectId;
@@ -18,4 +20,23 @@ public interface IndexManager {
 	
 	String getIndexVersion(@Nullable SymbolExtractor<Symbol> extractor);
 	
+	/**
+	 * Get status of code index of specified project
+	 * 
+	 * @return
+	 * 			status of code index, or <tt>null</tt> if project is not indexed yet
+	 */
+	@Nullable
+	IndexStatus getIndexStatus(Long projectId);
+	
+	/**
+	 * Get cached status of code indexes without reading them. Status of a project is refreshed 
+	 * when its index is checked at startup, after it is indexed or maintained, and by the nightly 
+	 * maintenance task
+	 * 
+	 * @return
+	 * 			map of project id to status of its code index. Projects not indexed yet are not included
+	 */
+	Map<Long, IndexStatus> getIndexStatuses();
+	
 }
@@ -0,0 +1,74 @@
+package io.onedev.server.search.code;
+
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
+
+/**
+ * Health metrics of code index of a project, read from latest commit of the index
+ */
+public class IndexStatus implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long size;
+	
+	private final int segments;
+	
+	private final int documents;
+	
+	private final int deletedDocuments;
+	
+	private final String lastCommitHash;
+	
+	public IndexStatus(long size, int segments, int documents, int deletedDocuments, 
+			@Nullable String lastCommitHash) {
+		this.size = size;
+		this.segments = segments;
+		this.documents = documents;
+		this.deletedDocuments = deletedDocuments;
+		this.lastCommitHash = lastCommitHash;
+	}
+
+	/**
+	 * @return
+	 * 			size of index files in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	public int getSegments() {
+		return segments;
+	}
+
+	/**
+	 * @return
+	 * 			number of documents, including deleted documents not yet merged away
+	 */
+	public int getDocuments() {
+		return documents;
+	}
+
+	public int getDeletedDocuments() {
+		return deletedDocuments;
+	}
+	
+	public int getDeletesPct() {
+		if (documents != 0)
+			return (int) (deletedDocuments * 100L / documents);
+		else
+			return 0;
+	}
+
+	/**
+	 * @return
+	 * 			hash of last indexed commit, or <tt>null</tt> if index was last committed by 
+	 * 			an earlier version not recording it
+	 */
+	@Nullable
+	public String getLastCommitHash() {
+		return lastCommitHash;
+	}
+	
+}
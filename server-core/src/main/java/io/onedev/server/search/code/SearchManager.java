@@ -27,6 +27,23 @@ public interface SearchManager {
 	List<QueryHit> search(Project project, ObjectId commit, BlobQuery query) 
 			throws InterruptedException, TooGeneralQueryException;
 	
+	/**
+	 * Search specified project with specified revision and query page by page. Blobs are searched 
+	 * in tree order, and a page ends once count of the query is reached at a blob boundary, so 
+	 * hits of a blob are never split across pages.
+	 * 
+	 * @param afterBlobPath
+	 * 			{@link SearchResult#getNextBlobPath()} of previous page, or <tt>null</tt> to get 
+	 * 			first page
+	 * @return
+	 * 			a page of hits
+	 * @throws 
+	 * 			TooGeneralQueryException if supplied query term is too general to possibly cause query slow
+	 * 			InterruptedException if the search process is interrupted
+	 */
+	SearchResult search(Project project, ObjectId commit, BlobQuery query, @Nullable String afterBlobPath) 
+			throws InterruptedException, TooGeneralQueryException;
+	
 	@Nullable
 	List<Symbol> getSymbols(Project project, ObjectId blobId, String blobPath);
 	
@@ -0,0 +1,40 @@
+package io.onedev.server.search.code;
+
+import java.io.Serializable;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import io.onedev.server.search.code.hit.QueryHit;
+
+/**
+ * A page of code search hits, together with the cursor to resume the search from
+ */
+public class SearchResult implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<QueryHit> hits;
+	
+	private final String nextBlobPath;
+	
+	public SearchResult(List<QueryHit> hits, @Nullable String nextBlobPath) {
+		this.hits = hits;
+		this.nextBlobPath = nextBlobPath;
+	}
+
+	public List<QueryHit> getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return
+	 * 			path of last blob in this page to resume the search after, or <tt>null</tt> 
+	 * 			if there are no more blobs to search 
+	 */
+	@Nullable
+	public String getNextBlobPath() {
+		return nextBlobPath;
+	}
+	
+}
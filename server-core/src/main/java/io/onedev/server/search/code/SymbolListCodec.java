@@ -0,0 +1,68 @@
+package io.onedev.server.search.code;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.lucene.util.BytesRef;
+
+import io.onedev.commons.jsymbol.Symbol;
+
+/**
+ * Encoding of symbol list stored in {@link FieldConstants#BLOB_SYMBOL_LIST}. Encoded value starts
+ * with a format byte followed by deflated serialization of the symbol list. Symbol classes are
+ * defined by symbol extractors, so the list itself is still serialized, but the class descriptors
+ * and field names repeated throughout the object graph compress well.
+ * <p>
+ * Values stored by earlier versions are plain serialization of the list, and are recognized by
+ * the serialization stream magic
+ */
+class SymbolListCodec {
+
+	static final byte FORMAT_VERSION = 1;
+
+	private static final byte STREAM_MAGIC_HIGH = (byte) 0xAC;
+
+	private SymbolListCodec() {
+	}
+
+	public static byte[] encode(List<Symbol> symbols) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		baos.write(FORMAT_VERSION);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DeflaterOutputStream os = new DeflaterOutputStream(baos, deflater)) {
+			SerializationUtils.serialize((Serializable) symbols, os);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			deflater.end();
+		}
+		return baos.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	public static List<Symbol> decode(BytesRef bytesRef) {
+		byte format = bytesRef.bytes[bytesRef.offset];
+		if (format == FORMAT_VERSION) {
+			ByteArrayInputStream bais = new ByteArrayInputStream(bytesRef.bytes,
+					bytesRef.offset+1, bytesRef.length-1);
+			try (InflaterInputStream is = new InflaterInputStream(bais)) {
+				return (List<Symbol>) SerializationUtils.deserialize(is);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else if (format == STREAM_MAGIC_HIGH) {
+			return (List<Symbol>) SerializationUtils.deserialize(
+					new ByteArrayInputStream(bytesRef.bytes, bytesRef.offset, bytesRef.length));
+		} else {
+			throw new IllegalStateException("Unexpected symbol list format version: " + format);
+		}
+	}
+
+}
@@ -6,6 +6,8 @@ import java.util.List;
 
 import javax.annotation.Nullable;
 
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
@@ -22,6 +24,8 @@ import io.onedev.server.util.match.WildcardUtils;
 
 public class FileQuery extends BlobQuery {
 
+	private static final long serialVersionUID = 1L;
+
 	private final String fileNames;
 	
 	private final String excludeFileName;
@@ -71,6 +75,33 @@ public class FileQuery extends BlobQuery {
 		builder.add(new WildcardQuery(new Term(BLOB_NAME.name(), fileNames.toLowerCase())), Occur.MUST);
 	}
 
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof FileQuery))
+			return false;
+		if (this == other)
+			return true;
+		FileQuery otherQuery = (FileQuery) other;
+		return new EqualsBuilder()
+				.append(getDirectory(), otherQuery.getDirectory())
+				.append(getCount(), otherQuery.getCount())
+				.append(fileNames, otherQuery.fileNames)
+				.append(excludeFileName, otherQuery.excludeFileName)
+				.append(caseSensitive, otherQuery.caseSensitive)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 37)
+				.append(getDirectory())
+				.append(getCount())
+				.append(fileNames)
+				.append(excludeFileName)
+				.append(caseSensitive)
+				.toHashCode();
+	}
+	
 	public static class Builder {
 
 		private int count;
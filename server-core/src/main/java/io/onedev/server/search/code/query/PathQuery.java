@@ -6,6 +6,8 @@ import java.util.List;
 
 import javax.annotation.Nullable;
 
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
@@ -20,6 +22,8 @@ import io.onedev.server.search.code.hit.QueryHit;
 
 public class PathQuery extends BlobQuery {
 
+	private static final long serialVersionUID = 1L;
+
 	private final String match;
 	
 	public PathQuery(@Nullable String directory, String match, int count) {
@@ -40,5 +44,28 @@ public class PathQuery extends BlobQuery {
 	protected void applyConstraints(BooleanQuery.Builder builder) {
 		builder.add(new WildcardQuery(new Term(BLOB_PATH.name(), "*"+match+"*")), Occur.MUST);
 	}
-		
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof PathQuery))
+			return false;
+		if (this == other)
+			return true;
+		PathQuery otherQuery = (PathQuery) other;
+		return new EqualsBuilder()
+				.append(getDirectory(), otherQuery.getDirectory())
+				.append(getCount(), otherQuery.getCount())
+				.append(match, otherQuery.match)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 37)
+				.append(getDirectory())
+				.append(getCount())
+				.append(match)
+				.toHashCode();
+	}
+	
 }
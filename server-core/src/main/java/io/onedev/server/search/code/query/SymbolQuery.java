@@ -8,6 +8,8 @@ import java.util.List;
 
 import javax.annotation.Nullable;
 
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
@@ -29,6 +31,8 @@ import com.google.common.base.Splitter;
 
 public class SymbolQuery extends BlobQuery {
 
+	private static final long serialVersionUID = 1L;
+
 	private final String term;
 
 	private final String excludeTerm;
@@ -137,6 +141,41 @@ public class SymbolQuery extends BlobQuery {
 		}
 	}
 	
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof SymbolQuery))
+			return false;
+		if (this == other)
+			return true;
+		SymbolQuery otherQuery = (SymbolQuery) other;
+		return new EqualsBuilder()
+				.append(getDirectory(), otherQuery.getDirectory())
+				.append(getCount(), otherQuery.getCount())
+				.append(term, otherQuery.term)
+				.append(excludeTerm, otherQuery.excludeTerm)
+				.append(excludeBlobPath, otherQuery.excludeBlobPath)
+				.append(primary, otherQuery.primary)
+				.append(local, otherQuery.local)
+				.append(caseSensitive, otherQuery.caseSensitive)
+				.append(fileNames, otherQuery.fileNames)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 37)
+				.append(getDirectory())
+				.append(getCount())
+				.append(term)
+				.append(excludeTerm)
+				.append(excludeBlobPath)
+				.append(primary)
+				.append(local)
+				.append(caseSensitive)
+				.append(fileNames)
+				.toHashCode();
+	}
+	
 	public static class Builder {
 
 		private String term;
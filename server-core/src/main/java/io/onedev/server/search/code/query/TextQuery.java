@@ -12,6 +12,8 @@ import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.CharUtils;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
@@ -33,6 +35,8 @@ import io.onedev.server.util.ContentDetector;
 
 public class TextQuery extends BlobQuery {
 
+	private static final long serialVersionUID = 1L;
+
 	private static int MAX_LINE_LEN = 1024;
 
 	private final String term;
@@ -191,6 +195,37 @@ public class TextQuery extends BlobQuery {
 			throw new TooGeneralQueryException();
 	}
 	
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof TextQuery))
+			return false;
+		if (this == other)
+			return true;
+		TextQuery otherQuery = (TextQuery) other;
+		return new EqualsBuilder()
+				.append(getDirectory(), otherQuery.getDirectory())
+				.append(getCount(), otherQuery.getCount())
+				.append(term, otherQuery.term)
+				.append(regex, otherQuery.regex)
+				.append(caseSensitive, otherQuery.caseSensitive)
+				.append(wholeWord, otherQuery.wholeWord)
+				.append(fileNames, otherQuery.fileNames)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 37)
+				.append(getDirectory())
+				.append(getCount())
+				.append(term)
+				.append(regex)
+				.append(caseSensitive)
+				.append(wholeWord)
+				.append(fileNames)
+				.toHashCode();
+	}
+	
 	public static class Builder {
 
 		private String term;
@@ -9,7 +9,7 @@ query
 criteria
 	: operator=(Successful|Failed|Cancelled|Running|Waiting|Pending|TimedOut|SubmittedByMe|CancelledByMe|AssociatedWithPullRequests|RequiredByPullRequests) #OperatorCriteria
     | criteriaField=Quoted WS+ operator=IsEmpty #FieldOperatorCriteria
-	| operator=(FixedIssue|SubmittedBy|CancelledBy|DependsOn|DependenciesOf|AssociatedWithPullRequest|RequiredByPullRequest) WS+ criteriaValue=Quoted #OperatorValueCriteria
+	| operator=(FixedIssue|LogContains|SubmittedBy|CancelledBy|DependsOn|DependenciesOf|AssociatedWithPullRequest|RequiredByPullRequest) WS+ criteriaValue=Quoted #OperatorValueCriteria
     | criteriaField=Quoted WS+ operator=(Is|IsGreaterThan|IsLessThan|IsBefore|IsAfter) WS+ criteriaValue=Quoted #FieldOperatorValueCriteria
     | criteria WS+ And WS+ criteria	#AndCriteria
     | criteria WS+ Or WS+ criteria #OrCriteria
@@ -81,6 +81,10 @@ FixedIssue
 	: 'fixed' WS+ 'issue'
 	;
 	
+LogContains
+	: 'log' WS+ 'contains'
+	;
+	
 AssociatedWithPullRequest
 	: 'associated' WS+ 'with' WS+ 'pull' WS+ 'request'
 	;
@@ -143,6 +143,8 @@ public class BuildQuery extends EntityQuery<Build> {
 							return new CancelledByCriteria(value);
 						else if (ctx.FixedIssue() != null) 
 							return new FixedIssueCriteria(project, value);
+						else if (ctx.LogContains() != null) 
+							return new LogContainsCriteria(project, value);
 						else if (ctx.DependsOn() != null) 
 							return new DependsOnCriteria(project, value);
 						else if (ctx.DependenciesOf() != null) 
@@ -0,0 +1,92 @@
+package io.onedev.server.search.entity.build;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import io.onedev.server.OneDev;
+import io.onedev.server.OneException;
+import io.onedev.server.buildspec.job.log.LogManager;
+import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Project;
+import io.onedev.server.search.entity.EntityCriteria;
+import io.onedev.server.util.SecurityUtils;
+import io.onedev.server.util.query.BuildQueryConstants;
+
+public class LogContainsCriteria extends EntityCriteria<Build> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Long projectId;
+	
+	private final String value;
+	
+	public LogContainsCriteria(@Nullable Project project, String value) {
+		if (!getLogManager().isLogIndexEnabled())
+			throw new OneException("Build log index is not enabled");
+		if (!value.chars().anyMatch(Character::isLetterOrDigit))
+			throw new OneException("Log text to query should contain letters or digits");
+		projectId = project!=null?project.getId():null;
+		this.value = value;
+	}
+	
+	private LogManager getLogManager() {
+		return OneDev.getInstance(LogManager.class);
+	}
+
+	@Override
+	public Predicate getPredicate(Root<Build> root, CriteriaBuilder builder) {
+		Path<Long> attribute = root.get(BuildQueryConstants.ATTR_ID);
+		BuildManager buildManager = OneDev.getInstance(BuildManager.class);
+		ProjectManager projectManager = OneDev.getInstance(ProjectManager.class);
+		
+		Collection<Project> projects = new ArrayList<>();
+		if (projectId != null) 
+			projects.add(projectManager.load(projectId));
+		else 
+			projects.addAll(projectManager.query());
+		
+		List<Predicate> predicates = new ArrayList<>();
+		for (Project project: projects) {
+			// Only match builds whose log is accessible, otherwise log content can be probed
+			Collection<String> logAccessibleJobNames = new HashSet<>();
+			for (String jobName: buildManager.getJobNames(project)) {
+				if (SecurityUtils.canAccessLog(project, jobName))
+					logAccessibleJobNames.add(jobName);
+			}
+			if (logAccessibleJobNames.isEmpty())
+				continue;
+			
+			Collection<Long> inBuildIds = getLogManager().searchBuilds(project, value);
+			if (!inBuildIds.isEmpty()) {
+				predicates.add(builder.and(
+						builder.equal(root.get(BuildQueryConstants.ATTR_PROJECT), project),
+						root.get(BuildQueryConstants.ATTR_JOB).in(logAccessibleJobNames),
+						inManyValues(builder, attribute, inBuildIds, buildManager.getIdsByProject(project.getId()))));
+			}
+		}
+		return builder.or(predicates.toArray(new Predicate[0]));
+	}
+
+	@Override
+	public boolean matches(Build build) {
+		return (projectId == null || projectId.equals(build.getProject().getId())) 
+				&& SecurityUtils.canAccessLog(build)
+				&& getLogManager().contains(build, value);
+	}
+
+	@Override
+	public String asString() {
+		return BuildQuery.getRuleName(BuildQueryLexer.LogContains) + " " + quote(value);
+	}
+
+}
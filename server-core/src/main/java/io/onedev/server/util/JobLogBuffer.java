@@ -0,0 +1,129 @@
+package io.onedev.server.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.server.buildspec.job.log.JobLogEntry;
+import io.onedev.server.buildspec.job.log.instruction.LogInstruction;
+
+/**
+ * Buffers messages of chatty job output and passes them to underlying job logger in batches via 
+ * {@link JobLogger#log(List)}. Each message is stamped with the time it is logged, instead of the 
+ * time its batch is flushed. Buffered messages are flushed by the logging thread when 
+ * {@link #MAX_BATCH_SIZE} messages are accumulated or {@link #FLUSH_INTERVAL} milliseconds 
+ * elapsed since last flush, and when the buffer is closed. Messages left in buffer when job 
+ * output goes quiet are flushed in background. Batches are passed to underlying job logger 
+ * outside of the buffer lock, so that logging is not blocked by a slow job logger, and a slow 
+ * job logger does not delay buffers of other jobs. Log instructions are never buffered: they are 
+ * passed to underlying job logger by the logging thread right after flushing buffered messages, 
+ * so that they execute in order and in context of the logging thread. The buffer itself is also 
+ * a job logger so that it can be passed wherever a job logger is expected.
+ */
+public class JobLogBuffer extends JobLogger implements AutoCloseable {
+
+	private static final Logger logger = LoggerFactory.getLogger(JobLogBuffer.class);
+	
+	private static final int MAX_BATCH_SIZE = 500;
+	
+	private static final long FLUSH_INTERVAL = 200;
+	
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "job-log-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private static final AtomicInteger flusherNumber = new AtomicInteger(0);
+	
+	private static final ExecutorService flusher = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "job-log-flusher-" + flusherNumber.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final JobLogger jobLogger;
+	
+	private final ScheduledFuture<?> flushFuture;
+	
+	// held while passing a batch to job logger, so that batches are logged in order
+	private final Object flushLock = new Object();
+	
+	private final AtomicBoolean flushPending = new AtomicBoolean(false);
+	
+	private List<JobLogEntry> entries = new ArrayList<>();
+	
+	private long lastFlushTime = System.currentTimeMillis();
+	
+	public JobLogBuffer(JobLogger jobLogger) {
+		this.jobLogger = jobLogger;
+		flushFuture = timer.scheduleWithFixedDelay(() -> {
+			if (isStale() && flushPending.compareAndSet(false, true)) {
+				flusher.execute(() -> {
+					try {
+						flush();
+					} catch (Exception e) {
+						logger.error("Error flushing job log", e);
+					} finally {
+						flushPending.set(false);
+					}
+				});
+			}
+		}, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public void log(String message) {
+		if (message.startsWith(LogInstruction.PREFIX)) {
+			synchronized (flushLock) {
+				flush();
+				jobLogger.log(message);
+			}
+			return;
+		}
+		
+		boolean shouldFlush;
+		synchronized (this) {
+			entries.add(new JobLogEntry(new Date(), message));
+			shouldFlush = entries.size() >= MAX_BATCH_SIZE 
+					|| System.currentTimeMillis() - lastFlushTime >= FLUSH_INTERVAL;
+		}
+		if (shouldFlush)
+			flush();
+	}
+	
+	private synchronized boolean isStale() {
+		return !entries.isEmpty() && System.currentTimeMillis() - lastFlushTime >= FLUSH_INTERVAL;
+	}
+	
+	public void flush() {
+		synchronized (flushLock) {
+			List<JobLogEntry> batch;
+			synchronized (this) {
+				if (entries.isEmpty())
+					return;
+				batch = entries;
+				entries = new ArrayList<>();
+				lastFlushTime = System.currentTimeMillis();
+			}
+			jobLogger.log(batch);
+		}
+	}
+	
+	@Override
+	public void close() {
+		flushFuture.cancel(false);
+		flush();
+	}
+	
+}
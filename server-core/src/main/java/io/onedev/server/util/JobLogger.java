@@ -1,10 +1,13 @@
 package io.onedev.server.util;
 
+import java.util.List;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Splitter;
 import com.google.common.base.Throwables;
 
+import io.onedev.server.buildspec.job.log.JobLogEntry;
+
 public abstract class JobLogger {
 
 	private static final Pattern EOL_PATTERN = Pattern.compile("\r?\n");
@@ -18,4 +21,16 @@ public abstract class JobLogger {
 		
 	public abstract void log(String message);
 	
+	/**
+	 * Log specified entries as a batch. Implementations may override this to store the batch 
+	 * in one go, keeping time of each entry
+	 * 
+	 * @param entries
+	 * 			entries to log in order
+	 */
+	public void log(List<JobLogEntry> entries) {
+		for (JobLogEntry entry: entries)
+			log(entry.getMessage());
+	}
+	
 }
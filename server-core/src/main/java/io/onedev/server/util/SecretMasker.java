@@ -0,0 +1,124 @@
+package io.onedev.server.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import io.onedev.server.util.inputspec.SecretInput;
+
+/**
+ * Masks occurrences of a set of secrets in text. Secrets are compiled into an Aho-Corasick automaton
+ * once, so that text is masked in a single pass regardless of number of secrets. Overlapping
+ * occurrences of different secrets are masked together, so that no part of any secret is left
+ * unmasked.
+ */
+public class SecretMasker {
+
+	private final Node root = new Node();
+
+	private final boolean empty;
+
+	public SecretMasker(Collection<String> secrets) {
+		boolean empty = true;
+		for (String secret: secrets) {
+			if (secret.length() != 0) {
+				Node node = root;
+				for (int i=0; i<secret.length(); i++) {
+					char ch = secret.charAt(i);
+					Node child = node.children.get(ch);
+					if (child == null) {
+						child = new Node();
+						node.children.put(ch, child);
+					}
+					node = child;
+				}
+				node.longest = secret.length();
+				empty = false;
+			}
+		}
+		this.empty = empty;
+
+		Queue<Node> queue = new ArrayDeque<>();
+		for (Node child: root.children.values()) {
+			child.fail = root;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			Node node = queue.poll();
+			for (Map.Entry<Character, Node> entry: node.children.entrySet()) {
+				Node child = entry.getValue();
+				Node fail = node.fail;
+				while (fail != root && !fail.children.containsKey(entry.getKey()))
+					fail = fail.fail;
+				child.fail = fail.children.getOrDefault(entry.getKey(), root);
+
+				// secrets ending at the fail node are suffixes of secrets ending here
+				child.longest = Math.max(child.longest, child.fail.longest);
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * 			specified text with all occurrences of secrets replaced with {@link SecretInput#MASK},
+	 * 			or the text itself if it does not contain any secrets
+	 */
+	public String mask(String text) {
+		if (empty)
+			return text;
+
+		List<int[]> ranges = null;
+		Node node = root;
+		for (int i=0; i<text.length(); i++) {
+			char ch = text.charAt(i);
+			Node next;
+			while ((next = node.children.get(ch)) == null && node != root)
+				node = node.fail;
+			node = next!=null?next:root;
+
+			if (node.longest != 0) {
+				int from = i + 1 - node.longest;
+				if (ranges == null)
+					ranges = new ArrayList<>();
+
+				// a later occurrence may start before earlier ones if it is longer
+				int index = ranges.size();
+				while (index > 0 && ranges.get(index-1)[1] > from) {
+					from = Math.min(from, ranges.get(index-1)[0]);
+					ranges.remove(--index);
+				}
+				ranges.add(new int[] {from, i+1});
+			}
+		}
+
+		if (ranges != null) {
+			StringBuilder builder = new StringBuilder();
+			int copied = 0;
+			for (int[] range: ranges) {
+				builder.append(text, copied, range[0]).append(SecretInput.MASK);
+				copied = range[1];
+			}
+			builder.append(text, copied, text.length());
+			return builder.toString();
+		} else {
+			return text;
+		}
+	}
+
+	private static class Node {
+
+		final Map<Character, Node> children = new HashMap<>();
+
+		Node fail;
+
+		// length of longest secret ending at this node, or 0 if no secret ends here
+		int longest;
+
+	}
+
+}
@@ -224,6 +224,11 @@ public class SecurityUtils extends org.apache.shiro.SecurityUtils {
 				new JobPermission(build.getJobName(), new AccessBuildLog())));
 	}
 	
+	public static boolean canAccessLog(Project project, String jobName) {
+		return getSubject().isPermitted(new ProjectPermission(project, 
+				new JobPermission(jobName, new AccessBuildLog())));
+	}
+	
 	public static boolean canAccess(Build build) {
 		return getSubject().isPermitted(new ProjectPermission(build.getProject(), 
 				new JobPermission(build.getJobName(), new AccessBuild())));
@@ -38,4 +38,54 @@ public interface ServerConfig {
 	 */
 	int getSessionTimeout();
 	
+	/**
+	 * Get number of threads used to load and analyze blobs when indexing code.
+	 * <p>
+	 * @return
+	 * 			number of code indexing threads, shared by all projects
+	 */
+	int getIndexingThreads();
+	
+	/**
+	 * Get maximum memory in megabytes allowed to be occupied by blobs pending to be indexed.
+	 * <p>
+	 * @return
+	 * 			code indexing memory in megabytes, shared by all projects
+	 */
+	int getIndexingMemory();
+	
+	/**
+	 * Get number of similarly sized segments allowed per tier of code indexes.
+	 * <p>
+	 * @return
+	 * 			segments per tier of code index merge policy 
+	 */
+	int getIndexSegmentsPerTier();
+	
+	/**
+	 * Get percentage of deleted documents allowed in a code index before it is compacted by 
+	 * index maintenance.
+	 * <p>
+	 * @return
+	 * 			percentage of deleted documents allowed 
+	 */
+	int getIndexDeletesPctAllowed();
+	
+	/**
+	 * Whether or not to index logs of finished builds for full-text search.
+	 * <p>
+	 * @return
+	 * 			<tt>true</tt> if build logs should be indexed 
+	 */
+	boolean isBuildLogIndexEnabled();
+	
+	/**
+	 * Get window in milliseconds to coalesce web socket notifications of same observable sent 
+	 * to a page.
+	 * <p>
+	 * @return
+	 * 			notification window in milliseconds, or <tt>0</tt> to send every notification 
+	 */
+	int getWebSocketNotificationWindow();
+	
 }
@@ -0,0 +1,121 @@
+package io.onedev.server.util.work;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.SessionManager;
+
+/**
+ * Reconciles per-project data in background with bounded concurrency, for instance to check
+ * and rebuild project info at startup. Projects are processed in order of recent activity so
+ * that active projects catch up first, and progress is logged periodically. Reconciliation is
+ * started asynchronously so that the server is able to serve requests while it catches up.
+ */
+public class ProjectReconciler {
+
+	private static final Logger logger = LoggerFactory.getLogger(ProjectReconciler.class);
+
+	private static final long PROGRESS_LOG_INTERVAL = 30000;
+
+	private final String description;
+
+	private final ExecutorService executorService;
+
+	private final SessionManager sessionManager;
+
+	private final int concurrency;
+
+	public ProjectReconciler(String description, ExecutorService executorService,
+			SessionManager sessionManager, int concurrency) {
+		this.description = description;
+		this.executorService = executorService;
+		this.sessionManager = sessionManager;
+		this.concurrency = concurrency;
+	}
+
+	public ProjectReconciler(String description, ExecutorService executorService,
+			SessionManager sessionManager) {
+		this(description, executorService, sessionManager, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Start reconciling specified projects
+	 *
+	 * @param projects
+	 * 			projects to reconcile. Projects updated more recently will be reconciled first
+	 * @param task
+	 * 			task to reconcile a single project. The task runs inside a session and is passed
+	 * 			id of the project and its rank in the processing order (0 for the most active one)
+	 */
+	public void reconcile(List<Project> projects, Task task) {
+		List<Long> projectIds = projects.stream()
+				.sorted(Comparator.comparing(Project::getUpdateDate).reversed())
+				.map(Project::getId)
+				.collect(Collectors.toList());
+		int total = projectIds.size();
+		if (total == 0)
+			return;
+
+		Queue<Long> pendingIds = new ConcurrentLinkedQueue<>(projectIds);
+		AtomicInteger nextRank = new AtomicInteger(0);
+		AtomicInteger finished = new AtomicInteger(0);
+		AtomicLong lastLogTime = new AtomicLong(System.currentTimeMillis());
+		long startTime = System.currentTimeMillis();
+
+		logger.info("Reconciling {} ({} projects)...", description, total);
+		for (int i=0; i<Math.min(concurrency, total); i++) {
+			executorService.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					Long projectId;
+					while ((projectId = pendingIds.poll()) != null) {
+						Long id = projectId;
+						int rank = nextRank.getAndIncrement();
+						try {
+							sessionManager.run(new Runnable() {
+
+								@Override
+								public void run() {
+									task.reconcile(id, rank);
+								}
+
+							});
+						} catch (Exception e) {
+							logger.error("Error reconciling " + description + " (project id: " + id + ")", e);
+						}
+
+						int count = finished.incrementAndGet();
+						long now = System.currentTimeMillis();
+						long lastTime = lastLogTime.get();
+						if (count == total) {
+							logger.info("Reconciled {} ({} projects, {} seconds)", description, total,
+									(now-startTime)/1000);
+						} else if (now - lastTime >= PROGRESS_LOG_INTERVAL
+								&& lastLogTime.compareAndSet(lastTime, now)) {
+							logger.info("Reconciling {} ({}/{} projects)...", description, count, total);
+						}
+					}
+				}
+
+			});
+		}
+	}
+
+	public static interface Task {
+
+		void reconcile(Long projectId, int rank);
+
+	}
+
+}
@@ -21,6 +21,7 @@ import io.onedev.commons.codeassist.parser.ParseExpect;
 import io.onedev.commons.codeassist.parser.TerminalExpect;
 import io.onedev.server.OneDev;
 import io.onedev.server.OneException;
+import io.onedev.server.buildspec.job.log.LogManager;
 import io.onedev.server.entitymanager.BuildParamManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.search.entity.build.BuildQuery;
@@ -101,6 +102,8 @@ public class BuildQueryBehavior extends ANTLRAssistBehavior {
 									return SuggestionUtils.suggestBuilds(project, matchWith, InputAssistBehavior.MAX_SUGGESTIONS);
 								else if (operator == BuildQueryLexer.FixedIssue)
 									return SuggestionUtils.suggestIssues(project, matchWith, InputAssistBehavior.MAX_SUGGESTIONS);
+								else if (operator == BuildQueryLexer.LogContains)
+									return null;
 								else 
 									return SuggestionUtils.suggestPullRequests(project, matchWith, InputAssistBehavior.MAX_SUGGESTIONS);
 							} else {
@@ -161,6 +164,10 @@ public class BuildQueryBehavior extends ANTLRAssistBehavior {
 				return null;
 			}
 		}
+		if (suggestedLiteral.equals(BuildQuery.getRuleName(BuildQueryLexer.LogContains)) 
+				&& !OneDev.getInstance(LogManager.class).isLogIndexEnabled()) {
+			return null;
+		}
 		if (!withUnfinishedCriteria) {
 			if (suggestedLiteral.equals(BuildQuery.getRuleName(BuildQueryLexer.Running)) 
 					|| suggestedLiteral.equals(BuildQuery.getRuleName(BuildQueryLexer.Waiting))
@@ -199,6 +206,15 @@ public class BuildQueryBehavior extends ANTLRAssistBehavior {
 						hints.add("Use * for wildcard match");
 						hints.add("Use '\\' to escape quotes");
 					}
+				} else {
+					List<Element> operatorElements = terminalExpect.getState().findMatchedElementsByLabel("operator", true);
+					if (!operatorElements.isEmpty()) {
+						String operatorName = StringUtils.normalizeSpace(operatorElements.get(0).getMatchedText());
+						if (BuildQuery.getOperator(operatorName) == BuildQueryLexer.LogContains) {
+							hints.add("Words are matched in order regardless of case and punctuation");
+							hints.add("Use '\\' to escape quotes");
+						}
+					}
 				}
 			}
 		} 
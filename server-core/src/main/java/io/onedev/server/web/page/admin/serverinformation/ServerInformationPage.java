@@ -1,16 +1,34 @@
 package io.onedev.server.web.page.admin.serverinformation;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
 import de.agilecoders.wicket.core.markup.html.bootstrap.components.progress.ProgressBar;
 import de.agilecoders.wicket.core.markup.html.bootstrap.components.progress.ProgressBar.Type;
+import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.infomanager.AbstractEnvironmentManager;
+import io.onedev.server.infomanager.EnvironmentStatus;
+import io.onedev.server.model.Project;
+import io.onedev.server.search.code.IndexManager;
+import io.onedev.server.search.code.IndexStatus;
 import io.onedev.server.util.DateUtils;
+import io.onedev.server.util.Pair;
 import io.onedev.server.web.page.admin.AdministrationPage;
+import io.onedev.server.web.websocket.WebSocketManager;
+import io.onedev.server.web.websocket.WebSocketStatus;
 
 @SuppressWarnings("serial")
 public class ServerInformationPage extends AdministrationPage {
@@ -66,5 +84,53 @@ public class ServerInformationPage extends AdministrationPage {
 			}
 			
 		});
+		
+		WebSocketStatus webSocketStatus = OneDev.getInstance(WebSocketManager.class).getStatus();
+		add(new Label("webSocketConnections", webSocketStatus.getConnections()));
+		add(new Label("webSocketNotificationsSent", webSocketStatus.getNotificationsSent()));
+		add(new Label("webSocketNotificationsSuppressed", webSocketStatus.getNotificationsSuppressed()));
+		add(new Label("webSocketQueuedMessages", webSocketStatus.getQueuedMessages()));
+		add(new Label("webSocketMergedMessages", webSocketStatus.getMergedMessages()));
+		add(new Label("webSocketDroppedMessages", webSocketStatus.getDroppedMessages()));
+		add(new Label("webSocketDisconnectedClients", webSocketStatus.getDisconnectedClients()));
+		
+		EnvironmentStatus environmentStatus = AbstractEnvironmentManager.getStatus();
+		add(new Label("openEnvironments", environmentStatus.getOpenEnvs()));
+		add(new Label("openedEnvironments", environmentStatus.getOpenedEnvs()));
+		add(new Label("evictedEnvironments", environmentStatus.getEvictedEnvs()));
+		
+		add(new ListView<Pair<String, IndexStatus>>("codeIndexes", new LoadableDetachableModel<List<Pair<String, IndexStatus>>>() {
+
+			@Override
+			protected List<Pair<String, IndexStatus>> load() {
+				ProjectManager projectManager = OneDev.getInstance(ProjectManager.class);
+				List<Pair<String, IndexStatus>> codeIndexes = new ArrayList<>();
+				for (Map.Entry<Long, IndexStatus> entry: 
+						OneDev.getInstance(IndexManager.class).getIndexStatuses().entrySet()) {
+					Project project = projectManager.get(entry.getKey());
+					if (project != null)
+						codeIndexes.add(new Pair<>(project.getName(), entry.getValue()));
+				}
+				codeIndexes.sort(Comparator.comparing((Pair<String, IndexStatus> it) -> it.getSecond().getSize()).reversed());
+				return codeIndexes;
+			}
+			
+		}) {
+
+			@Override
+			protected void populateItem(ListItem<Pair<String, IndexStatus>> item) {
+				IndexStatus status = item.getModelObject().getSecond();
+				item.add(new Label("project", item.getModelObject().getFirst()));
+				item.add(new Label("size", FileUtils.byteCountToDisplaySize(status.getSize())));
+				item.add(new Label("segments", status.getSegments()));
+				item.add(new Label("documents", status.getDocuments()));
+				item.add(new Label("deleted", status.getDeletedDocuments() + " (" + status.getDeletesPct() + "%)"));
+				if (status.getLastCommitHash() != null)
+					item.add(new Label("lastCommit", GitUtils.abbreviateSHA(status.getLastCommitHash())));
+				else
+					item.add(new Label("lastCommit", "<i>Unknown</i>").setEscapeModelStrings(false));
+			}
+			
+		});
 	}
 }
@@ -81,6 +81,7 @@ import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.search.code.CommitIndexed;
 import io.onedev.server.search.code.IndexManager;
 import io.onedev.server.search.code.SearchManager;
+import io.onedev.server.search.code.SearchResult;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.query.BlobQuery;
 import io.onedev.server.search.code.query.TextQuery;
@@ -111,6 +112,7 @@ import io.onedev.server.web.page.project.blob.search.SearchMenuContributor;
 import io.onedev.server.web.page.project.blob.search.advanced.AdvancedSearchPanel;
 import io.onedev.server.web.page.project.blob.search.quick.QuickSearchPanel;
 import io.onedev.server.web.page.project.blob.search.result.SearchResultPanel;
+import io.onedev.server.web.page.project.blob.search.result.SearchResultPanel.PageLoader;
 import io.onedev.server.web.page.project.commits.ProjectCommitsPage;
 import io.onedev.server.web.util.EditParamsAware;
 import io.onedev.server.web.websocket.PageDataChanged;
@@ -653,8 +655,9 @@ public class ProjectBlobPage extends ProjectPage implements BlobRenderContext, S
 			}) {
 	
 				@Override
-				protected void onSearchComplete(AjaxRequestTarget target, List<QueryHit> hits) {
-					newSearchResult(target, hits);
+				protected void onSearchComplete(AjaxRequestTarget target, SearchResult result, 
+						PageLoader pageLoader) {
+					newSearchResult(target, result, pageLoader);
 					resizeWindow(target);
 					advancedSearchPanelModal.close();
 				}
@@ -926,9 +929,17 @@ public class ProjectBlobPage extends ProjectPage implements BlobRenderContext, S
 	}
 	
 	private void newSearchResult(@Nullable AjaxRequestTarget target, @Nullable List<QueryHit> hits) {
+		if (hits != null)
+			newSearchResult(target, new SearchResult(hits, null), null);
+		else
+			newSearchResult(target, null, null);
+	}
+	
+	private void newSearchResult(@Nullable AjaxRequestTarget target, @Nullable SearchResult result, 
+			@Nullable PageLoader pageLoader) {
 		Component content;
-		if (hits != null) {
-			content = new SearchResultPanel("content", this, hits) {
+		if (result != null) {
+			content = new SearchResultPanel("content", this, result, pageLoader) {
 				
 				@Override
 				protected void onClose(AjaxRequestTarget target) {
@@ -34,13 +34,17 @@ import org.apache.wicket.validation.IValidatable;
 import org.apache.wicket.validation.IValidationError;
 import org.eclipse.jgit.lib.ObjectId;
 
+import com.google.common.base.Preconditions;
+
 import de.agilecoders.wicket.core.markup.html.bootstrap.common.NotificationPanel;
 import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.git.BlobIdent;
+import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.search.code.SearchManager;
+import io.onedev.server.search.code.SearchResult;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.query.BlobQuery;
 import io.onedev.server.search.code.query.FileQuery;
@@ -53,6 +57,7 @@ import io.onedev.server.web.component.tabbable.AjaxActionTab;
 import io.onedev.server.web.component.tabbable.Tab;
 import io.onedev.server.web.component.tabbable.Tabbable;
 import io.onedev.server.web.page.project.blob.search.result.SearchResultPanel;
+import io.onedev.server.web.page.project.blob.search.result.SearchResultPanel.PageLoader;
 
 @SuppressWarnings("serial")
 public abstract class AdvancedSearchPanel extends Panel {
@@ -151,22 +156,25 @@ public abstract class AdvancedSearchPanel extends Panel {
 					
 					@Override
 					protected void runTask(AjaxRequestTarget target) {
-						List<QueryHit> hits;
+						SearchResult result;
+						PageLoader pageLoader;
 						if (revisionModel.getObject() != null) {
+							pageLoader = option.newPageLoader(AdvancedSearchPanel.this);
 							try {
-								hits = option.query(AdvancedSearchPanel.this);
+								result = pageLoader.load(null);
 							} catch (InterruptedException e) {
 								throw new RuntimeException(e);
 							}
 						} else {
-							hits = new ArrayList<>();
+							pageLoader = null;
+							result = new SearchResult(new ArrayList<>(), null);
 						}
 						
 						HashMap<Class<?>, SearchOption> savedOptions = getSavedOptions();
 						savedOptions.put(option.getClass(), option);
 						WebSession.get().setMetaData(SEARCH_OPTIONS, savedOptions);
 						
-						onSearchComplete(target, hits);
+						onSearchComplete(target, result, pageLoader);
 					}
 					
 				});
@@ -489,7 +497,8 @@ public abstract class AdvancedSearchPanel extends Panel {
 		response.render(CssHeaderItem.forReference(new AdvancedSearchResourceReference()));
 	}
 
-	protected abstract void onSearchComplete(AjaxRequestTarget target, List<QueryHit> hits);
+	protected abstract void onSearchComplete(AjaxRequestTarget target, SearchResult result, 
+			@Nullable PageLoader pageLoader);
 	
 	protected abstract void onCancel(AjaxRequestTarget target);
 
@@ -525,7 +534,74 @@ public abstract class AdvancedSearchPanel extends Panel {
 	}
 
 	static interface SearchOption extends Serializable {
-		List<QueryHit> query(AdvancedSearchPanel context) throws InterruptedException;
+		
+		/**
+		 * Create page loader of this option. Queries are created upon calling this method, so 
+		 * that subsequent pages are not affected by later option changes or blob navigation 
+		 */
+		PageLoader newPageLoader(AdvancedSearchPanel context);
+		
+	}
+	
+	private static class QueryPageLoader implements PageLoader {
+
+		private final Long projectId;
+		
+		private final ObjectId commitId;
+		
+		private final BlobQuery query;
+		
+		public QueryPageLoader(Project project, ObjectId commitId, BlobQuery query) {
+			projectId = project.getId();
+			this.commitId = commitId;
+			this.query = query;
+		}
+		
+		@Override
+		public SearchResult load(@Nullable String afterBlobPath) throws InterruptedException {
+			Project project = OneDev.getInstance(ProjectManager.class).load(projectId);
+			return OneDev.getInstance(SearchManager.class).search(project, commitId, query, afterBlobPath);
+		}
+		
+	}
+	
+	private static class SymbolPageLoader implements PageLoader {
+
+		private final Long projectId;
+		
+		private final ObjectId commitId;
+		
+		private final BlobQuery primaryQuery;
+		
+		private final BlobQuery secondaryQuery;
+		
+		public SymbolPageLoader(Project project, ObjectId commitId, BlobQuery primaryQuery, 
+				BlobQuery secondaryQuery) {
+			projectId = project.getId();
+			this.commitId = commitId;
+			this.primaryQuery = primaryQuery;
+			this.secondaryQuery = secondaryQuery;
+		}
+		
+		/*
+		 * Symbol hits are not paged as primary symbols should be displayed before 
+		 * secondary symbols
+		 */
+		@Override
+		public SearchResult load(@Nullable String afterBlobPath) throws InterruptedException {
+			Preconditions.checkState(afterBlobPath == null);
+			Project project = OneDev.getInstance(ProjectManager.class).load(projectId);
+			SearchManager searchManager = OneDev.getInstance(SearchManager.class);
+			List<QueryHit> hits = searchManager.search(project, commitId, primaryQuery);
+			if (hits.size() < SearchResultPanel.MAX_QUERY_ENTRIES) {
+				for (QueryHit hit: searchManager.search(project, commitId, secondaryQuery)) {
+					if (hits.size() < SearchResultPanel.MAX_QUERY_ENTRIES)
+						hits.add(hit);
+				}
+			}
+			return new SearchResult(hits, null);
+		}
+		
 	}
 	
 	static class SymbolSearchOption implements SearchOption {
@@ -538,10 +614,8 @@ public abstract class AdvancedSearchPanel extends Panel {
 		private boolean insideCurrentDir;
 
 		@Override
-		public List<QueryHit> query(AdvancedSearchPanel context) throws InterruptedException {
-			SearchManager searchManager = OneDev.getInstance(SearchManager.class);
-			List<QueryHit> hits;
-			BlobQuery query = new SymbolQuery.Builder()
+		public PageLoader newPageLoader(AdvancedSearchPanel context) {
+			BlobQuery primaryQuery = new SymbolQuery.Builder()
 					.term(term)
 					.primary(true)
 					.caseSensitive(caseSensitive)
@@ -549,22 +623,17 @@ public abstract class AdvancedSearchPanel extends Panel {
 					.fileNames(fileNames)
 					.count(SearchResultPanel.MAX_QUERY_ENTRIES)
 					.build();
-			ObjectId commit = context.projectModel.getObject().getRevCommit(context.revisionModel.getObject(), true);
-			hits = searchManager.search(context.projectModel.getObject(), commit, query);
-			
-			if (hits.size() < SearchResultPanel.MAX_QUERY_ENTRIES) {
-				query = new SymbolQuery.Builder()
-						.term(term)
-						.primary(false)
-						.caseSensitive(caseSensitive)
-						.directory(context.getDirectory(insideCurrentDir))
-						.fileNames(fileNames)
-						.count(SearchResultPanel.MAX_QUERY_ENTRIES - hits.size())
-						.build();
-				hits.addAll(searchManager.search(context.projectModel.getObject(), commit, query));
-			}
-			
-			return hits;
+			BlobQuery secondaryQuery = new SymbolQuery.Builder()
+					.term(term)
+					.primary(false)
+					.caseSensitive(caseSensitive)
+					.directory(context.getDirectory(insideCurrentDir))
+					.fileNames(fileNames)
+					.count(SearchResultPanel.MAX_QUERY_ENTRIES)
+					.build();
+			Project project = context.projectModel.getObject();
+			ObjectId commit = project.getRevCommit(context.revisionModel.getObject(), true);
+			return new SymbolPageLoader(project, commit.copy(), primaryQuery, secondaryQuery);
 		}
 		
 	}
@@ -578,16 +647,16 @@ public abstract class AdvancedSearchPanel extends Panel {
 		private boolean insideCurrentDir;
 
 		@Override
-		public List<QueryHit> query(AdvancedSearchPanel context) throws InterruptedException {
-			SearchManager searchManager = OneDev.getInstance(SearchManager.class);
+		public PageLoader newPageLoader(AdvancedSearchPanel context) {
 			BlobQuery query = new FileQuery.Builder()
 					.fileNames(term)
 					.caseSensitive(caseSensitive) 
 					.directory(context.getDirectory(insideCurrentDir))
-					.count(SearchResultPanel.MAX_QUERY_ENTRIES)
+					.count(SearchResultPanel.PAGE_SIZE)
 					.build();
-			ObjectId commit = context.projectModel.getObject().getRevCommit(context.revisionModel.getObject(), true);
-			return searchManager.search(context.projectModel.getObject(), commit, query);
+			Project project = context.projectModel.getObject();
+			ObjectId commit = project.getRevCommit(context.revisionModel.getObject(), true);
+			return new QueryPageLoader(project, commit.copy(), query);
 		}
 		
 	}
@@ -606,8 +675,7 @@ public abstract class AdvancedSearchPanel extends Panel {
 		private boolean insideCurrentDir;
 
 		@Override
-		public List<QueryHit> query(AdvancedSearchPanel context) throws InterruptedException {
-			SearchManager searchManager = OneDev.getInstance(SearchManager.class);
+		public PageLoader newPageLoader(AdvancedSearchPanel context) {
 			BlobQuery query = new TextQuery.Builder()
 					.term(term)
 					.regex(regex)
@@ -615,10 +683,11 @@ public abstract class AdvancedSearchPanel extends Panel {
 					.wholeWord(wholeWord)
 					.directory(context.getDirectory(insideCurrentDir))
 					.fileNames(fileNames)
-					.count(SearchResultPanel.MAX_QUERY_ENTRIES)
+					.count(SearchResultPanel.PAGE_SIZE)
 					.build();
-			ObjectId commit = context.projectModel.getObject().getRevCommit(context.revisionModel.getObject(), true);
-			return searchManager.search(context.projectModel.getObject(), commit, query);
+			Project project = context.projectModel.getObject();
+			ObjectId commit = project.getRevCommit(context.revisionModel.getObject(), true);
+			return new QueryPageLoader(project, commit.copy(), query);
 		}
 		
 	}
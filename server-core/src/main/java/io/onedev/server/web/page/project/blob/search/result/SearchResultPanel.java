@@ -1,5 +1,6 @@
 package io.onedev.server.web.page.project.blob.search.result;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -7,6 +8,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.Component;
 import org.apache.wicket.MetaDataKey;
@@ -32,6 +35,7 @@ import io.onedev.commons.jsymbol.util.HighlightableLabel;
 import io.onedev.commons.utils.LinearRange;
 import io.onedev.commons.utils.PlanarRange;
 import io.onedev.server.git.BlobIdent;
+import io.onedev.server.search.code.SearchResult;
 import io.onedev.server.search.code.hit.FileHit;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.hit.TextHit;
@@ -45,6 +49,8 @@ public abstract class SearchResultPanel extends Panel {
 
 	public static final int MAX_QUERY_ENTRIES = 1000;
 	
+	public static final int PAGE_SIZE = 100;
+	
 	private enum ExpandStatus {EXPAND_ALL, COLLAPSE_ALL};
 	
 	private static final String HITS_ID = "hits";
@@ -55,10 +61,14 @@ public abstract class SearchResultPanel extends Panel {
 	
 	private final BlobRenderContext context;
 	
-	private final List<MatchedBlob> blobs;
+	private final List<MatchedBlob> blobs = new ArrayList<>();
 	
 	private final boolean hasMore;
 	
+	private final PageLoader pageLoader;
+	
+	private String nextBlobPath;
+	
 	private int activeBlobIndex = -1;
 	
 	private int activeHitIndex = -1;
@@ -70,12 +80,30 @@ public abstract class SearchResultPanel extends Panel {
 	private AjaxLink<Void> nextMatchLink;
 	
 	public SearchResultPanel(String id, BlobRenderContext context, List<QueryHit> hits) {
+		this(id, context, new SearchResult(hits, null), null);
+	}
+	
+	/**
+	 * @param firstPage
+	 * 			first page of search result
+	 * @param pageLoader
+	 * 			loader of subsequent pages, or <tt>null</tt> if search result is not paged 
+	 */
+	public SearchResultPanel(String id, BlobRenderContext context, SearchResult firstPage, 
+			@Nullable PageLoader pageLoader) {
 		super(id);
 		
 		this.context = context;
+		this.pageLoader = pageLoader;
 		
-		hasMore = (hits.size() == MAX_QUERY_ENTRIES);
+		if (pageLoader != null)
+			nextBlobPath = firstPage.getNextBlobPath();
+		hasMore = (nextBlobPath == null && firstPage.getHits().size() == MAX_QUERY_ENTRIES);
 		
+		addHits(firstPage.getHits());
+	}
+	
+	private void addHits(List<QueryHit> hits) {
 		Map<String, MatchedBlob> hitsByBlob = new LinkedHashMap<>();
 
 		for (QueryHit hit: hits) {
@@ -95,8 +123,7 @@ public abstract class SearchResultPanel extends Panel {
 			}
 		}
 		
-		blobs = new ArrayList<>(hitsByBlob.values());
-		for (MatchedBlob blob: blobs) {
+		for (MatchedBlob blob: hitsByBlob.values()) {
 			Collections.sort(blob.getHits(), new Comparator<QueryHit>() {
 
 				@Override
@@ -115,6 +142,7 @@ public abstract class SearchResultPanel extends Panel {
 				}
 				
 			});
+			blobs.add(blob);
 		}
 	}
 
@@ -542,7 +570,39 @@ public abstract class SearchResultPanel extends Panel {
 			
 		});
 		
-		add(new WebMarkupContainer("noMatchingResult").setVisible(blobs.isEmpty()));
+		add(new AjaxLink<Void>("loadMore") {
+
+			@Override
+			public void onClick(AjaxRequestTarget target) {
+				SearchResult nextPage;
+				try {
+					nextPage = pageLoader.load(nextBlobPath);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				addHits(nextPage.getHits());
+				nextBlobPath = nextPage.getNextBlobPath();
+				target.add(SearchResultPanel.this);
+				target.appendJavaScript("$(window).resize();");
+			}
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(nextBlobPath != null);
+			}
+			
+		});
+		
+		add(new WebMarkupContainer("noMatchingResult") {
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(blobs.isEmpty());
+			}
+			
+		});
 		
 		setOutputMarkupId(true);
 	}
@@ -560,6 +620,17 @@ public abstract class SearchResultPanel extends Panel {
 		response.render(JavaScriptHeaderItem.forReference(new SearchResultResourceReference()));
 	}
 
+	public static interface PageLoader extends Serializable {
+		
+		/**
+		 * @param afterBlobPath
+		 * 			{@link SearchResult#getNextBlobPath()} of previous page, or <tt>null</tt> to 
+		 * 			load first page
+		 */
+		SearchResult load(@Nullable String afterBlobPath) throws InterruptedException;
+		
+	}
+	
 	private static class ActiveIndex {
 		int blob;
 		
@@ -9,7 +9,7 @@ import com.google.common.base.Preconditions;
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.PullRequestManager;
 import io.onedev.server.entitymanager.PullRequestReviewManager;
-import io.onedev.server.git.GitUtils;
+import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequestReview;
 import io.onedev.server.model.User;
@@ -98,7 +98,7 @@ public enum PullRequestOperation {
 					&& request.getSourceProject() != null 
 					&& request.getSource().getObjectName(false) != null
 					&& pullRequestManager.findEffective(request.getTarget(), request.getSource()) == null
-					&& !GitUtils.isMergedInto(request.getTargetProject().getRepository(), null,
+					&& !OneDev.getInstance(CommitInfoManager.class).isMergedInto(request.getTargetProject(),
 							request.getSource().getObjectId(), request.getTarget().getObjectId());
 		}
 
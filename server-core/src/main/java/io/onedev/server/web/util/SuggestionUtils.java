@@ -18,6 +18,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jgit.lib.ObjectId;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 
 import edu.emory.mathcs.backport.java.util.Collections;
@@ -41,6 +42,7 @@ import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.entitymanager.UserManager;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.infomanager.CommitInfoManager;
+import io.onedev.server.infomanager.PathIndex;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.Project;
@@ -49,6 +51,7 @@ import io.onedev.server.model.User;
 import io.onedev.server.model.support.JobSecret;
 import io.onedev.server.model.support.administration.GroovyScript;
 import io.onedev.server.security.permission.AccessProject;
+import io.onedev.server.util.PathComparator;
 import io.onedev.server.util.SecurityUtils;
 import io.onedev.server.util.match.PatternApplied;
 import io.onedev.server.util.match.WildcardUtils;
@@ -266,6 +269,73 @@ public class SuggestionUtils {
 		return suggestPaths(commitInfoManager.getFiles(project), matchWith);
 	}
 	
+	/**
+	 * Suggest paths from specified path index. Longest literal of the pattern is used to 
+	 * filter out candidate paths from the index, so that wildcard matching only needs to be 
+	 * applied to paths possibly matching the pattern. Paths in the index are already in 
+	 * suggestion order and need not to be sorted  
+	 */
+	public static List<InputSuggestion> suggestPaths(PathIndex pathIndex, String matchWith) {
+		if (matchWith.length() == 0)
+			return suggestTopLevelPaths(pathIndex);
+		
+		String longestLiteral = "";
+		for (String literal: Splitter.onPattern("[*?]").split(matchWith)) {
+			if (literal.length() > longestLiteral.length())
+				longestLiteral = literal;
+		}
+		List<String> paths;
+		if (longestLiteral.length() != 0)
+			paths = pathIndex.getPathsContaining(longestLiteral, false);
+		else
+			paths = pathIndex.getPaths();
+		return suggestPaths(paths, matchWith);
+	}
+	
+	/*
+	 * Suggest top level entries of specified paths, which should be in order of PathComparator. 
+	 * Paths under same top level directory are adjacent in this order, and the directory is 
+	 * suggested as longest directory containing all of them, which is shared by first and last 
+	 * path of the directory. So suggestions can be made in a single pass, which stops as soon 
+	 * as enough entries are suggested
+	 */
+	private static List<InputSuggestion> suggestTopLevelPaths(Iterable<String> paths) {
+		List<InputSuggestion> suggestions = new ArrayList<>();
+		String topLevelEntry = null;
+		String firstPath = null;
+		String lastPath = null;
+		for (String path: paths) {
+			String entry = StringUtils.substringBefore(path, "/");
+			if (!entry.equals(topLevelEntry)) {
+				if (firstPath != null) {
+					suggestions.add(suggestTopLevelPath(firstPath, lastPath));
+					if (suggestions.size() == InputAssistBehavior.MAX_SUGGESTIONS)
+						return suggestions;
+				}
+				topLevelEntry = entry;
+				firstPath = path;
+			}
+			lastPath = path;
+		}
+		if (firstPath != null)
+			suggestions.add(suggestTopLevelPath(firstPath, lastPath));
+		return suggestions;
+	}
+	
+	private static InputSuggestion suggestTopLevelPath(String firstPath, String lastPath) {
+		if (firstPath.equals(lastPath)) {
+			return new InputSuggestion(firstPath, -1, null, new LinearRange(0, 0));
+		} else {
+			List<String> firstSegments = Splitter.on('/').splitToList(firstPath);
+			List<String> lastSegments = Splitter.on('/').splitToList(lastPath);
+			StringBuilder builder = new StringBuilder();
+			int maxCount = Math.min(firstSegments.size(), lastSegments.size());
+			for (int i=0; i<maxCount && firstSegments.get(i).equals(lastSegments.get(i)); i++) 
+				builder.append(firstSegments.get(i)).append("/");
+			return new InputSuggestion(builder.toString(), builder.length(), null, new LinearRange(0, 0));
+		}
+	}
+	
 	private static List<InputSuggestion> suggest(@Nullable Project project, String matchWith, 
 			ProjectScopedSuggester projectScopedSuggester, String scopeSeparator) {
 		if (project == null) {
@@ -1,9 +1,13 @@
 package io.onedev.server.web.websocket;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -26,6 +30,7 @@ import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.util.ServerConfig;
 import io.onedev.server.util.schedule.SchedulableTask;
 import io.onedev.server.util.schedule.TaskScheduler;
 import io.onedev.server.web.page.base.BasePage;
@@ -47,18 +52,35 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 	
 	private final Map<String, Map<IKey, Collection<String>>> observables = new ConcurrentHashMap<>();
 	
+	/*
+	 * Inverted index of observables above, so that pages observing an observable can be found 
+	 * without checking all connections
+	 */
+	private final Map<String, Set<PageKey>> observers = new ConcurrentHashMap<>();
+	
 	private final IWebSocketConnectionRegistry connectionRegistry = new SimpleWebSocketConnectionRegistry();
 	
+	private final ScheduledExecutorService notificationScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "websocket-notification-scheduler");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final NotificationCoalescer notificationCoalescer;
+	
 	private String taskId;
 
 	@Inject
 	public DefaultWebSocketManager(Application application, TransactionManager transactionManager, 
-			WebSocketPolicy webSocketPolicy, TaskScheduler taskScheduler, ExecutorService executorService) {
+			WebSocketPolicy webSocketPolicy, TaskScheduler taskScheduler, ExecutorService executorService, 
+			ServerConfig serverConfig) {
 		this.application = application;
 		this.transactionManager = transactionManager;
 		this.webSocketPolicy = webSocketPolicy;
 		this.taskScheduler = taskScheduler;
 		this.executorService = executorService;
+		notificationCoalescer = new NotificationCoalescer(serverConfig.getWebSocketNotificationWindow(), 
+				notificationScheduler, this::sendNotification);
 	}
 	
 	@Override
@@ -70,13 +92,49 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 				sessionPages = new ConcurrentHashMap<>();
 				observables.put(sessionId, sessionPages);
 			}
-			sessionPages.put(new PageIdKey(page.getPageId()), page.findWebSocketObservables());
+			IKey pageId = new PageIdKey(page.getPageId());
+			PageKey pageKey = new PageKey(sessionId, pageId);
+			Collection<String> pageObservables = new HashSet<>(page.findWebSocketObservables());
+			Collection<String> prevPageObservables = sessionPages.put(pageId, pageObservables);
+			if (prevPageObservables != null) {
+				for (String observable: prevPageObservables) {
+					if (!pageObservables.contains(observable))
+						removeObserver(observable, pageKey);
+				}
+			}
+			for (String observable: pageObservables) {
+				if (prevPageObservables == null || !prevPageObservables.contains(observable))
+					addObserver(observable, pageKey);
+			}
 		}
 	}
 	
+	private void addObserver(String observable, PageKey pageKey) {
+		observers.compute(observable, (key, value) -> {
+			if (value == null)
+				value = ConcurrentHashMap.newKeySet();
+			value.add(pageKey);
+			return value;
+		});
+	}
+	
+	private void removeObserver(String observable, PageKey pageKey) {
+		observers.computeIfPresent(observable, (key, value) -> {
+			value.remove(pageKey);
+			return !value.isEmpty()? value: null;
+		});
+	}
+	
 	@Override
 	public void onDestroySession(String sessionId) {
-		observables.remove(sessionId);
+		Map<IKey, Collection<String>> sessionPages = observables.remove(sessionId);
+		if (sessionPages != null) {
+			for (Map.Entry<IKey, Collection<String>> entry: sessionPages.entrySet()) {
+				PageKey pageKey = new PageKey(sessionId, entry.getKey());
+				for (String observable: entry.getValue())
+					removeObserver(observable, pageKey);
+			}
+		}
 	}
 
 	@Sessional
@@ -90,21 +148,11 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 
 					@Override
 					public void run() {
-						for (IWebSocketConnection connection: connectionRegistry.getConnections(application)) {
-							PageKey pageKey = ((WebSocketConnection) connection).getPageKey();
-							if (connection.isOpen() && (sourcePageKey == null || !sourcePageKey.equals(pageKey))) {
-								Map<IKey, Collection<String>> sessionPages = observables.get(pageKey.getSessionId());
-								if (sessionPages != null) {
-									Collection<String> pageObservables = sessionPages.get(pageKey.getPageId());
-									if (pageObservables != null && pageObservables.contains(observable)) {
-										String message = OBSERVABLE_CHANGED + ":" + observable; 
-										try {
-											connection.sendMessage(message);
-										} catch (Exception e) {
-											logger.error("Error sending websocket message: " + message, e);
-										}
-									}
-								}
+						Set<PageKey> pageKeys = observers.get(observable);
+						if (pageKeys != null) {
+							for (PageKey pageKey: pageKeys) {
+								if (sourcePageKey == null || !sourcePageKey.equals(pageKey)) 
+									notificationCoalescer.notify(pageKey, observable);
 							}
 						}
 					}
@@ -115,6 +163,31 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 		});
 	}
 	
+	private void sendNotification(PageKey pageKey, String observable) {
+		IWebSocketConnection connection = connectionRegistry.getConnection(
+				application, pageKey.getSessionId(), pageKey.getPageId());
+		if (connection != null && connection.isOpen()) {
+			String message = OBSERVABLE_CHANGED + ":" + observable; 
+			try {
+				connection.sendMessage(message);
+			} catch (Exception e) {
+				logger.error("Error sending websocket message: " + message, e);
+			}
+		}
+	}
+	
+	@Override
+	public WebSocketStatus getStatus() {
+		Collection<IWebSocketConnection> connections = connectionRegistry.getConnections(application);
+		int queuedMessages = 0;
+		for (IWebSocketConnection connection: connections) 
+			queuedMessages += ((WebSocketConnection) connection).getQueuedMessages();
+		return new WebSocketStatus(connections.size(), 
+				notificationCoalescer.getSent(), notificationCoalescer.getSuppressed(), 
+				queuedMessages, WebSocketConnection.getMergedMessages(), 
+				WebSocketConnection.getDroppedMessages(), WebSocketConnection.getDisconnectedClients());
+	}
+	
 	@Override
 	public void execute() {
 		for (IWebSocketConnection connection: new SimpleWebSocketConnectionRegistry().getConnections(application)) {
@@ -136,6 +209,7 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 	@Listen
 	public void on(SystemStopping event) {
 		taskScheduler.unschedule(taskId);
+		notificationScheduler.shutdown();
 	}
 	
 	@Override
@@ -0,0 +1,120 @@
+package io.onedev.server.web.websocket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces notifications of observable changes sent to pages. The first notification of an
+ * observable is sent to a page at once and opens a window. Further notifications of the same
+ * observable to the same page within the window are merged into one notification sent when the
+ * window ends, which opens a new window. So a page receives at most one notification of an
+ * observable per window, and is still notified of the last change.
+ */
+class NotificationCoalescer {
+
+	private static final Logger logger = LoggerFactory.getLogger(NotificationCoalescer.class);
+
+	private final long window;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final BiConsumer<PageKey, String> sender;
+
+	/*
+	 * Observables with open window of each page, mapping to whether or not a notification is
+	 * pending at end of the window
+	 */
+	private final Map<PageKey, Map<String, Boolean>> windows = new HashMap<>();
+
+	private final AtomicLong sent = new AtomicLong();
+
+	private final AtomicLong suppressed = new AtomicLong();
+
+	/**
+	 * @param window
+	 * 			window in milliseconds. Notifications are not coalesced if this is <tt>0</tt>
+	 * @param sender
+	 * 			sender to actually send notification of an observable to a page
+	 */
+	public NotificationCoalescer(long window, ScheduledExecutorService scheduler,
+			BiConsumer<PageKey, String> sender) {
+		this.window = window;
+		this.scheduler = scheduler;
+		this.sender = sender;
+	}
+
+	public void notify(PageKey pageKey, String observable) {
+		if (window != 0) {
+			synchronized (windows) {
+				Map<String, Boolean> pageWindows = windows.get(pageKey);
+				if (pageWindows == null) {
+					pageWindows = new HashMap<>();
+					windows.put(pageKey, pageWindows);
+				}
+				Boolean pending = pageWindows.get(observable);
+				if (pending != null) {
+					if (pending)
+						suppressed.incrementAndGet();
+					else
+						pageWindows.put(observable, true);
+					return;
+				} else {
+					pageWindows.put(observable, false);
+				}
+			}
+			send(pageKey, observable);
+			scheduler.schedule(() -> closeWindow(pageKey, observable), window, TimeUnit.MILLISECONDS);
+		} else {
+			send(pageKey, observable);
+		}
+	}
+
+	private void closeWindow(PageKey pageKey, String observable) {
+		synchronized (windows) {
+			Map<String, Boolean> pageWindows = windows.get(pageKey);
+			if (pageWindows.get(observable)) {
+				pageWindows.put(observable, false);
+			} else {
+				pageWindows.remove(observable);
+				if (pageWindows.isEmpty())
+					windows.remove(pageKey);
+				return;
+			}
+		}
+		send(pageKey, observable);
+		scheduler.schedule(() -> closeWindow(pageKey, observable), window, TimeUnit.MILLISECONDS);
+	}
+
+	private void send(PageKey pageKey, String observable) {
+		sent.incrementAndGet();
+		try {
+			sender.accept(pageKey, observable);
+		} catch (Exception e) {
+			logger.error("Error sending notification of observable: " + observable, e);
+		}
+	}
+
+	/**
+	 * @return
+	 * 			number of notifications sent
+	 */
+	public long getSent() {
+		return sent.get();
+	}
+
+	/**
+	 * @return
+	 * 			number of notifications merged into other notifications and not sent
+	 */
+	public long getSuppressed() {
+		return suppressed.get();
+	}
+
+}
@@ -18,24 +18,75 @@ package io.onedev.server.web.websocket;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.protocol.ws.api.AbstractWebSocketConnection;
 import org.apache.wicket.protocol.ws.api.AbstractWebSocketProcessor;
 import org.apache.wicket.protocol.ws.api.IWebSocketConnection;
 import org.apache.wicket.util.lang.Args;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A wrapper around Jetty9's native WebSocketConnection.
+ * <p>
+ * Text messages are written asynchronously one at a time, and messages sent while a write is in 
+ * progress are queued, so that a slow client never blocks the sending thread. The queue is 
+ * bounded: a notification already queued is merged with the new one, and a notification is 
+ * dropped if the queue is full. Other messages such as ajax responses can not be dropped without 
+ * breaking the page, so the client is disconnected instead if the queue is full. The queue is 
+ * considered saturated from the time it gets full until it drains to half of its capacity, and a 
+ * client whose queue stays saturated for {@link #MAX_SATURATED_TIME} milliseconds is disconnected.
  *
  * @since 6.2
  */
 public class WebSocketConnection extends AbstractWebSocketConnection
 {
+	private static final Logger logger = LoggerFactory.getLogger(WebSocketConnection.class);
+	
+	static final int MAX_QUEUED_MESSAGES = 100;
+	
+	static final long MAX_SATURATED_TIME = 30000;
+	
+	private static final AtomicLong mergedMessages = new AtomicLong();
+	
+	private static final AtomicLong droppedMessages = new AtomicLong();
+	
+	private static final AtomicLong disconnectedClients = new AtomicLong();
+	
 	private final Session session;
 
 	private final PageKey pageKey;
 	
+	private final Queue<String> queuedMessages = new ArrayDeque<>();
+	
+	private boolean writing;
+	
+	// time since which the queue is saturated, or 0 if queue is not saturated
+	private long saturatedSince;
+	
+	private final WriteCallback writeCallback = new WriteCallback() {
+
+		@Override
+		public void writeSuccess()
+		{
+			writeNext();
+		}
+
+		@Override
+		public void writeFailed(Throwable x)
+		{
+			logger.debug("Error writing websocket message", x);
+			writeNext();
+		}
+		
+	};
+	
 	/**
 	 * Constructor.
 	 *
@@ -73,9 +124,130 @@ public class WebSocketConnection extends AbstractWebSocketConnection
 	{
 		checkClosed();
 
-		session.getRemote().sendStringByFuture(message);
+		boolean disconnect = false;
+		synchronized (this)
+		{
+			if (writing)
+			{
+				boolean mergeable = isMergeable(message);
+				if (mergeable && queuedMessages.contains(message))
+				{
+					mergedMessages.incrementAndGet();
+				}
+				else if (queuedMessages.size() < MAX_QUEUED_MESSAGES)
+				{
+					queuedMessages.add(message);
+				}
+				else if (mergeable)
+				{
+					droppedMessages.incrementAndGet();
+					long now = System.currentTimeMillis();
+					if (saturatedSince == 0)
+						saturatedSince = now;
+					else if (now - saturatedSince > MAX_SATURATED_TIME)
+						disconnect = true;
+				}
+				else
+				{
+					disconnect = true;
+				}
+				message = null;
+			}
+			else
+			{
+				writing = true;
+			}
+		}
+		
+		if (message != null)
+		{
+			write(message);
+		}
+		else if (disconnect)
+		{
+			logger.warn("Disconnecting slow websocket client: " + session.getRemoteAddress());
+			disconnectedClients.incrementAndGet();
+			close(StatusCode.POLICY_VIOLATION, "Client too slow to receive messages");
+		}
 		return this;
 	}
+	
+	private boolean isMergeable(String message)
+	{
+		return message.startsWith(WebSocketManager.OBSERVABLE_CHANGED) 
+				|| message.equals(WebSocketManager.KEEP_ALIVE);
+	}
+	
+	private void write(String message)
+	{
+		try
+		{
+			session.getRemote().sendString(message, writeCallback);
+		}
+		catch (Exception e)
+		{
+			logger.debug("Error writing websocket message", e);
+			writeNext();
+		}
+	}
+	
+	private void writeNext()
+	{
+		String message;
+		synchronized (this)
+		{
+			if (isOpen())
+				message = queuedMessages.poll();
+			else
+				message = null;
+			if (message == null)
+			{
+				queuedMessages.clear();
+				writing = false;
+			}
+			if (queuedMessages.size() <= MAX_QUEUED_MESSAGES/2)
+				saturatedSince = 0;
+		}
+		if (message != null)
+			write(message);
+	}
+	
+	/**
+	 * @return
+	 * 			number of messages waiting to be written to this connection
+	 */
+	public synchronized int getQueuedMessages()
+	{
+		return queuedMessages.size();
+	}
+	
+	/**
+	 * @return
+	 * 			number of messages merged into queued messages of all connections
+	 */
+	public static long getMergedMessages()
+	{
+		return mergedMessages.get();
+	}
+	
+	/**
+	 * @return
+	 * 			number of notifications dropped due to full queue of all connections
+	 */
+	public static long getDroppedMessages()
+	{
+		return droppedMessages.get();
+	}
+	
+	/**
+	 * @return
+	 * 			number of clients disconnected as their queues are full for messages which can 
+	 * 			not be dropped, or stay saturated for too long
+	 */
+	public static long getDisconnectedClients()
+	{
+		return disconnectedClients.get();
+	}
 
 	@Override
 	public IWebSocketConnection sendMessage(byte[] message, int offset, int length)
@@ -20,4 +20,6 @@ public interface WebSocketManager {
 	
 	void notifyObservableChange(String observable, @Nullable PageKey sourcePageKey);
 	
+	WebSocketStatus getStatus();
+	
 }
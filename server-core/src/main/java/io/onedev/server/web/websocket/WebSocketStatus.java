@@ -0,0 +1,89 @@
+package io.onedev.server.web.websocket;
+
+import java.io.Serializable;
+
+/**
+ * Metrics of web socket notifications and outbound messages since server is started
+ */
+public class WebSocketStatus implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int connections;
+
+	private final long notificationsSent;
+
+	private final long notificationsSuppressed;
+
+	private final int queuedMessages;
+	
+	private final long mergedMessages;
+	
+	private final long droppedMessages;
+	
+	private final long disconnectedClients;
+	
+	public WebSocketStatus(int connections, long notificationsSent, long notificationsSuppressed, 
+			int queuedMessages, long mergedMessages, long droppedMessages, long disconnectedClients) {
+		this.connections = connections;
+		this.notificationsSent = notificationsSent;
+		this.notificationsSuppressed = notificationsSuppressed;
+		this.queuedMessages = queuedMessages;
+		this.mergedMessages = mergedMessages;
+		this.droppedMessages = droppedMessages;
+		this.disconnectedClients = disconnectedClients;
+	}
+
+	/**
+	 * @return
+	 * 			number of open web socket connections
+	 */
+	public int getConnections() {
+		return connections;
+	}
+
+	public long getNotificationsSent() {
+		return notificationsSent;
+	}
+
+	/**
+	 * @return
+	 * 			number of notifications merged into other notifications of same observable
+	 */
+	public long getNotificationsSuppressed() {
+		return notificationsSuppressed;
+	}
+
+	/**
+	 * @return
+	 * 			number of messages currently waiting to be written to open connections
+	 */
+	public int getQueuedMessages() {
+		return queuedMessages;
+	}
+
+	/**
+	 * @return
+	 * 			number of messages merged into same messages already queued
+	 */
+	public long getMergedMessages() {
+		return mergedMessages;
+	}
+
+	/**
+	 * @return
+	 * 			number of notifications dropped as outbound queue of the connection is full
+	 */
+	public long getDroppedMessages() {
+		return droppedMessages;
+	}
+
+	/**
+	 * @return
+	 * 			number of clients disconnected for being too slow to receive messages
+	 */
+	public long getDisconnectedClients() {
+		return disconnectedClients;
+	}
+
+}
@@ -0,0 +1,135 @@
+package io.onedev.server.buildspec.job.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class LogFileTest {
+
+	private static final int ENTRIES = LogFile.INDEX_INTERVAL*3 + 17;
+
+	private File dir;
+
+	@Before
+	public void before() {
+		dir = FileUtils.createTempDir();
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(dir);
+	}
+
+	private List<JobLogEntry> entries(int from, int to) {
+		List<JobLogEntry> entries = new ArrayList<>();
+		for (int i=from; i<to; i++)
+			entries.add(new JobLogEntry(new Date(i), "line " + i + (i%7==0?"\n\u5c0f\u660e":"")));
+		return entries;
+	}
+
+	private void assertEntries(int from, List<JobLogEntry> entries) {
+		for (int i=0; i<entries.size(); i++) {
+			assertEquals(from+i, entries.get(i).getDate().getTime());
+			assertEquals(entries(from+i, from+i+1).get(0).getMessage(), entries.get(i).getMessage());
+		}
+	}
+
+	private LogFile write() {
+		LogFile logFile = new LogFile(dir);
+		int ordinal = 0;
+		while (ordinal < ENTRIES) {
+			int to = Math.min(ordinal + 1000, ENTRIES);
+			logFile.append(ordinal, entries(ordinal, to));
+			ordinal = to;
+		}
+		return logFile;
+	}
+
+	@Test
+	public void shouldReadEntriesAtAnyOffset() {
+		LogFile logFile = write();
+		assertEquals(ENTRIES, logFile.count());
+
+		assertEntries(0, logFile.read(0, 10));
+		assertEquals(10, logFile.read(0, 10).size());
+
+		for (int from: new int[] {LogFile.INDEX_INTERVAL-1, LogFile.INDEX_INTERVAL, 2500, ENTRIES-5}) {
+			List<JobLogEntry> entries = logFile.read(from, 10);
+			assertEquals(Math.min(10, ENTRIES-from), entries.size());
+			assertEntries(from, entries);
+		}
+
+		assertEquals(ENTRIES-3000, logFile.read(3000, 0).size());
+		assertEquals(0, logFile.read(ENTRIES+10, 10).size());
+	}
+
+	@Test
+	public void shouldReadReversely() {
+		LogFile logFile = write();
+		LogSnippet snippet = logFile.readReversely(100);
+		assertEquals(ENTRIES-100, snippet.offset);
+		assertEquals(100, snippet.entries.size());
+		assertEntries(ENTRIES-100, snippet.entries);
+
+		snippet = logFile.readReversely(ENTRIES*2);
+		assertEquals(0, snippet.offset);
+		assertEquals(ENTRIES, snippet.entries.size());
+
+		assertEquals(0, new LogFile(new File(dir, "nonexistent")).readReversely(10).entries.size());
+	}
+
+	@Test
+	public void shouldReadCompressedLog() {
+		LogFile logFile = write();
+		long size = new File(dir, "build-log.data").length();
+		logFile.compress();
+		assertTrue(logFile.isCompressed());
+		assertFalse(new File(dir, "build-log.data").exists());
+		assertTrue(new File(dir, "build-log.blocks").length() < size);
+
+		assertEquals(ENTRIES, logFile.count());
+		for (int from: new int[] {0, LogFile.INDEX_INTERVAL-1, LogFile.INDEX_INTERVAL, 2500, ENTRIES-5}) {
+			List<JobLogEntry> entries = logFile.read(from, 10);
+			assertEquals(Math.min(10, ENTRIES-from), entries.size());
+			assertEntries(from, entries);
+		}
+		assertEquals(ENTRIES, logFile.read(0, 0).size());
+		assertEntries(0, logFile.read(0, 0));
+
+		LogSnippet snippet = logFile.readReversely(100);
+		assertEquals(ENTRIES-100, snippet.offset);
+		assertEntries(ENTRIES-100, snippet.entries);
+	}
+
+	@Test
+	public void shouldConvertLegacyLog() throws IOException {
+		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(new File(dir, "build.log")))) {
+			for (JobLogEntry entry: entries(0, ENTRIES))
+				oos.writeObject(entry);
+		}
+		LogFile logFile = new LogFile(dir);
+		assertTrue(logFile.exists());
+		assertTrue(logFile.isLegacy());
+		logFile.convertLegacy();
+		assertFalse(logFile.isLegacy());
+		assertFalse(new File(dir, "build.log").exists());
+
+		assertEquals(ENTRIES, logFile.count());
+		assertEntries(2000, logFile.read(2000, 50));
+	}
+
+}
@@ -0,0 +1,92 @@
+package io.onedev.server.buildspec.job.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class LogIndexTest {
+
+	private File dir;
+
+	@Before
+	public void before() {
+		dir = FileUtils.createTempDir();
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(dir);
+	}
+
+	private LogFile writeLog(String name, String...messages) {
+		File buildDir = new File(dir, name);
+		FileUtils.createDir(buildDir);
+		LogFile logFile = new LogFile(buildDir);
+		int ordinal = 0;
+		for (String message: messages) {
+			logFile.append(ordinal, Lists.newArrayList(new JobLogEntry(new Date(ordinal), message)));
+			ordinal++;
+		}
+		return logFile;
+	}
+
+	private void index(LogIndex logIndex, Long buildId, LogFile logFile, Date since) {
+		try (	LogIndex.Writer writer = logIndex.openWriter();
+				LogFile.Reader reader = logFile.openReader(0)) {
+			writer.update(buildId, reader, since);
+		}
+	}
+
+	@Test
+	public void shouldQueryBuildsByLogText() {
+		LogIndex logIndex = new LogIndex(new File(dir, "index"));
+		assertFalse(logIndex.exists());
+		assertTrue(logIndex.query("error").isEmpty());
+
+		index(logIndex, 1L, writeLog("1", "Compiling...",
+				"java.lang.NullPointerException: null",
+				"\tat io.onedev.Foo.bar(Foo.java:12)"), null);
+		index(logIndex, 2L, writeLog("2", "Compiling...", "BUILD SUCCESS"), null);
+		assertTrue(logIndex.exists());
+
+		assertEquals(Sets.newHashSet(1L, 2L), logIndex.query("compiling"));
+		assertEquals(Sets.newHashSet(1L), logIndex.query("NullPointerException"));
+		assertEquals(Sets.newHashSet(1L), logIndex.query("lang.NullPointerException: null at io.onedev"));
+		assertTrue(logIndex.query("java NullPointerException").isEmpty());
+		assertTrue(logIndex.query("NullPointer").isEmpty());
+
+		assertTrue(logIndex.contains(1L, "Foo.java:12"));
+		assertFalse(logIndex.contains(2L, "Foo.java:12"));
+		assertTrue(logIndex.contains(2L, "build success"));
+	}
+
+	@Test
+	public void shouldReplaceAndDeleteIndexedLog() {
+		LogIndex logIndex = new LogIndex(new File(dir, "index"));
+		LogFile logFile = writeLog("1", "first attempt failed", "second attempt succeeded");
+		index(logIndex, 1L, logFile, null);
+		assertEquals(Sets.newHashSet(1L), logIndex.query("failed"));
+
+		index(logIndex, 1L, logFile, new Date(1));
+		assertTrue(logIndex.query("failed").isEmpty());
+		assertEquals(Sets.newHashSet(1L), logIndex.query("succeeded"));
+
+		try (LogIndex.Writer writer = logIndex.openWriter()) {
+			writer.delete(1L);
+		}
+		assertTrue(logIndex.query("succeeded").isEmpty());
+	}
+
+}
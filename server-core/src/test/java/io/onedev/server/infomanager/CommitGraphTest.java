@@ -0,0 +1,121 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.BitSet;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class CommitGraphTest {
+
+	/*
+	 * 0 <- 1 <- 2 <- 4
+	 *       \       /
+	 *        <- 3 <-
+	 * 5 (unrelated root)
+	 */
+	private static final int[][] PARENTS = new int[][] {{}, {0}, {1}, {1}, {2, 3}, {}};
+
+	private File dir;
+
+	private final CommitGraph.Source source = new CommitGraph.Source() {
+
+		@Override
+		public byte[] getCommit(int ordinal) {
+			byte[] bytes = new byte[20];
+			bytes[19] = (byte) ordinal;
+			return bytes;
+		}
+
+		@Override
+		public int[] getParents(int ordinal) {
+			return PARENTS[ordinal];
+		}
+
+	};
+
+	@Before
+	public void before() {
+		dir = FileUtils.createTempDir();
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(dir);
+	}
+
+	private BitSet bits(int... ordinals) {
+		BitSet bitSet = new BitSet();
+		for (int ordinal: ordinals)
+			bitSet.set(ordinal);
+		return bitSet;
+	}
+
+	@Test
+	public void shouldAppendAndReopen() {
+		CommitGraph graph = CommitGraph.write(dir, null, 3, source);
+		assertEquals(3, graph.getCount());
+		graph = CommitGraph.write(dir, graph, PARENTS.length, source);
+
+		graph = CommitGraph.open(dir);
+		assertEquals(PARENTS.length, graph.getCount());
+		for (int ordinal=0; ordinal<PARENTS.length; ordinal++) {
+			assertArrayEquals(PARENTS[ordinal], graph.getParents(ordinal));
+			assertEquals(ObjectId.fromRaw(source.getCommit(ordinal)), graph.getCommit(ordinal));
+		}
+		assertEquals(1, dir.list().length);
+	}
+
+	@Test
+	public void shouldMergeAppendedChunks() {
+		CommitGraph graph = null;
+		for (int count=1; count<=PARENTS.length; count++) 
+			graph = CommitGraph.write(dir, graph, count, source);
+		assertTrue(dir.list().length < PARENTS.length);
+		
+		graph = CommitGraph.open(dir);
+		assertEquals(PARENTS.length, graph.getCount());
+		for (int ordinal=0; ordinal<PARENTS.length; ordinal++) {
+			assertArrayEquals(PARENTS[ordinal], graph.getParents(ordinal));
+			assertEquals(ObjectId.fromRaw(source.getCommit(ordinal)), graph.getCommit(ordinal));
+		}
+		assertEquals(4, graph.getGeneration(4));
+		assertEquals(bits(1, 2, 3, 4), graph.getDescendants(bits(1)));
+		assertEquals(bits(0, 1, 2, 3, 4), graph.getAncestors(bits(4)));
+		assertTrue(graph.isAncestor(0, 4));
+	}
+
+	@Test
+	public void shouldCalculateClosures() {
+		CommitGraph graph = CommitGraph.write(dir, null, PARENTS.length, source);
+		assertEquals(bits(3, 4), graph.getDescendants(bits(3)));
+		assertEquals(bits(1, 2, 3, 4), graph.getDescendants(bits(1)));
+		assertEquals(bits(0, 1, 3), graph.getAncestors(bits(3)));
+		assertEquals(bits(0, 1, 2, 3, 4), graph.getAncestors(bits(4)));
+		assertEquals(bits(5), graph.getDescendants(bits(5)));
+		assertEquals(bits(0, 1, 2, 3, 4), graph.getAncestors(4, graph.getAncestors(2, null)));
+	}
+
+	@Test
+	public void shouldCheckAncestry() {
+		CommitGraph graph = CommitGraph.write(dir, CommitGraph.write(dir, null, 2, source),
+				PARENTS.length, source);
+		assertEquals(4, graph.getGeneration(4));
+		assertTrue(graph.isAncestor(0, 4));
+		assertTrue(graph.isAncestor(3, 4));
+		assertTrue(graph.isAncestor(2, 2));
+		assertFalse(graph.isAncestor(2, 3));
+		assertFalse(graph.isAncestor(4, 0));
+		assertFalse(graph.isAncestor(0, 5));
+	}
+
+}
@@ -0,0 +1,74 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import io.onedev.server.git.Contribution;
+import io.onedev.server.git.NameAndEmail;
+
+public class CommitInfoCodecTest {
+
+	@Test
+	public void shouldRoundTripUsers() {
+		Set<NameAndEmail> users = Sets.newHashSet(
+				new NameAndEmail("robin", "robin@example.com"),
+				new NameAndEmail("\u5c0f\u660e", "xiaoming@example.com"),
+				new NameAndEmail("nobody", null));
+		assertEquals(users, CommitInfoCodec.decodeUsers(CommitInfoCodec.encodeUsers(users)));
+		assertTrue(CommitInfoCodec.decodeUsers(null).isEmpty());
+	}
+
+	@Test
+	public void shouldRoundTripLineStats() {
+		Map<Integer, Map<String, Integer>> lineStats = new HashMap<>();
+		Map<String, Integer> lineStatsOnDay = new HashMap<>();
+		lineStatsOnDay.put("Java", 1000);
+		lineStatsOnDay.put("XML", -20);
+		lineStats.put(0x07e30101, lineStatsOnDay);
+		lineStatsOnDay = new HashMap<>();
+		lineStatsOnDay.put("Java", -5);
+		lineStats.put(0x07e30102, lineStatsOnDay);
+		assertEquals(lineStats, CommitInfoCodec.decodeLineStats(CommitInfoCodec.encodeLineStats(lineStats)));
+	}
+
+	@Test
+	public void shouldRoundTripContributions() {
+		Map<Integer, Contribution> contributions = new HashMap<>();
+		contributions.put(3, new Contribution(1, 200, 0));
+		contributions.put(0x07e30101, new Contribution(1000, Integer.MAX_VALUE, 5));
+		Map<Integer, Contribution> decoded =
+				CommitInfoCodec.decodeContributions(CommitInfoCodec.encodeContributions(contributions));
+		assertEquals(contributions.keySet(), decoded.keySet());
+		for (Map.Entry<Integer, Contribution> entry: contributions.entrySet()) {
+			Contribution contribution = decoded.get(entry.getKey());
+			assertEquals(entry.getValue().getCommits(), contribution.getCommits());
+			assertEquals(entry.getValue().getAdditions(), contribution.getAdditions());
+			assertEquals(entry.getValue().getDeletions(), contribution.getDeletions());
+		}
+	}
+
+	@Test
+	public void shouldRoundTripRenames() {
+		List<PathRename> renames = new ArrayList<>();
+		renames.add(new PathRename(5, 0));
+		renames.add(new PathRename(300, 100000));
+		List<PathRename> decoded = CommitInfoCodec.decodeRenames(CommitInfoCodec.encodeRenames(renames));
+		assertEquals(renames.size(), decoded.size());
+		for (int i=0; i<renames.size(); i++) {
+			assertEquals(renames.get(i).getOldPathIndex(), decoded.get(i).getOldPathIndex());
+			assertEquals(renames.get(i).getCommitOrdinal(), decoded.get(i).getCommitOrdinal());
+		}
+		assertTrue(CommitInfoCodec.decodeRenames(null).isEmpty());
+	}
+
+}
@@ -0,0 +1,55 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import io.onedev.server.util.Day;
+
+public class ContributionBucketsTest {
+
+	private int value(int month, int day) {
+		return new Day(2019, month, day).getValue();
+	}
+
+	@Test
+	public void shouldGetWeekAndMonth() {
+		assertEquals(value(1, 21), ContributionBuckets.getWeekValue(value(1, 21)));
+		assertEquals(value(1, 21), ContributionBuckets.getWeekValue(value(1, 27)));
+		assertEquals(value(1, 28), ContributionBuckets.getWeekValue(value(2, 3)));
+		assertEquals(new Day(2018, 12, 31).getValue(), ContributionBuckets.getWeekValue(value(1, 1)));
+		assertEquals(value(3, 1), ContributionBuckets.getMonthValue(value(3, 20)));
+		assertEquals(value(2, 1), ContributionBuckets.getMonthValue(value(2, 1)));
+	}
+
+	@Test
+	public void shouldCheckCoverage() {
+		ContributionBuckets buckets = new ContributionBuckets(Lists.newArrayList(), 
+				new Day(2019, 1, 15), new Day(2019, 3, 20));
+		assertTrue(buckets.isCovered(value(1, 15), value(3, 20)));
+		assertFalse(buckets.isCovered(value(1, 14), value(1, 20)));
+		assertFalse(buckets.isCovered(value(3, 18), value(3, 24)));
+		assertTrue(buckets.isMonthCovered(value(2, 1)));
+		assertFalse(buckets.isMonthCovered(value(1, 1)));
+		assertFalse(buckets.isMonthCovered(value(3, 1)));
+	}
+
+	@Test
+	public void shouldAccountEachDayOnce() {
+		ContributionBuckets buckets = new ContributionBuckets(Lists.newArrayList(
+				value(1, 10), value(1, 15), value(1, 23), value(1, 27), value(1, 30), 
+				value(2, 1), value(2, 28), value(3, 5), value(3, 20), value(3, 21)), 
+				new Day(2019, 1, 15), new Day(2019, 3, 20));
+		assertEquals(Sets.newHashSet(value(2, 1)), buckets.getMonths());
+		assertEquals(Sets.newHashSet(value(1, 21), value(3, 4)), buckets.getWeeks());
+		
+		// week of Jan 30 overlaps with February which is accounted as a month
+		assertEquals(Sets.newHashSet(value(1, 15), value(1, 30), value(3, 20)), buckets.getDays());
+	}
+
+}
@@ -0,0 +1,78 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PathIndexTest {
+
+	private PathIndex build() {
+		Map<String, Long> files = new HashMap<>();
+		for (int i=0; i<40; i++)
+			files.put("server-core/src/main/java/File" + i + ".java", 1560000000000L + i);
+		files.put("readme.md", 0L);
+		files.put("server-core/pom.xml", 1550000000000L);
+		files.put("docs/\u5c0f\u660e.MD", 1570000000000L);
+		return PathIndex.fromBytes(PathIndex.build(files).toBytes());
+	}
+
+	@Test
+	public void shouldGetPaths() {
+		PathIndex index = build();
+		assertEquals(43, index.size());
+		List<String> paths = index.getPaths();
+		assertEquals("docs/\u5c0f\u660e.MD", paths.get(0));
+		assertEquals("readme.md", paths.get(1));
+		assertEquals("server-core/pom.xml", paths.get(2));
+		assertEquals("server-core/src/main/java/File9.java", paths.get(42));
+		assertEquals(paths, Lists.newArrayList(index));
+		assertEquals(0, PathIndex.fromBytes(null).getPaths().size());
+	}
+
+	@Test
+	public void shouldOrderDirectoriesBySegments() {
+		Map<String, Long> files = new HashMap<>();
+		files.put("a-b", 0L);
+		files.put("a/c", 0L);
+		files.put("a/b/c", 0L);
+		assertEquals(Lists.newArrayList("a/b/c", "a/c", "a-b"), PathIndex.build(files).getPaths());
+	}
+
+	@Test
+	public void shouldGetTimestamps() {
+		PathIndex index = build();
+		Map<String, Long> timestamps = index.getTimestamps();
+		assertEquals(43, timestamps.size());
+		assertEquals(0L, timestamps.get("readme.md").longValue());
+		assertEquals(1560000000039L, timestamps.get("server-core/src/main/java/File39.java").longValue());
+		assertEquals(1570000000000L, timestamps.get("docs/\u5c0f\u660e.MD").longValue());
+	}
+
+	@Test
+	public void shouldRoundTripSupplementaryCharacters() {
+		Map<String, Long> files = new HashMap<>();
+		files.put("docs/\ud83d\ude00.md", 1L);
+		files.put("docs/\ud83d\ude01.md", 2L);
+		files.put("docs/\ud83d\ude01/\ud83d\ude02.md", 3L);
+		files.put("docs/\ud842\udfb7.txt", 4L);
+		assertEquals(files, PathIndex.fromBytes(PathIndex.build(files).toBytes()).getTimestamps());
+	}
+
+	@Test
+	public void shouldGetPathsContaining() {
+		PathIndex index = build();
+		assertEquals(Lists.newArrayList("docs/\u5c0f\u660e.MD", "readme.md"), index.getPathsContaining(".md", false));
+		assertEquals(Lists.newArrayList("readme.md"), index.getPathsContaining(".md", true));
+		assertEquals(Lists.newArrayList("docs/\u5c0f\u660e.MD"), index.getPathsContaining("\u660e.md", false));
+		assertEquals(Lists.newArrayList("server-core/src/main/java/File12.java"),
+				index.getPathsContaining("FILE12", false));
+		assertEquals(0, index.getPathsContaining("FILE12", true).size());
+	}
+
+}
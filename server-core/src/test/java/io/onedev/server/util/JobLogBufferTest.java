@@ -0,0 +1,117 @@
+package io.onedev.server.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.onedev.server.buildspec.job.log.JobLogEntry;
+import io.onedev.server.buildspec.job.log.instruction.LogInstruction;
+
+public class JobLogBufferTest {
+
+	@Test
+	public void shouldKeepOrderAndTimeOfMessages() {
+		RecordingLogger recorder = new RecordingLogger(50);
+		List<Long> lowerTimes = new ArrayList<>();
+		List<Long> upperTimes = new ArrayList<>();
+		try (JobLogBuffer buffer = new JobLogBuffer(recorder)) {
+			for (int i=0; i<2000; i++) {
+				lowerTimes.add(System.currentTimeMillis());
+				buffer.log("message " + i);
+				upperTimes.add(System.currentTimeMillis());
+			}
+		}
+
+		assertEquals(2000, recorder.entries.size());
+		for (int i=0; i<2000; i++) {
+			JobLogEntry entry = recorder.entries.get(i);
+			assertEquals("message " + i, entry.getMessage());
+
+			// entries should be stamped when logged, instead of when flushed by a slow logger
+			long time = entry.getDate().getTime();
+			assertTrue(time >= lowerTimes.get(i) && time <= upperTimes.get(i));
+		}
+		assertTrue(recorder.messages.isEmpty());
+	}
+
+	@Test
+	public void shouldFlushQuietOutput() throws InterruptedException {
+		RecordingLogger recorder = new RecordingLogger(0);
+		try (JobLogBuffer buffer = new JobLogBuffer(recorder)) {
+			buffer.log("message");
+			long deadline = System.currentTimeMillis() + 5000;
+			while (recorder.getEntryCount() == 0 && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+			assertEquals(1, recorder.getEntryCount());
+		}
+	}
+
+	@Test
+	public void shouldLogInstructionsInLoggingThread() {
+		RecordingLogger recorder = new RecordingLogger(0);
+		String instruction = LogInstruction.PREFIX + " SetBuildVersion '1.0'";
+		try (JobLogBuffer buffer = new JobLogBuffer(recorder)) {
+			buffer.log("before");
+			buffer.log(instruction);
+
+			// messages before the instruction should be flushed first
+			assertEquals(1, recorder.getEntryCount());
+			assertEquals("before", recorder.entries.get(0).getMessage());
+			assertEquals(1, recorder.messages.size());
+			assertEquals(instruction, recorder.messages.get(0));
+			assertSame(Thread.currentThread(), recorder.messageThreads.get(0));
+
+			buffer.log("after");
+		}
+		assertEquals(2, recorder.getEntryCount());
+		assertEquals("after", recorder.entries.get(1).getMessage());
+		assertFalse(recorder.entries.get(1).getMessage().startsWith(LogInstruction.PREFIX));
+	}
+
+	private static class RecordingLogger extends JobLogger {
+
+		private final long batchDelay;
+
+		private final List<JobLogEntry> entries = new ArrayList<>();
+
+		private final List<String> messages = new ArrayList<>();
+
+		private final List<Thread> messageThreads = new ArrayList<>();
+
+		RecordingLogger(long batchDelay) {
+			this.batchDelay = batchDelay;
+		}
+
+		@Override
+		public synchronized void log(String message) {
+			messages.add(message);
+			messageThreads.add(Thread.currentThread());
+		}
+
+		@Override
+		public void log(List<JobLogEntry> entries) {
+			if (batchDelay != 0) {
+				try {
+					Thread.sleep(batchDelay);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			synchronized (this) {
+				this.entries.addAll(entries);
+			}
+		}
+
+		synchronized int getEntryCount() {
+			return entries.size();
+		}
+
+	}
+
+}
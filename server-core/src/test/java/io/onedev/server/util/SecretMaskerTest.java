@@ -0,0 +1,33 @@
+package io.onedev.server.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SecretMaskerTest {
+
+	@Test
+	public void shouldMaskSecrets() {
+		SecretMasker masker = new SecretMasker(Lists.newArrayList("secret", "bc", "abcd", "", "cre"));
+		
+		String text = "nothing to mask";
+		assertSame(text, masker.mask(text));
+		
+		assertEquals("my ***** is *****!", masker.mask("my secret is secret!"));
+		assertEquals("**********", masker.mask("secretsecret"));
+		assertEquals("x*****y", masker.mask("xbcy"));
+		
+		// overlapping secrets are masked together
+		assertEquals("x*****y", masker.mask("xabcdy"));
+		assertEquals("*****", new SecretMasker(Lists.newArrayList("aaa")).mask("aaaa"));
+		
+		assertEquals("", masker.mask(""));
+		assertEquals("abc", new SecretMasker(new ArrayList<>()).mask("abc"));
+	}
+	
+}
@@ -55,6 +55,7 @@ import io.onedev.server.model.support.RegistryLogin;
 import io.onedev.server.model.support.administration.jobexecutor.JobExecutor;
 import io.onedev.server.plugin.docker.DockerExecutor.TestData;
 import io.onedev.server.util.CollectionUtils;
+import io.onedev.server.util.JobLogBuffer;
 import io.onedev.server.util.JobLogger;
 import io.onedev.server.util.PKCS12CertExtractor;
 import io.onedev.server.util.ServerConfig;
@@ -808,26 +809,26 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 						
 						jobLogger.log("Running job container...");
 						
-						try {
+						try (JobLogBuffer containerLogger = new JobLogBuffer(jobLogger)) {
 							docker.execute(new LineConsumer(StandardCharsets.UTF_8.name()) {
 
 								@Override
 								public void consume(String line) {
-									jobLogger.log(line);
+									containerLogger.log(line);
 								}
 								
 							}, new LineConsumer(StandardCharsets.UTF_8.name()) {
 
 								@Override
 								public void consume(String line) {
-									jobLogger.log(line);
+									containerLogger.log(line);
 								}
 								
 							}, null, new ProcessKiller() {
 		
 								@Override
 								public void kill(Process process, String executionId) {
-									jobLogger.log("Stopping job container...");
+									containerLogger.log("Stopping job container...");
 									Commandline cmd = newDocker();
 									cmd.addArgs("stop", containerName);
 									cmd.execute(new LineConsumer() {
@@ -841,7 +842,7 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 
 										@Override
 										public void consume(String line) {
-											jobLogger.log(line);
+											containerLogger.log(line);
 										}
 										
 									}).checkReturnCode();
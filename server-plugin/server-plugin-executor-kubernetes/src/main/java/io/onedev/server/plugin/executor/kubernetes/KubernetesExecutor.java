@@ -57,6 +57,7 @@ import io.onedev.server.model.support.administration.jobexecutor.NodeSelectorEnt
 import io.onedev.server.model.support.administration.jobexecutor.ServiceLocator;
 import io.onedev.server.plugin.executor.kubernetes.KubernetesExecutor.TestData;
 import io.onedev.server.util.CollectionUtils;
+import io.onedev.server.util.JobLogBuffer;
 import io.onedev.server.util.JobLogger;
 import io.onedev.server.util.PKCS12CertExtractor;
 import io.onedev.server.util.ServerConfig;
@@ -1275,58 +1276,60 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 		AtomicReference<Instant> lastInstantRef = new AtomicReference<>(null);
 		AtomicBoolean endOfLogSeenRef = new AtomicBoolean(false);
 		
-		while (true) {
-			Commandline kubectl = newKubeCtl();
-			kubectl.addArgs("logs", podName, "-c", containerName, "-n", namespace, "--follow", "--timestamps=true");
-			if (lastInstantRef.get() != null)
-				kubectl.addArgs("--since-time=" + DateTimeFormatter.ISO_INSTANT.format(lastInstantRef.get()));
+		try (JobLogBuffer containerLogger = new JobLogBuffer(jobLogger)) {
+			while (true) {
+				Commandline kubectl = newKubeCtl();
+				kubectl.addArgs("logs", podName, "-c", containerName, "-n", namespace, "--follow", "--timestamps=true");
+				if (lastInstantRef.get() != null)
+					kubectl.addArgs("--since-time=" + DateTimeFormatter.ISO_INSTANT.format(lastInstantRef.get()));
 			
-			LineConsumer logConsumer = new LineConsumer() {
+				LineConsumer logConsumer = new LineConsumer() {
 
-				@Override
-				public void consume(String line) {
-					if (line.contains("rpc error:") && line.contains("No such container:") 
-							|| line.contains("Unable to retrieve container logs for")) { 
-						logger.debug(line);
-					} else if (logEndMessage != null && line.contains(logEndMessage)) {
-						endOfLogSeenRef.set(true);
-					} else if (line.contains("Error from server") && line.contains("containerLogs")
-							&& (line.contains("EOF") || line.contains("Connection refused"))) {
-						errorMessageRef.set(line);
-						thread.interrupt();
-					} else if (line.contains(" ")) {
-						String timestamp = StringUtils.substringBefore(line, " ");
-						try {
-							Instant instant = Instant.from(DateTimeFormatter.ISO_INSTANT.parse(timestamp));
-							if (lastInstantRef.get() == null || lastInstantRef.get().isBefore(instant))
-								lastInstantRef.set(instant);
-							jobLogger.log(StringUtils.substringAfter(line, " "));
-						} catch (DateTimeParseException e) {
-							jobLogger.log(line);
+					@Override
+					public void consume(String line) {
+						if (line.contains("rpc error:") && line.contains("No such container:") 
+								|| line.contains("Unable to retrieve container logs for")) { 
+							logger.debug(line);
+						} else if (logEndMessage != null && line.contains(logEndMessage)) {
+							endOfLogSeenRef.set(true);
+						} else if (line.contains("Error from server") && line.contains("containerLogs")
+								&& (line.contains("EOF") || line.contains("Connection refused"))) {
+							errorMessageRef.set(line);
+							thread.interrupt();
+						} else if (line.contains(" ")) {
+							String timestamp = StringUtils.substringBefore(line, " ");
+							try {
+								Instant instant = Instant.from(DateTimeFormatter.ISO_INSTANT.parse(timestamp));
+								if (lastInstantRef.get() == null || lastInstantRef.get().isBefore(instant))
+									lastInstantRef.set(instant);
+								containerLogger.log(StringUtils.substringAfter(line, " "));
+							} catch (DateTimeParseException e) {
+								containerLogger.log(line);
+							}
+						} else {
+							containerLogger.log(line);
 						}
-					} else {
-						jobLogger.log(line);
 					}
-				}
 				
-			};
+				};
 			
-			try {
-				kubectl.execute(logConsumer, logConsumer).checkReturnCode();
-			} catch (Exception e) {
-				if (errorMessageRef.get() != null) 
-					throw new OneException(errorMessageRef.get());
-				else
-					throw ExceptionUtils.unchecked(e);
-			}		
-			
-			if (logEndMessage == null || endOfLogSeenRef.get()) {
-				break;
-			} else {
 				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
+					kubectl.execute(logConsumer, logConsumer).checkReturnCode();
+				} catch (Exception e) {
+					if (errorMessageRef.get() != null) 
+						throw new OneException(errorMessageRef.get());
+					else
+						throw ExceptionUtils.unchecked(e);
+				}		
+			
+				if (logEndMessage == null || endOfLogSeenRef.get()) {
+					break;
+				} else {
+					try {
+						Thread.sleep(1000);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
 				}
 			}
 		}
@@ -33,6 +33,26 @@ public class DefaultServerConfig implements ServerConfig {
 	
 	private static final String PROP_SESSION_TIMEOUT = "session_timeout";
 	
+	private static final String PROP_INDEXING_THREADS = "indexing_threads";
+	
+	private static final String PROP_INDEXING_MEMORY = "indexing_memory";
+	
+	private static final String PROP_INDEX_SEGMENTS_PER_TIER = "index_segments_per_tier";
+	
+	private static final String PROP_INDEX_DELETES_PCT_ALLOWED = "index_deletes_pct_allowed";
+	
+	private static final String PROP_BUILD_LOG_INDEX_ENABLED = "build_log_index_enabled";
+	
+	private static final String PROP_WEBSOCKET_NOTIFICATION_WINDOW = "websocket_notification_window";
+	
+	private static final int DEFAULT_INDEXING_MEMORY = 128;
+	
+	private static final int DEFAULT_INDEX_SEGMENTS_PER_TIER = 10;
+	
+	private static final int DEFAULT_INDEX_DELETES_PCT_ALLOWED = 20;
+	
+	private static final int DEFAULT_WEBSOCKET_NOTIFICATION_WINDOW = 200;
+	
 	private int httpPort;
 	
 	private int sessionTimeout;
@@ -45,6 +65,18 @@ public class DefaultServerConfig implements ServerConfig {
 	
 	private String keystorePassword;
 	
+	private int indexingThreads;
+	
+	private int indexingMemory;
+	
+	private int indexSegmentsPerTier;
+	
+	private int indexDeletesPctAllowed;
+	
+	private boolean buildLogIndexEnabled;
+	
+	private int webSocketNotificationWindow;
+	
 	@Inject
 	public DefaultServerConfig(ServerProperties props) {
 		String httpPortStr = System.getenv(PROP_HTTPPORT);
@@ -115,6 +147,61 @@ public class DefaultServerConfig implements ServerConfig {
 			sessionTimeout = Integer.parseInt(sessionTimeoutStr.trim());
 		else
 			throw new RuntimeException(PROP_SESSION_TIMEOUT + " should be specified");
+		
+		String indexingThreadsStr = System.getenv(PROP_INDEXING_THREADS);
+		if (StringUtils.isBlank(indexingThreadsStr))
+			indexingThreadsStr = props.getProperty(PROP_INDEXING_THREADS);
+		if (StringUtils.isNotBlank(indexingThreadsStr))
+			indexingThreads = Integer.parseInt(indexingThreadsStr.trim());
+		else
+			indexingThreads = Runtime.getRuntime().availableProcessors();
+		if (indexingThreads <= 0)
+			throw new RuntimeException(PROP_INDEXING_THREADS + " should be a positive number");
+		
+		String indexingMemoryStr = System.getenv(PROP_INDEXING_MEMORY);
+		if (StringUtils.isBlank(indexingMemoryStr))
+			indexingMemoryStr = props.getProperty(PROP_INDEXING_MEMORY);
+		if (StringUtils.isNotBlank(indexingMemoryStr))
+			indexingMemory = Integer.parseInt(indexingMemoryStr.trim());
+		else
+			indexingMemory = DEFAULT_INDEXING_MEMORY;
+		if (indexingMemory <= 0)
+			throw new RuntimeException(PROP_INDEXING_MEMORY + " should be a positive number");
+		
+		String indexSegmentsPerTierStr = System.getenv(PROP_INDEX_SEGMENTS_PER_TIER);
+		if (StringUtils.isBlank(indexSegmentsPerTierStr))
+			indexSegmentsPerTierStr = props.getProperty(PROP_INDEX_SEGMENTS_PER_TIER);
+		if (StringUtils.isNotBlank(indexSegmentsPerTierStr))
+			indexSegmentsPerTier = Integer.parseInt(indexSegmentsPerTierStr.trim());
+		else
+			indexSegmentsPerTier = DEFAULT_INDEX_SEGMENTS_PER_TIER;
+		if (indexSegmentsPerTier < 2)
+			throw new RuntimeException(PROP_INDEX_SEGMENTS_PER_TIER + " should be at least 2");
+		
+		String indexDeletesPctAllowedStr = System.getenv(PROP_INDEX_DELETES_PCT_ALLOWED);
+		if (StringUtils.isBlank(indexDeletesPctAllowedStr))
+			indexDeletesPctAllowedStr = props.getProperty(PROP_INDEX_DELETES_PCT_ALLOWED);
+		if (StringUtils.isNotBlank(indexDeletesPctAllowedStr))
+			indexDeletesPctAllowed = Integer.parseInt(indexDeletesPctAllowedStr.trim());
+		else
+			indexDeletesPctAllowed = DEFAULT_INDEX_DELETES_PCT_ALLOWED;
+		if (indexDeletesPctAllowed < 0 || indexDeletesPctAllowed > 100)
+			throw new RuntimeException(PROP_INDEX_DELETES_PCT_ALLOWED + " should be between 0 and 100");
+		
+		String buildLogIndexEnabledStr = System.getenv(PROP_BUILD_LOG_INDEX_ENABLED);
+		if (StringUtils.isBlank(buildLogIndexEnabledStr))
+			buildLogIndexEnabledStr = props.getProperty(PROP_BUILD_LOG_INDEX_ENABLED);
+		buildLogIndexEnabled = Boolean.parseBoolean(StringUtils.trim(buildLogIndexEnabledStr));
+		
+		String webSocketNotificationWindowStr = System.getenv(PROP_WEBSOCKET_NOTIFICATION_WINDOW);
+		if (StringUtils.isBlank(webSocketNotificationWindowStr))
+			webSocketNotificationWindowStr = props.getProperty(PROP_WEBSOCKET_NOTIFICATION_WINDOW);
+		if (StringUtils.isNotBlank(webSocketNotificationWindowStr))
+			webSocketNotificationWindow = Integer.parseInt(webSocketNotificationWindowStr.trim());
+		else
+			webSocketNotificationWindow = DEFAULT_WEBSOCKET_NOTIFICATION_WINDOW;
+		if (webSocketNotificationWindow < 0)
+			throw new RuntimeException(PROP_WEBSOCKET_NOTIFICATION_WINDOW + " should not be negative");
 	}
 	
 	@Override
@@ -146,5 +233,35 @@ public class DefaultServerConfig implements ServerConfig {
 	public File getTrustCertsDir() {
 		return trustCertsDir;
 	}
+
+	@Override
+	public int getIndexingThreads() {
+		return indexingThreads;
+	}
+
+	@Override
+	public int getIndexingMemory() {
+		return indexingMemory;
+	}
+
+	@Override
+	public int getIndexSegmentsPerTier() {
+		return indexSegmentsPerTier;
+	}
+
+	@Override
+	public int getIndexDeletesPctAllowed() {
+		return indexDeletesPctAllowed;
+	}
+
+	@Override
+	public boolean isBuildLogIndexEnabled() {
+		return buildLogIndexEnabled;
+	}
+
+	@Override
+	public int getWebSocketNotificationWindow() {
+		return webSocketNotificationWindow;
+	}
 	
 }